@@ -1,6 +1,7 @@
 plugins {
     id("java")
     id("io.freefair.lombok") version "5.3.3.3"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.kids"
@@ -21,4 +22,13 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
+}
+
+// Benchmarks live in src/jmh/java, run them with ./gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
 }
\ No newline at end of file
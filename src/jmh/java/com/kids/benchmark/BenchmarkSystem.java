@@ -0,0 +1,46 @@
+package com.kids.benchmark;
+
+import com.kids.app.AppConfig;
+import com.kids.app.servent.ServentInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Sets up the global {@link AppConfig} state that messages and codecs rely on,
+ * the same way a servent does at start, without opening any sockets.
+ */
+final class BenchmarkSystem {
+
+    private BenchmarkSystem() { }
+
+    /**
+     * Configures a clique of servents and makes us servent 0.
+     * The servent list is global, so only the first call in a JVM has an effect.
+     */
+    static synchronized void start(int serventCount) throws IOException {
+        if (AppConfig.getServentCount() > 0) return;
+
+        StringBuilder properties = new StringBuilder()
+                .append("servent_count=").append(serventCount).append('\n')
+                .append("clique=true\n")
+                .append("snapshot=ab\n");
+        for (int i = 0; i < serventCount; i++) {
+            properties.append("servent").append(i).append(".port=").append(1100 + i).append('\n');
+        }
+
+        Path config = Files.createTempFile("kids-benchmark", ".properties");
+        try {
+            Files.writeString(config, properties);
+            AppConfig.readConfig(config.toString());
+        } finally {
+            Files.deleteIfExists(config);
+        }
+        AppConfig.myServentInfo = AppConfig.getInfoById(0);
+    }
+
+    static ServentInfo servent(int id) {
+        return AppConfig.getInfoById(id);
+    }
+}
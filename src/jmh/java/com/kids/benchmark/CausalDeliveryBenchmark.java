@@ -0,0 +1,79 @@
+package com.kids.benchmark;
+
+import com.kids.app.ClockSnapshot;
+import com.kids.app.VectorClock;
+import com.kids.app.processing_strategy.CausalMessageProcessingStrategy;
+import com.kids.app.processing_strategy.PendingMessageBuffer;
+import com.kids.app.servent.ServentInfo;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.BasicMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery of N buffered messages that arrived in the worst possible order.
+ * <p>
+ * Each of the other servents broadcast a run of messages, and they all arrived newest first,
+ * so nothing can be delivered until the oldest message of each run shows up last.
+ * One invocation buffers all of them and delivers them with a single {@code processPendingMessages()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CausalDeliveryBenchmark {
+
+    private static final int SERVENT_COUNT = 8;
+
+    @Param({"100", "1000", "10000"})
+    private int messageCount;
+
+    private final List<Message> arrivals = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        int senders = SERVENT_COUNT - 1;
+        int perSender = messageCount / senders;
+
+        for (int sequence = perSender - 1; sequence >= 0; sequence--) {
+            for (int sender = 1; sender <= senders; sender++) {
+                int[] clock = new int[SERVENT_COUNT];
+                clock[sender] = sequence;
+
+                ServentInfo senderInfo = new ServentInfo("localhost", sender, 1100 + sender, List.of());
+                arrivals.add(new BasicMessage(MessageType.TRANSACTION, senderInfo, null, null, ClockSnapshot.of(clock)));
+            }
+        }
+    }
+
+    @Benchmark
+    public int deliverOutOfOrder() {
+        VectorClock clock = new VectorClock(SERVENT_COUNT);
+        PendingMessageBuffer buffer = new PendingMessageBuffer();
+        CausalMessageProcessingStrategy strategy = new CausalMessageProcessingStrategy(
+                buffer,
+                clock,
+                message -> clock.increment(message.getOriginalSenderInfo().id())
+        );
+
+        for (Message message : arrivals) {
+            buffer.add(message);
+        }
+        strategy.processPendingMessages();
+
+        if (!buffer.isEmpty()) {
+            throw new IllegalStateException(buffer.size() + " messages were not delivered");
+        }
+        return clock.getValue(1);
+    }
+}
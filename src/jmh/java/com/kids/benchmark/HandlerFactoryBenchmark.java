@@ -0,0 +1,75 @@
+package com.kids.benchmark;
+
+import com.kids.app.handler_factory.MessageHandlerFactory;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollectorWorker;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.util.DuplicateFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking and creating the handler for a committed message. The handlers are created, not run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandlerFactoryBenchmark {
+
+    private MessageHandlerFactory factory;
+    private BasicMessage transaction;
+    private BasicMessage avDone;
+    private BasicMessage avTerminate;
+    private BasicMessage notForUs;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSystem.start(4);
+
+        factory = new MessageHandlerFactory(
+                new SnapshotCollectorWorker(SnapshotType.ACHARYA_BADRINATH),
+                new DuplicateFilter()
+        );
+
+        transaction = message(MessageType.TRANSACTION, 0);
+        avDone = message(MessageType.AV_DONE, 0);
+        avTerminate = message(MessageType.AV_TERMINATE, 0);
+        notForUs = message(MessageType.TRANSACTION, 2);
+    }
+
+    @Benchmark
+    public Runnable createTransactionHandler() {
+        return factory.createHandler(transaction);
+    }
+
+    @Benchmark
+    public Runnable createAvDoneHandler() {
+        return factory.createHandler(avDone);
+    }
+
+    @Benchmark
+    public Runnable createAvTerminateHandler() {
+        return factory.createHandler(avTerminate);
+    }
+
+    @Benchmark
+    public Runnable createHandlerForOtherReceiver() {
+        return factory.createHandler(notForUs);
+    }
+
+    private static BasicMessage message(MessageType type, int receiver) {
+        return new BasicMessage(
+                type, BenchmarkSystem.servent(1), BenchmarkSystem.servent(receiver),
+                BenchmarkSystem.servent(receiver), "5", null
+        );
+    }
+}
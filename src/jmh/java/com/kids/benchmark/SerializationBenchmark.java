@@ -0,0 +1,102 @@
+package com.kids.benchmark;
+
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelCounters;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.codec.CodecType;
+import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.ab.ABSnapshotResponseMessage;
+import com.kids.servent.message.util.MessageUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding through {@link MessageUtil}, for each codec, of a plain transaction
+ * and of an AB snapshot response carrying its channel totals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    private static final int SERVENT_COUNT = 8;
+
+    @Param({"JAVA", "BINARY"})
+    private CodecType codec;
+
+    private Message transaction;
+    private Message abResponse;
+    private byte[] encodedTransaction;
+    private byte[] encodedAbResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSystem.start(SERVENT_COUNT);
+        AppConfig.MESSAGE_CODEC = codec;
+
+        transaction = transaction(1, 2);
+
+        ABChannelCounters channels = new ABChannelCounters();
+        channels.initialize(SERVENT_COUNT);
+        for (int peer = 0; peer < SERVENT_COUNT; peer++) {
+            if (peer == 1) continue;
+            channels.recordSent(peer, peer, 3 + peer);
+            channels.recordReceived(peer, peer, 0, 5);
+        }
+        abResponse = new ABSnapshotResponseMessage(
+                BenchmarkSystem.servent(1), BenchmarkSystem.servent(0), Map.of(1, new ABSnapshot(1, 1000, channels.snapshot(new SnapshotId(0, 0)))), new SnapshotId(0, 0)
+        );
+
+        encodedTransaction = MessageUtil.serialize(transaction);
+        encodedAbResponse = MessageUtil.serialize(abResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeTransaction() throws IOException {
+        return MessageUtil.serialize(transaction);
+    }
+
+    @Benchmark
+    public Message deserializeTransaction() throws IOException {
+        return MessageUtil.deserialize(encodedTransaction);
+    }
+
+    @Benchmark
+    public byte[] serializeAbResponse() throws IOException {
+        return MessageUtil.serialize(abResponse);
+    }
+
+    @Benchmark
+    public Message deserializeAbResponse() throws IOException {
+        return MessageUtil.deserialize(encodedAbResponse);
+    }
+
+    private static Message transaction(int sender, int receiver) {
+        return new BasicMessage(
+                MessageType.TRANSACTION, BenchmarkSystem.servent(sender), BenchmarkSystem.servent(receiver),
+                BenchmarkSystem.servent(receiver), "5", clock()
+        );
+    }
+
+    private static ClockSnapshot clock() {
+        int[] values = new int[SERVENT_COUNT];
+        for (int i = 0; i < SERVENT_COUNT; i++) {
+            values[i] = 1000 + i * 37;
+        }
+        return ClockSnapshot.of(values);
+    }
+}
@@ -0,0 +1,76 @@
+package com.kids.benchmark;
+
+import com.kids.app.ClockSnapshot;
+import com.kids.app.VectorClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparisons done for every buffered message on the causal delivery path.
+ * The clocks differ only in their last entry, so every comparison walks the whole clock.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VectorClockBenchmark {
+
+    @Param({"4", "16", "64"})
+    private int serventCount;
+
+    private VectorClock localClock;
+    private ClockSnapshot behind;
+    private ClockSnapshot ahead;
+    private ClockSnapshot nextFromSender;
+    private int senderId;
+
+    @Setup
+    public void setUp() {
+        int[] values = new int[serventCount];
+        for (int i = 0; i < serventCount; i++) {
+            values[i] = 10 + i;
+        }
+
+        localClock = new VectorClock(ClockSnapshot.of(values));
+        senderId = serventCount - 1;
+
+        values[senderId]--;
+        behind = ClockSnapshot.of(values);
+
+        values[senderId] += 2;
+        ahead = ClockSnapshot.of(values);
+        nextFromSender = ahead;
+    }
+
+    @Benchmark
+    public boolean isOtherClockGreaterWhenBehind() {
+        return localClock.isOtherClockGreater(behind);
+    }
+
+    @Benchmark
+    public boolean isOtherClockGreaterWhenAhead() {
+        return localClock.isOtherClockGreater(ahead);
+    }
+
+    @Benchmark
+    public boolean isCausalityViolatedFIFOForNextMessage() {
+        return localClock.isCausalityViolatedFIFO(nextFromSender, senderId);
+    }
+
+    @Benchmark
+    public boolean isCausalityViolatedFIFOForOldMessage() {
+        return localClock.isCausalityViolatedFIFO(behind, senderId);
+    }
+
+    @Benchmark
+    public ClockSnapshot snapshot() {
+        return localClock.snapshot();
+    }
+}
@@ -1,17 +1,19 @@
 package com.kids.app;
 
+import com.kids.app.logging.AsyncLogger;
+import com.kids.app.logging.LogLevel;
 import com.kids.app.servent.ServentInfo;
 import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.servent.message.codec.CodecType;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * This class contains all the global application configuration stuff.
@@ -30,6 +32,15 @@ public class AppConfig {
 	 * If this is true, the system is a clique - all nodes are each other's neighbors.
 	 */
 	public static boolean IS_CLIQUE;
+
+	/**
+	 * How causal broadcasts are passed on when the system is not a clique. Possible values are:
+	 * <ul>
+	 * <li>flood - to all neighbors but the one the broadcast came from (default)</li>
+	 * <li>tree - along the shortest-path tree rooted at the original sender</li>
+	 * </ul>
+	 */
+	public static BroadcastMode BROADCAST_MODE = BroadcastMode.FLOOD;
 	
 	/**
 	 * If this is true, messages will be sent purely via FIFO -
@@ -41,25 +52,130 @@ public class AppConfig {
 	/**
 	 * Snapshot algorithm selection. Possible values are:
 	 * <ul>
-	 * <li>naive - No algorithm</li>
-	 * <li>cl - Chandy-Lamport - works on FIFO systems</li>
-	 * <li>ly - Lai-Yang - works on non-FIFO systems</li>
+	 * <li>none - No algorithm</li>
+	 * <li>ab - Acharya-Badrinath</li>
+	 * <li>av - Alagar-Venkatesan</li>
+	 * <li>cc - Coordinated Checkpointing - holds transactions back while the snapshot runs</li>
+	 * <li>cl - Chandy-Lamport - doesn't hold transactions back, works on FIFO systems</li>
 	 * </ul>
 	 */
 	public static SnapshotType SNAPSHOT_TYPE;
 
+	/**
+	 * Wire codec for messages. Possible values are:
+	 * <ul>
+	 * <li>java - Java serialization (default)</li>
+	 * <li>binary - compact hand-written binary encoding</li>
+	 * </ul>
+	 */
+	public static CodecType MESSAGE_CODEC = CodecType.JAVA;
+
+	/**
+	 * How vector clocks are written by the binary codec. Possible values are:
+	 * <ul>
+	 * <li>full - every message carries the whole clock (default)</li>
+	 * <li>delta - only the entries that changed since the previous message on the same connection</li>
+	 * </ul>
+	 * Only the binary codec can send deltas, with the java codec this stays off.
+	 */
+	public static boolean DELTA_CLOCKS = false;
+
+	/**
+	 * Most messages the FIFO sender packs into one batch frame for a neighbor.
+	 * Setting this to 1 sends every message in its own frame.
+	 */
+	public static int FIFO_BATCH_SIZE = 32;
+
+	/**
+	 * How long, in milliseconds, the FIFO sender waits for more messages before shipping
+	 * a batch that isn't full. With 0 it only takes what is already queued.
+	 */
+	public static long FIFO_BATCH_WAIT_MS = 0;
+
+	/**
+	 * How long, in milliseconds, a sender waits for the ACK of a message before it resends it,
+	 * see {@link com.kids.servent.message.util.ServentConnection}.
+	 */
+	public static long RETRANSMIT_MS = 1000;
+
+	/**
+	 * Upper bound for the retransmission timeout, which doubles with every attempt that brings no ACK.
+	 */
+	public static long RETRANSMIT_MAX_MS = 16000;
+
+	/**
+	 * Thread model for handlers, delayed sends and burst workers, see {@link AppExecutors}. Possible values are:
+	 * <ul>
+	 * <li>virtual - a virtual thread per task (default)</li>
+	 * <li>platform - a bounded pool of {@link #EXECUTOR_THREADS} platform threads</li>
+	 * </ul>
+	 */
+	public static boolean USE_VIRTUAL_THREADS = true;
+
+	/**
+	 * Size of the platform thread pool. Also used when virtual threads are not available.
+	 */
+	public static int EXECUTOR_THREADS = 64;
+
+	/**
+	 * Most transactions from one sender that Coordinated Checkpointing holds back while in snapshot mode.
+	 * Transactions beyond that are applied right away.
+	 */
+	public static int CC_HOLD_CAPACITY = 1024;
+
+	/**
+	 * How many message ids above the watermark are remembered per sender when filtering out duplicate broadcasts,
+	 * see {@link com.kids.servent.message.util.DuplicateFilter}.
+	 */
+	public static int DEDUP_WINDOW = 65536;
+
+	/**
+	 * How often the metrics are printed to the output, in milliseconds, see {@link com.kids.app.metrics.Metrics}.
+	 * 0 turns the periodic printing off, the <code>metrics</code> command still prints them.
+	 */
+	public static long METRICS_DUMP_MS = 0;
+
+	/**
+	 * Whether every servent writes its part of each snapshot to its checkpoint log,
+	 * see {@link com.kids.app.checkpoint.CheckpointLog}.
+	 */
+	public static boolean CHECKPOINTS = true;
+
+	/**
+	 * Directory of the checkpoint logs, <code>checkpoint</code> next to the servent list file.
+	 */
+	public static Path CHECKPOINT_DIR = Path.of("checkpoint");
+
 	public static AtomicBoolean isWhite = new AtomicBoolean(true);
 	public static final Object colorLock = new Object();
 
 	/**
-	 * Print a message to stdout with a timestamp
+	 * Most detailed level of messages that get printed. Possible values are:
+	 * <ul>
+	 * <li>debug - everything, including every message sent, received and committed (default)</li>
+	 * <li>info - regular progress messages and results</li>
+	 * <li>warn - warnings and errors only</li>
+	 * <li>error - errors only</li>
+	 * </ul>
+	 */
+	public static LogLevel LOG_LEVEL = LogLevel.DEBUG;
+
+	/**
+	 * Print a message to stdout with a timestamp.
+	 * Printing is done asynchronously by the {@link AsyncLogger}.
 	 * @param message message to print
 	 */
 	public static void timestampedStandardPrint(String message) {
-		DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
-		Date now = new Date();
-		
-		System.out.println(timeFormat.format(now) + " - " + message);
+		AsyncLogger.log(LogLevel.INFO, message);
+	}
+	
+	/**
+	 * Print a per-message debug line to stdout with a timestamp.
+	 * The message is only built if debug printing is on, so keep the string building inside the supplier.
+	 * @param message supplier of the message to print
+	 */
+	public static void timestampedDebugPrint(Supplier<String> message) {
+		AsyncLogger.log(LogLevel.DEBUG, message);
 	}
 	
 	/**
@@ -67,10 +183,7 @@ public class AppConfig {
 	 * @param message message to print
 	 */
 	public static void timestampedErrorPrint(String message) {
-		DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
-		Date now = new Date();
-		
-		System.err.println(timeFormat.format(now) + " - " + message);
+		AsyncLogger.log(LogLevel.ERROR, message);
 	}
 	
 	/**
@@ -80,7 +193,22 @@ public class AppConfig {
 	 * <code><br/>
 	 * servent_count=3 			- number of servents in the system <br/>
 	 * clique=false 			- is it a clique or not <br/>
+	 * broadcast=tree			- how broadcasts are passed on if not a clique, flood or tree <br/>
 	 * fifo=false				- should sending be fifo
+	 * snapshot=cl				- snapshot algorithm, ab, av, cc or cl
+	 * codec=binary				- wire codec for messages, java or binary
+	 * clock_encoding=delta		- full or delta vector clocks, delta needs codec=binary
+	 * fifo_batch_size=32		- most messages sent in one FIFO batch
+	 * fifo_batch_wait_ms=0		- how long a FIFO batch waits to fill up
+	 * retransmit_ms=1000		- how long to wait for an ACK before resending
+	 * retransmit_max_ms=16000	- longest wait between resends to an unreachable servent
+	 * cc_hold_capacity=1024	- most transactions held per sender in CC snapshot mode
+	 * dedup_window=65536		- message ids remembered per sender above the watermark, when filtering duplicates
+	 * metrics_dump_ms=0		- how often metrics are printed, 0 for never
+	 * checkpoints=true			- should servents write their checkpoints to disk
+	 * executor=virtual			- thread model for tasks, virtual or platform
+	 * executor_threads=64		- size of the platform thread pool
+	 * log_level=info			- debug, info, warn or error
 	 * servent0.port=1100 		- listener ports for each servent <br/>
 	 * servent1.port=1200 <br/>
 	 * servent2.port=1300 <br/>
@@ -118,6 +246,20 @@ public class AppConfig {
 		
 		IS_CLIQUE = Boolean.parseBoolean(properties.getProperty("clique", "false"));
 		IS_FIFO = Boolean.parseBoolean(properties.getProperty("fifo", "false"));
+		
+		String broadcastMode = properties.getProperty("broadcast", "flood");
+		switch (broadcastMode) {
+		case "flood":
+			BROADCAST_MODE = BroadcastMode.FLOOD;
+			break;
+		case "tree":
+			BROADCAST_MODE = BroadcastMode.TREE;
+			break;
+		default:
+			timestampedErrorPrint("Problem reading broadcast. Defaulting to flood.");
+			BROADCAST_MODE = BroadcastMode.FLOOD;
+		}
+		
 		String snapshotType = properties.getProperty("snapshot");
 		if (snapshotType == null) {
 			snapshotType = "none";
@@ -132,11 +274,135 @@ public class AppConfig {
 		case "cc":
 			SNAPSHOT_TYPE = SnapshotType.COORDINATED_CHECKPOINTING;
 			break;
+		case "cl":
+			SNAPSHOT_TYPE = SnapshotType.CHANDY_LAMPORT;
+			if (!IS_FIFO) {
+				timestampedErrorPrint("Chandy-Lamport needs fifo=true. Defaulting to NONE.");
+				SNAPSHOT_TYPE = SnapshotType.NONE;
+			}
+			break;
 		default:
 			timestampedErrorPrint("Problem reading snapshot algorithm. Defaulting to NONE.");
 			SNAPSHOT_TYPE = SnapshotType.NONE;
 		}
 		
+		String codec = properties.getProperty("codec", "java");
+		switch (codec) {
+		case "java":
+			MESSAGE_CODEC = CodecType.JAVA;
+			break;
+		case "binary":
+			MESSAGE_CODEC = CodecType.BINARY;
+			break;
+		default:
+			timestampedErrorPrint("Problem reading codec. Defaulting to java.");
+			MESSAGE_CODEC = CodecType.JAVA;
+		}
+		
+		String clockEncoding = properties.getProperty("clock_encoding", "full");
+		switch (clockEncoding) {
+		case "full":
+			DELTA_CLOCKS = false;
+			break;
+		case "delta":
+			DELTA_CLOCKS = MESSAGE_CODEC == CodecType.BINARY;
+			if (!DELTA_CLOCKS) {
+				timestampedErrorPrint("Delta clock encoding needs codec=binary. Using full clocks.");
+			}
+			break;
+		default:
+			timestampedErrorPrint("Problem reading clock_encoding. Defaulting to full.");
+			DELTA_CLOCKS = false;
+		}
+		
+		try {
+			FIFO_BATCH_SIZE = Integer.parseInt(properties.getProperty("fifo_batch_size", "32"));
+			if (FIFO_BATCH_SIZE < 1) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading fifo_batch_size. Defaulting to 32.");
+			FIFO_BATCH_SIZE = 32;
+		}
+		
+		try {
+			FIFO_BATCH_WAIT_MS = Long.parseLong(properties.getProperty("fifo_batch_wait_ms", "0"));
+			if (FIFO_BATCH_WAIT_MS < 0) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading fifo_batch_wait_ms. Defaulting to 0.");
+			FIFO_BATCH_WAIT_MS = 0;
+		}
+		
+		try {
+			RETRANSMIT_MS = Long.parseLong(properties.getProperty("retransmit_ms", "1000"));
+			if (RETRANSMIT_MS <= 0) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading retransmit_ms. Defaulting to 1000.");
+			RETRANSMIT_MS = 1000;
+		}
+		
+		try {
+			RETRANSMIT_MAX_MS = Long.parseLong(properties.getProperty("retransmit_max_ms", "16000"));
+			if (RETRANSMIT_MAX_MS < RETRANSMIT_MS) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading retransmit_max_ms. Defaulting to " + Math.max(16000, RETRANSMIT_MS) + ".");
+			RETRANSMIT_MAX_MS = Math.max(16000, RETRANSMIT_MS);
+		}
+		
+		try {
+			CC_HOLD_CAPACITY = Integer.parseInt(properties.getProperty("cc_hold_capacity", "1024"));
+			if (CC_HOLD_CAPACITY < 0) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading cc_hold_capacity. Defaulting to 1024.");
+			CC_HOLD_CAPACITY = 1024;
+		}
+		
+		try {
+			DEDUP_WINDOW = Integer.parseInt(properties.getProperty("dedup_window", "65536"));
+			if (DEDUP_WINDOW <= 0) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading dedup_window. Defaulting to 65536.");
+			DEDUP_WINDOW = 65536;
+		}
+		
+		try {
+			METRICS_DUMP_MS = Long.parseLong(properties.getProperty("metrics_dump_ms", "0"));
+			if (METRICS_DUMP_MS < 0) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading metrics_dump_ms. Defaulting to 0.");
+			METRICS_DUMP_MS = 0;
+		}
+		
+		CHECKPOINTS = Boolean.parseBoolean(properties.getProperty("checkpoints", "true"));
+		CHECKPOINT_DIR = Path.of(configName).toAbsolutePath().getParent().resolve("checkpoint");
+		
+		String executor = properties.getProperty("executor", "virtual");
+		switch (executor) {
+		case "virtual":
+			USE_VIRTUAL_THREADS = true;
+			break;
+		case "platform":
+			USE_VIRTUAL_THREADS = false;
+			break;
+		default:
+			timestampedErrorPrint("Problem reading executor. Defaulting to virtual.");
+			USE_VIRTUAL_THREADS = true;
+		}
+		
+		try {
+			EXECUTOR_THREADS = Integer.parseInt(properties.getProperty("executor_threads", "64"));
+			if (EXECUTOR_THREADS < 1) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			timestampedErrorPrint("Problem reading executor_threads. Defaulting to 64.");
+			EXECUTOR_THREADS = 64;
+		}
+		
+		String logLevel = properties.getProperty("log_level", "debug");
+		try {
+			LOG_LEVEL = LogLevel.valueOf(logLevel.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			timestampedErrorPrint("Problem reading log_level. Defaulting to debug.");
+			LOG_LEVEL = LogLevel.DEBUG;
+		}
+		
 		for (int i = 0; i < serventCount; i++) {
 			String portProperty = "servent"+i+".port";
 			int serventPort = -1;
@@ -0,0 +1,179 @@
+package com.kids.app;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one place where the servent runs its short-lived work: message handlers, delayed sends
+ * and transaction burst workers.
+ * <p>
+ * Depending on {@link AppConfig#USE_VIRTUAL_THREADS}, tasks run either on virtual threads, one per task,
+ * or on a bounded pool of {@link AppConfig#EXECUTOR_THREADS} platform threads. The project is compiled
+ * for Java 17, so virtual threads are looked up at runtime. On a JVM without them we fall back to the platform pool.
+ * <p>
+ * Delays don't hold a thread. They are kept by a single scheduler thread, which hands the task
+ * over to the executor once the delay is up.
+ */
+public class AppExecutors {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Runs the task on the shared executor.
+     */
+    public static void execute(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Runs the task on the shared executor once the delay has passed.
+     */
+    public static void schedule(Runnable task, long delayMillis) {
+        getScheduler().schedule(() -> execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the task on the shared executor every period, starting one period from now,
+     * until the servent shuts down.
+     */
+    public static void scheduleAtFixedRate(Runnable task, long periodMillis) {
+        getScheduler().scheduleAtFixedRate(() -> execute(task), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an executor that runs its tasks one at a time, in the order they were submitted,
+     * on the shared executor. No thread is held while it has nothing to do.
+     */
+    public static Executor serial() {
+        return new SerialExecutor();
+    }
+
+    /**
+     * Stops taking new work, but lets the scheduled and running tasks finish first,
+     * so messages still waiting out their delay get sent before the servent goes down.
+     */
+    public static void shutdown() {
+        ScheduledExecutorService currentScheduler;
+        ExecutorService currentExecutor;
+        synchronized (AppExecutors.class) {
+            currentScheduler = scheduler;
+            currentExecutor = executor;
+        }
+
+        try {
+            if (currentScheduler != null) {
+                currentScheduler.shutdown();
+                currentScheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            if (currentExecutor != null) {
+                currentExecutor.shutdown();
+                currentExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = AppConfig.USE_VIRTUAL_THREADS ? newVirtualThreadExecutor() : null;
+            if (executor == null) {
+                executor = newPlatformExecutor(AppConfig.EXECUTOR_THREADS);
+            }
+        }
+        return executor;
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor newScheduler = new ScheduledThreadPoolExecutor(1, daemonThreads("servent-scheduler"));
+            newScheduler.setRemoveOnCancelPolicy(true);
+            scheduler = newScheduler;
+        }
+        return scheduler;
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task, or null if this JVM doesn't have virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AppConfig.timestampedStandardPrint("Virtual threads are not available. Using a pool of " + AppConfig.EXECUTOR_THREADS + " threads.");
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonThreads("servent-worker")
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs tasks one after another on the shared executor, taking the next one only when the previous is done.
+     */
+    private static class SerialExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running = false;
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+            if (!running) {
+                running = true;
+                AppExecutors.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        return;
+                    }
+                }
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    AppConfig.timestampedErrorPrint("Error running task: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
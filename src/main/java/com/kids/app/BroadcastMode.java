@@ -0,0 +1,18 @@
+package com.kids.app;
+
+/**
+ * How a causal broadcast is passed on in a graph that is not a clique, selected with the
+ * <code>broadcast</code> option in <code>servent_list.properties</code>.
+ */
+public enum BroadcastMode {
+    /**
+     * Every servent passes the first copy it gets on to all of its neighbors, except the one it came from.
+     * Works over any graph, with up to two messages per edge for each broadcast.
+     */
+    FLOOD,
+    /**
+     * Every servent passes a broadcast on to its children in the shortest-path tree rooted at the
+     * original sender, see {@link com.kids.app.servent.Topology}. One message per servent for each broadcast.
+     */
+    TREE
+}
@@ -1,18 +1,28 @@
 package com.kids.app;
 
 import com.kids.app.handler_factory.MessageHandlerFactory;
+import com.kids.app.metrics.Metrics;
+import com.kids.app.servent.Topology;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelCounters;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshotTree;
+import com.kids.app.snapshot_bitcake.alagar_venkatesan.AVSnapshotState;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.app.processing_strategy.CausalMessageProcessingStrategy;
 import com.kids.app.processing_strategy.FIFOMessageProcessingStrategy;
 import com.kids.app.processing_strategy.MessageProcessingStrategy;
+import com.kids.app.processing_strategy.PendingMessageBuffer;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
 import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.TransactionMessage;
+import com.kids.servent.message.util.DuplicateFilter;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 /**
@@ -23,24 +33,35 @@ public class CausalBroadcast {
 
     @Getter private static final CausalBroadcast instance;
 
-    private final ExecutorService executor = Executors.newWorkStealingPool();
+    /*
+     * Handlers of committed messages run one by one, in the order the messages were committed.
+     * Snapshot handlers read state that earlier transactions change, so they must not overtake them.
+     */
+    private final Executor executor = AppExecutors.serial();
 
     @Getter private final VectorClock vectorClock = new VectorClock();
-    private final Queue<Message> pendingMessages = new ConcurrentLinkedQueue<>();
-    private final Object lock = new Object();
+    private final PendingMessageBuffer pendingMessages = new PendingMessageBuffer();
+
+    /*
+     * Pending messages are delivered by a single thread, which is the only one that checks them against the clock
+     * and advances the entries of other servents. Everyone else adds to the buffer without locking and wakes it up.
+     * Our own entry is advanced by the threads that send our broadcasts, and after a recovery
+     * the first message from every servent can advance any entry, see {@link #recover(ClockSnapshot)}.
+     */
+    private final Thread deliveryThread;
+    private final AtomicBoolean deliveryRequested = new AtomicBoolean();
     @Getter private SnapshotCollector snapshotCollector;
 
+    // Servents we haven't heard from since we recovered from a checkpoint
+    private final Set<Integer> resyncing = ConcurrentHashMap.newKeySet();
+
     // AB Snapshot
-    @Getter private final List<Message> sent = new CopyOnWriteArrayList<>();
-    @Getter private final List<Message> received = new CopyOnWriteArrayList<>();
-    private final Set<BasicMessage> receivedAbRequest = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    @Getter private final ABChannelCounters abChannels = new ABChannelCounters();
+    @Getter private final ABSnapshotTree abTree = new ABSnapshotTree(abChannels);
+    private final DuplicateFilter receivedAbRequest = new DuplicateFilter();
 
-    // AV Snapshot
-    @Getter @Setter private int initiatorId;
-    @Getter @Setter private int recordedAmount;
-    @Getter @Setter private Map<Integer, Integer> markerVectorClock = null;
-    private final Map<Integer, Integer> inputChannel = new ConcurrentHashMap<>();
-    private final Map<Integer, Integer> outputChannel = new ConcurrentHashMap<>();
+    // AV Snapshot, one state for every snapshot this servent got the marker of and that hasn't terminated yet
+    private final Map<SnapshotId, AVSnapshotState> avSnapshots = new ConcurrentHashMap<>();
 
     // Message processing strategies
     private MessageProcessingStrategy fifoStrategy;
@@ -53,22 +74,47 @@ public class CausalBroadcast {
 
     private CausalBroadcast() {
         initializeStrategies();
+        Metrics.gauge("causal.pending", pendingMessages::size);
+
+        deliveryThread = new Thread(this::deliverPendingMessages, "causal-delivery");
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
     }
 
     private void initializeStrategies() {
         Consumer<Message> messageProcessor = this::processMessage;
 
-        this.fifoStrategy = new FIFOMessageProcessingStrategy(pendingMessages, vectorClock, messageProcessor, lock);
-        this.causalStrategy = new CausalMessageProcessingStrategy(pendingMessages, vectorClock, messageProcessor, lock);
+        this.fifoStrategy = new FIFOMessageProcessingStrategy(pendingMessages, vectorClock, messageProcessor);
+        this.causalStrategy = new CausalMessageProcessingStrategy(pendingMessages, vectorClock, messageProcessor);
     }
 
     /**
-     * Initializes the vector clock with the given number of servents.
+     * Initializes the vector clock, and the AB channel counters, with the given number of servents.
      *
      * @param serventCount the number of servents in the system.
      */
     public void initializeVectorClock(int serventCount) {
         vectorClock.initialize(serventCount);
+        abChannels.initialize(serventCount);
+    }
+
+    /**
+     * Picks the neighbors a causal broadcast is passed on to, once we got it for the first time.
+     * In a clique everyone gets it from the original sender, so it isn't passed on at all.
+     *
+     * @param originalSenderId the servent that broadcast the message
+     * @param fromId the neighbor we got the message from
+     * @return the neighbors to send the message to
+     */
+    public List<Integer> rebroadcastTargets(int originalSenderId, int fromId) {
+        if (AppConfig.IS_CLIQUE) return List.of();
+
+        return switch (AppConfig.BROADCAST_MODE) {
+            case FLOOD -> AppConfig.myServentInfo.neighbors().stream()
+                    .filter(neighbor -> neighbor != fromId)
+                    .toList();
+            case TREE -> Topology.children(AppConfig.myServentInfo.id(), originalSenderId);
+        };
     }
 
     /**
@@ -78,17 +124,32 @@ public class CausalBroadcast {
      * @param newMessage the message triggering the clock update.
      */
     public void causalClockIncrement(Message newMessage) {
-        AppConfig.timestampedStandardPrint("Committing # " + newMessage);
+        AppConfig.timestampedDebugPrint(() -> "Committing # " + newMessage);
         incrementClock(newMessage.getOriginalSenderInfo().id());
         checkPendingMessages();
     }
 
     /**
-     * Checks the pending messages queue and commits messages that satisfy the causal order.
+     * Wakes up the delivery thread, which checks the pending messages queue and commits messages that satisfy the causal order.
+     * Returns right away. If the thread is already checking, it checks once more afterwards.
      */
     public void checkPendingMessages() {
-        if (AppConfig.IS_FIFO) fifoStrategy.processPendingMessages();
-        else causalStrategy.processPendingMessages();
+        if (deliveryRequested.compareAndSet(false, true)) LockSupport.unpark(deliveryThread);
+    }
+
+    private void deliverPendingMessages() {
+        while (true) {
+            while (!deliveryRequested.getAndSet(false)) {
+                LockSupport.park(this);
+            }
+
+            try {
+                if (AppConfig.IS_FIFO) fifoStrategy.processPendingMessages();
+                else causalStrategy.processPendingMessages();
+            } catch (RuntimeException e) {
+                AppConfig.timestampedErrorPrint("Error delivering pending messages: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -98,8 +159,8 @@ public class CausalBroadcast {
      */
     private void processMessage(Message pendingMessage) {
         BasicMessage basicMessage = (BasicMessage) pendingMessage;
-        AppConfig.timestampedStandardPrint("Committing: " + pendingMessage);
-        incrementClock(pendingMessage.getOriginalSenderInfo().id());
+        AppConfig.timestampedDebugPrint(() -> "Committing: " + pendingMessage);
+        if (isBroadcast(pendingMessage)) incrementClock(pendingMessage.getOriginalSenderInfo().id());
 
         try {
             if (messageHandlerFactory == null) {
@@ -108,12 +169,33 @@ public class CausalBroadcast {
             }
             
             Runnable handler = messageHandlerFactory.createHandler(basicMessage);
-            if (handler != null) executor.submit(handler);
+            if (handler != null) executor.execute(handler);
         } catch (Exception e) {
             AppConfig.timestampedErrorPrint("Error handling message " + basicMessage + ": " + e.getMessage());
         }
     }
     
+    /**
+     * Transactions are routed to their receiver alone, so no one else can count them in the sender's clock entry.
+     * They still carry the sender's clock, and are committed only after everything the sender had committed.
+     * As nothing orders them among themselves, transactions from one sender to the same receiver can be committed
+     * in any order. AB tells which ones were received by their index in the sender's log, see {@link TransactionMessage},
+     * and AV records each one by the clock it carries, so neither depends on that order.
+     */
+    private static boolean isBroadcast(Message message) {
+        return message.getMessageType() != MessageType.TRANSACTION;
+    }
+
+    /**
+     * Runs a handler after the handlers of the messages committed so far, on the same thread.
+     * For messages outside the causal order that still have to see the amount and the AB totals as transactions leave them.
+     *
+     * @param handler the handler to run
+     */
+    public void executeInOrder(Runnable handler) {
+        executor.execute(handler);
+    }
+
     /**
      * Fallback handler for when messageHandlerFactory is not yet initialized
      */
@@ -124,18 +206,37 @@ public class CausalBroadcast {
     }
 
     /**
-     * Checks if a given transaction should be recorded for the AV snapshot.
-     * If the vector clock condition is met, the transferred amount is stored in the input channel.
+     * Starts recording an AV snapshot, unless it is already being recorded.
+     *
+     * @param snapshotId the id of the snapshot
+     * @param markerVectorClock the vector clock the marker was sent with
+     * @param recordedAmount the amount of bitcake this servent has
+     */
+    public void startAVSnapshot(SnapshotId snapshotId, ClockSnapshot markerVectorClock, int recordedAmount) {
+        avSnapshots.putIfAbsent(snapshotId, new AVSnapshotState(snapshotId, recordedAmount, markerVectorClock));
+    }
+
+    /**
+     * Stops recording an AV snapshot.
+     *
+     * @param snapshotId the id of the snapshot
+     * @return what was recorded, or null if the snapshot wasn't being recorded
+     */
+    public AVSnapshotState finishAVSnapshot(SnapshotId snapshotId) {
+        return avSnapshots.remove(snapshotId);
+    }
+
+    /**
+     * Checks if a given transaction should be recorded for the AV snapshots in progress.
+     * For every snapshot whose vector clock condition is met, the transferred amount is stored in its input channel.
      *
      * @param senderVectorClock the vector clock of the transaction's sender
-     * @param neighbor the ID of the neighbor sending or receiving this transaction
+     * @param neighbor the ID of the neighbor sending this transaction
      * @param amount the amount of bitcake involved in the transaction
      */
-    public void recordTransaction(Map<Integer, Integer> senderVectorClock, int neighbor, int amount) {
-        if (markerVectorClock == null) return;
-
-        if (senderVectorClock.get(initiatorId) <= markerVectorClock.get(initiatorId)) {
-            inputChannel.compute(neighbor, (key, oldValue) -> (oldValue == null ? 0 : oldValue) + amount);
+    public void recordTransaction(ClockSnapshot senderVectorClock, int neighbor, int amount) {
+        for (AVSnapshotState snapshot : avSnapshots.values()) {
+            snapshot.recordTransaction(senderVectorClock, neighbor, amount);
         }
     }
 
@@ -168,6 +269,7 @@ public class CausalBroadcast {
      * @param msg the message to add
      */
     public void addPendingMessage(Message msg) {
+        if (!resyncing.isEmpty()) resync(msg);
         if (msg.getMessageType() == MessageType.CC_SNAPSHOT_REQUEST) {
             AppConfig.timestampedStandardPrint("Adding CC_SNAPSHOT_REQUEST to pending messages: " + msg);
         }
@@ -175,31 +277,52 @@ public class CausalBroadcast {
     }
 
     /**
-     * Adds a received message to the list.
-     *
-     * @param receivedMessage the received message
+     * Restores the clock of a checkpoint, after the servent started over from it.
+     * <p>
+     * Whatever the others broadcast between the checkpoint and the crash was delivered to us before and is lost,
+     * and won't be sent again, so messages that depend on it would wait forever. Instead, the clock of the first
+     * message from every servent is taken as what we have seen, and merged in before the message is checked.
      */
-    public void addReceivedMessage(Message receivedMessage) {
-        received.add(receivedMessage);
+    public void recover(ClockSnapshot clock) {
+        vectorClock.merge(clock);
+
+        for (int serventId = 0; serventId < AppConfig.getServentCount(); serventId++) {
+            if (serventId != AppConfig.myServentInfo.id()) resyncing.add(serventId);
+        }
+    }
+
+    private void resync(Message msg) {
+        ClockSnapshot senderClock = ((BasicMessage) msg).getSenderClock();
+        if (senderClock != null && resyncing.remove(msg.getOriginalSenderInfo().id())) {
+            vectorClock.merge(senderClock);
+        }
     }
 
     /**
-     * Adds a sent message to the list.
+     * Counts a received transaction for the AB snapshot, unless a recovery already settled it.
      *
-     * @param sentMessage the sent message
+     * @param senderId the ID of the servent the transaction came from
+     * @param messageId the ID of the transaction message
+     * @param index the index of the transaction in the sender's log
+     * @param amount the amount of bitcake in the transaction
+     * @return false if the transaction must not be applied
      */
-    public void addSentMessage(Message sentMessage) {
-        sent.add(sentMessage);
+    public boolean recordReceivedTransaction(int senderId, int messageId, int index, int amount) {
+        return abChannels.recordReceived(senderId, messageId, index, amount);
     }
 
-    public Map<Integer, Integer> getInputChannel() {
-        return Collections.unmodifiableMap(inputChannel);
+    /**
+     * Counts and logs a sent transaction for the AB snapshot.
+     *
+     * @param receiverId the ID of the servent the transaction is for
+     * @param messageId the ID of the transaction message
+     * @param amount the amount of bitcake in the transaction
+     * @return the index of the transaction in the log, which the receiver needs to know
+     */
+    public int recordSentTransaction(int receiverId, int messageId, int amount) {
+        return abChannels.recordSent(receiverId, messageId, amount);
     }
 
-    public Map<Integer, Integer> getOutputChannel() {
-        return Collections.unmodifiableMap(outputChannel);
-    }
-    
     /**
      * For compatibility with existing code that uses the static vector clock
      * 
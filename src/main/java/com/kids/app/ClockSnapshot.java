@@ -0,0 +1,187 @@
+package com.kids.app;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable copy of a {@link VectorClock}, as carried by messages.
+ * <p>
+ * Values are kept in a dense array indexed by servent id, so comparisons walk two arrays
+ * without boxing or allocating. {@link #asMap()} gives a read-only map view for code that
+ * still works with the map representation.
+ */
+public final class ClockSnapshot implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 4519263150713428270L;
+
+    private final int[] values;
+
+    private ClockSnapshot(int[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Creates a snapshot holding a copy of the given values, indexed by servent id.
+     */
+    public static ClockSnapshot of(int... values) {
+        return new ClockSnapshot(values.clone());
+    }
+
+    /**
+     * Creates a snapshot from a map of servent ids to values. Ids missing from the map are 0.
+     */
+    public static ClockSnapshot fromMap(Map<Integer, Integer> clock) {
+        int size = clock.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        int[] values = new int[size];
+        clock.forEach((id, value) -> values[id] = value);
+        return new ClockSnapshot(values);
+    }
+
+    /**
+     * Wraps an array that nobody else holds a reference to.
+     */
+    static ClockSnapshot wrap(int[] values) {
+        return new ClockSnapshot(values);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return the value for the servent, or 0 if the snapshot has no entry for it
+     */
+    public int get(int serventId) {
+        return serventId >= 0 && serventId < values.length ? values[serventId] : 0;
+    }
+
+    /**
+     * @return a copy of the values, indexed by servent id
+     */
+    public int[] toArray() {
+        return values.clone();
+    }
+
+    /**
+     * Finds an entry that is greater in this snapshot than in the other one.
+     *
+     * @return id of the first such entry, or -1 if there is none
+     */
+    public int findGreaterEntry(ClockSnapshot other) {
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] > other.get(id)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if every entry is less than or equal to the other's, and at least one is strictly less
+     */
+    public boolean happenedBefore(ClockSnapshot other) {
+        return findGreaterEntry(other) == -1 && other.findGreaterEntry(this) != -1;
+    }
+
+    /**
+     * @return true if neither snapshot happened before the other and they are not equal
+     */
+    public boolean isConcurrentWith(ClockSnapshot other) {
+        return findGreaterEntry(other) != -1 && other.findGreaterEntry(this) != -1;
+    }
+
+    /**
+     * @return a new snapshot holding the entry-wise maximum of the two
+     */
+    public ClockSnapshot merge(ClockSnapshot other) {
+        int[] merged = Arrays.copyOf(values, Math.max(values.length, other.values.length));
+        for (int id = 0; id < other.values.length; id++) {
+            merged[id] = Math.max(merged[id], other.values[id]);
+        }
+        return new ClockSnapshot(merged);
+    }
+
+    /**
+     * Returns a read-only map view of this snapshot, from servent id to value.
+     * Nothing is copied, entries are boxed only as they are read.
+     */
+    public Map<Integer, Integer> asMap() {
+        return new MapView();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ClockSnapshot other && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /**
+     * Formats the snapshot the same way the map based clocks were printed.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int id = 0; id < values.length; id++) {
+            if (id > 0) builder.append(", ");
+            builder.append(id).append('=').append(values[id]);
+        }
+        return builder.append('}').toString();
+    }
+
+    private class MapView extends AbstractMap<Integer, Integer> {
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer id && id >= 0 && id < values.length;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            return containsKey(key) ? values[(Integer) key] : null;
+        }
+
+        @Override
+        public Set<Entry<Integer, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return values.length;
+                }
+
+                @Override
+                public Iterator<Entry<Integer, Integer>> iterator() {
+                    return new Iterator<>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < values.length;
+                        }
+
+                        @Override
+                        public Entry<Integer, Integer> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int id = next++;
+                            return new SimpleImmutableEntry<>(id, values[id]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -102,6 +102,7 @@ public class MultipleServentStarter {
 		// startServentTest("ab-snapshot-example");
 		// startServentTest("av-snapshot-example");
 		startServentTest("cc-snapshot-example");
+		// startServentTest("cl-snapshot-example");
 	}
 
 }
@@ -2,134 +2,200 @@ package com.kids.app;
 
 import lombok.NoArgsConstructor;
 
-import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * VectorClock implementation for distributed system.
  * Manages vector clocks for causality tracking and message ordering.
+ * <p>
+ * Values are kept in an {@link AtomicIntegerArray} indexed by servent id, so increments from
+ * different threads don't need a lock, and comparisons run in place without boxing.
+ * Messages carry an immutable {@link ClockSnapshot} taken with {@link #snapshot()}.
  */
 @NoArgsConstructor
 public class VectorClock {
 
-    private final Map<Integer, Integer> clockValues = new ConcurrentHashMap<>();
-    
+    private volatile AtomicIntegerArray clockValues = new AtomicIntegerArray(0);
+
     /**
      * Creates a vector clock with specified number of nodes.
-     * 
+     *
      * @param nodeCount The number of nodes in the system
      */
     public VectorClock(int nodeCount) {
         initialize(nodeCount);
     }
-    
+
     /**
-     * Creates a vector clock from an existing map of values.
-     * 
-     * @param values Existing clock values
+     * Creates a vector clock from an existing snapshot.
+     *
+     * @param snapshot Existing clock values
      */
-    public VectorClock(Map<Integer, Integer> values) {
-        clockValues.putAll(values);
+    public VectorClock(ClockSnapshot snapshot) {
+        clockValues = new AtomicIntegerArray(snapshot.toArray());
     }
-    
+
     /**
      * Initializes the vector clock with zeros up to nodeCount.
-     * 
+     *
      * @param nodeCount The number of nodes to initialize
      */
     public void initialize(int nodeCount) {
-        Stream.iterate(0, i -> i + 1)
-              .limit(nodeCount)
-              .forEach(i -> clockValues.put(i, 0));
+        clockValues = new AtomicIntegerArray(nodeCount);
     }
-    
+
     /**
      * Increments the clock value for a specific node.
-     * 
+     *
      * @param nodeId The ID of the node to increment
      * @return This vector clock for method chaining
      */
     public VectorClock increment(int nodeId) {
-        clockValues.computeIfPresent(nodeId, (k, v) -> v + 1);
+        AtomicIntegerArray values = clockValues;
+        if (nodeId >= 0 && nodeId < values.length()) {
+            values.incrementAndGet(nodeId);
+        }
         return this;
     }
-    
+
+    /**
+     * Raises every entry to at least the value in the other clock.
+     *
+     * @param other The clock to merge in
+     * @return This vector clock for method chaining
+     */
+    public VectorClock merge(ClockSnapshot other) {
+        AtomicIntegerArray values = clockValues;
+        int size = Math.min(values.length(), other.size());
+        for (int id = 0; id < size; id++) {
+            int otherValue = other.get(id);
+            values.accumulateAndGet(id, otherValue, Math::max);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the clock value for a specific node.
+     *
+     * @param nodeId The ID of the node
+     * @return The value, or 0 if the node is unknown
+     */
+    public int getValue(int nodeId) {
+        AtomicIntegerArray values = clockValues;
+        return nodeId >= 0 && nodeId < values.length() ? values.get(nodeId) : 0;
+    }
+
+    public int size() {
+        return clockValues.length();
+    }
+
+    /**
+     * Takes an immutable copy of the current values, to be carried by a message.
+     *
+     * @return The snapshot
+     */
+    public ClockSnapshot snapshot() {
+        AtomicIntegerArray values = clockValues;
+        int[] copy = new int[values.length()];
+        for (int id = 0; id < copy.length; id++) {
+            copy[id] = values.get(id);
+        }
+        return ClockSnapshot.wrap(copy);
+    }
+
     /**
      * Checks if any entry in other clock is greater than the corresponding entry in this clock.
-     * 
-     * @param other The other vector clock to compare with
+     *
+     * @param other The other clock to compare with
      * @return true if other has at least one greater entry
      */
-    public boolean isOtherClockGreater(VectorClock other) {
-        if (clockValues.size() != other.clockValues.size()) {
+    public boolean isOtherClockGreater(ClockSnapshot other) {
+        if (clockValues.length() != other.size()) {
             throw new IllegalArgumentException("Clocks are not same size");
         }
-        
-        return clockValues.entrySet().stream()
-                .anyMatch(entry -> {
-                    Integer otherValue = other.clockValues.get(entry.getKey());
-                    return otherValue != null && otherValue > entry.getValue();
-                });
-    }
-    
+
+        return findGreaterEntry(other) != -1;
+    }
+
     /**
-     * Compares with a map-based vector clock (for backward compatibility).
-     * 
-     * @param otherClock The other clock as a map
-     * @return true if other has at least one greater entry
+     * Finds an entry in other clock that is greater than the corresponding entry in this clock.
+     *
+     * @param other The other clock
+     * @return id of the first such entry, or -1 if there is none
+     */
+    public int findGreaterEntry(ClockSnapshot other) {
+        AtomicIntegerArray values = clockValues;
+        int size = Math.min(values.length(), other.size());
+        for (int id = 0; id < size; id++) {
+            if (other.get(id) > values.get(id)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if this clock happened before the other one: no entry is greater and at least one is smaller.
+     *
+     * @param other The other clock
+     * @return true if this clock happened before the other
+     */
+    public boolean happenedBefore(ClockSnapshot other) {
+        return snapshot().happenedBefore(other);
+    }
+
+    /**
+     * Checks if neither this clock nor the other one happened before each other.
+     *
+     * @param other The other clock
+     * @return true if the clocks are concurrent
      */
-    public boolean isOtherClockGreater(Map<Integer, Integer> otherClock) {
-        return isOtherClockGreater(new VectorClock(otherClock));
+    public boolean isConcurrentWith(ClockSnapshot other) {
+        return snapshot().isConcurrentWith(other);
     }
-    
+
     /**
-     * Returns an unmodifiable view of the clock values.
-     * 
+     * Returns a read-only map view of a copy of the clock values.
+     *
      * @return The current clock values
      */
     public Map<Integer, Integer> getClockValues() {
-        return Collections.unmodifiableMap(clockValues);
+        return snapshot().asMap();
     }
-    
+
     /**
      * Creates a copy of this vector clock.
-     * 
+     *
      * @return A new vector clock with the same values
      */
     public VectorClock copy() {
-        return new VectorClock(clockValues);
+        return new VectorClock(snapshot());
     }
-    
+
     /**
      * Checks if this vector clock satisfies FIFO ordering with the sender's clock.
-     * 
+     *
      * @param senderClock The sender's vector clock
      * @param senderId The ID of the sender node
      * @return true if causality is violated, false otherwise
      */
-    public boolean isCausalityViolatedFIFO(Map<Integer, Integer> senderClock, int senderId) {
+    public boolean isCausalityViolatedFIFO(ClockSnapshot senderClock, int senderId) {
         if (senderClock == null) {
             return true;
         }
-        
-        return senderClock.entrySet().stream()
-                .anyMatch(entry -> {
-                    int id = entry.getKey();
-                    int clock = entry.getValue();
-                    int localClock = clockValues.getOrDefault(id, 0);
-                    
-                    if (id == senderId) {
-                        return clock != localClock + 1;
-                    } else {
-                        return clock > localClock;
-                    }
-                });
-    }
-    
+
+        for (int id = 0; id < senderClock.size(); id++) {
+            int clock = senderClock.get(id);
+            int localClock = getValue(id);
+
+            if (id == senderId ? clock != localClock + 1 : clock > localClock) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
-        return clockValues.toString();
+        return snapshot().toString();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.kids.app.checkpoint;
+
+import com.kids.app.ClockSnapshot;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+
+import java.util.Map;
+
+/**
+ * What a servent recorded for one snapshot, as kept in its {@link CheckpointLog}.
+ * <p>
+ * inTransit holds, by sender, the bitcakes that were sent to this servent before the snapshot and received after it,
+ * so together with the amounts every bitcake in the system belongs to exactly one checkpoint of a snapshot.
+ * Coordinated Checkpointing stops transactions while it records, so it has none.
+ *
+ * @param vectorClock our vector clock when we recorded, or null if the algorithm doesn't use one
+ * @param channels running totals of the transactions with every other servent, by its id, for the algorithms that keep them.
+ *                 The ones in transit towards us count as received, as they are in our total amount
+ */
+public record Checkpoint(
+        SnapshotId snapshotId,
+        SnapshotType snapshotType,
+        int amount,
+        ClockSnapshot vectorClock,
+        Map<Integer, Integer> inTransit,
+        Map<Integer, Channel> channels
+) {
+
+    /**
+     * How many transactions, and how many bitcakes in total, we sent to one servent and received from it.
+     */
+    public record Channel(int sentCount, int sentAmount, int receivedCount, int receivedAmount) { }
+
+    /**
+     * @return our amount together with the bitcakes in transit that belong to us
+     */
+    public int totalAmount() {
+        return amount + inTransit.values().stream().mapToInt(Integer::intValue).sum();
+    }
+}
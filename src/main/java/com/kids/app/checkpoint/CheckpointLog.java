@@ -0,0 +1,260 @@
+package com.kids.app.checkpoint;
+
+import com.kids.app.ClockSnapshot;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.servent.message.codec.WireReader;
+import com.kids.servent.message.codec.WireWriter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of a servent's checkpoints, kept in a memory-mapped file.
+ * <p>
+ * The file starts with a magic number, a version and the message id limit, followed by the records one after another: the length
+ * of the body, the body, and a CRC32 of the body. The body holds the snapshot id first, then the snapshot type,
+ * the amount, the vector clock, the in-transit amounts and the channel totals, with the varints of {@link WireWriter}.
+ * The mapping is larger than the records and the rest of it is zeros, so the records end at the first length of 0.
+ * A record that a crash cut short fails its checksum, and the next one is written over it.
+ * <p>
+ * Opening the log scans the records once, to find where the next one goes and to index them by snapshot id.
+ * Every record is forced to disk before {@link #append(Checkpoint)} returns.
+ * <p>
+ * The message id limit is kept here so a servent that starts over after a crash doesn't reuse the ids of its
+ * messages from before, which the others would drop as duplicates. Ids are reserved ahead in blocks,
+ * see {@link Checkpoints#reserveMessageIds()}, and every id that was used is below the limit.
+ */
+public class CheckpointLog {
+
+    private static final int MAGIC = 0x4B434B50;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    // Where the next record goes
+    private int end = HEADER_SIZE;
+    private int latestOffset = -1;
+    private final Map<SnapshotId, Integer> index = new HashMap<>();
+
+    private CheckpointLog(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the log at the given path, creating it and its directory if they don't exist.
+     */
+    public static CheckpointLog open(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        CheckpointLog log = new CheckpointLog(path, channel);
+        log.map(Math.max(channel.size(), INITIAL_SIZE));
+        log.scan();
+        return log;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes a checkpoint at the end of the log. A later checkpoint of the same snapshot replaces it in the index.
+     */
+    public synchronized void append(Checkpoint checkpoint) throws IOException {
+        byte[] body = encode(checkpoint);
+
+        // Length, body, checksum, and the length of 0 that ends the log
+        int next = end + 8 + body.length;
+        if (next + 4 > buffer.capacity()) {
+            map(Math.max(2L * buffer.capacity(), next + 4));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        buffer.putInt(end, body.length);
+        buffer.put(end + 4, body);
+        buffer.putInt(end + 4 + body.length, (int) crc.getValue());
+        buffer.putInt(next, 0);
+        buffer.force();
+
+        index.put(checkpoint.snapshotId(), end);
+        latestOffset = end;
+        end = next;
+    }
+
+    /**
+     * @return the checkpoint of the snapshot, or null if there is none
+     */
+    public synchronized Checkpoint read(SnapshotId snapshotId) throws IOException {
+        Integer offset = index.get(snapshotId);
+        return offset == null ? null : decode(body(offset));
+    }
+
+    /**
+     * @return the checkpoint written last, or null if the log is empty
+     */
+    public synchronized Checkpoint latest() throws IOException {
+        return latestOffset < 0 ? null : decode(body(latestOffset));
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the ids of the snapshots that have a checkpoint
+     */
+    public synchronized Set<SnapshotId> snapshotIds() {
+        return Set.copyOf(index.keySet());
+    }
+
+    /**
+     * @return the id below which every message id we used is
+     */
+    public synchronized int getMessageIdLimit() {
+        return buffer.getInt(8);
+    }
+
+    /**
+     * Raises the message id limit, if it's below the given one, and forces it to disk.
+     */
+    public synchronized void reserveMessageIds(int limit) {
+        if (limit <= buffer.getInt(8)) return;
+
+        buffer.putInt(8, limit);
+        buffer.force();
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Checkpoint log " + path + " is too large");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Checks the header, or writes it to a new file, and indexes the records up to the first one that is not whole.
+     */
+    private void scan() throws IOException {
+        if (buffer.getInt(0) == 0 && buffer.getInt(4) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, 0);
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.force();
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " is not a checkpoint log");
+        }
+
+        int offset = HEADER_SIZE;
+        while (offset + 4 <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - 8) break;
+
+            byte[] body = body(offset);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (buffer.getInt(offset + 4 + length) != (int) crc.getValue()) break;
+
+            WireReader reader = new WireReader(body);
+            index.put(new SnapshotId(reader.readVarInt(), reader.readVarInt()), offset);
+            latestOffset = offset;
+            offset += 8 + length;
+        }
+        end = offset;
+    }
+
+    private byte[] body(int offset) {
+        byte[] body = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, body);
+        return body;
+    }
+
+    private static byte[] encode(Checkpoint checkpoint) {
+        WireWriter writer = new WireWriter();
+        writer.writeVarInt(checkpoint.snapshotId().initiatorId());
+        writer.writeVarInt(checkpoint.snapshotId().sequence());
+        writer.writeByte(checkpoint.snapshotType().ordinal());
+        writer.writeSignedVarInt(checkpoint.amount());
+
+        // Size + 1, so that 0 stands for no clock
+        ClockSnapshot clock = checkpoint.vectorClock();
+        if (clock == null) {
+            writer.writeVarInt(0);
+        } else {
+            writer.writeVarInt(clock.size() + 1);
+            for (int id = 0; id < clock.size(); id++) {
+                writer.writeVarInt(clock.get(id));
+            }
+        }
+
+        writer.writeVarInt(checkpoint.inTransit().size());
+        for (Map.Entry<Integer, Integer> entry : checkpoint.inTransit().entrySet()) {
+            writer.writeVarInt(entry.getKey());
+            writer.writeSignedVarInt(entry.getValue());
+        }
+
+        writer.writeVarInt(checkpoint.channels().size());
+        for (Map.Entry<Integer, Checkpoint.Channel> entry : checkpoint.channels().entrySet()) {
+            Checkpoint.Channel channel = entry.getValue();
+            writer.writeVarInt(entry.getKey());
+            writer.writeVarInt(channel.sentCount());
+            writer.writeVarInt(channel.sentAmount());
+            writer.writeVarInt(channel.receivedCount());
+            writer.writeVarInt(channel.receivedAmount());
+        }
+        return writer.toByteArray();
+    }
+
+    private static Checkpoint decode(byte[] body) throws IOException {
+        WireReader reader = new WireReader(body);
+        SnapshotId snapshotId = new SnapshotId(reader.readVarInt(), reader.readVarInt());
+
+        int type = reader.readByte();
+        if (type >= SnapshotType.values().length) {
+            throw new IOException("Unknown snapshot type " + type + " in checkpoint of snapshot " + snapshotId);
+        }
+        int amount = reader.readSignedVarInt();
+
+        ClockSnapshot clock = null;
+        int clockSize = reader.readVarInt() - 1;
+        if (clockSize >= 0) {
+            int[] values = new int[clockSize];
+            for (int id = 0; id < clockSize; id++) {
+                values[id] = reader.readVarInt();
+            }
+            clock = ClockSnapshot.of(values);
+        }
+
+        int senders = reader.readVarInt();
+        Map<Integer, Integer> inTransit = new HashMap<>();
+        for (int i = 0; i < senders; i++) {
+            inTransit.put(reader.readVarInt(), reader.readSignedVarInt());
+        }
+
+        int servents = reader.readVarInt();
+        Map<Integer, Checkpoint.Channel> channels = new HashMap<>();
+        for (int i = 0; i < servents; i++) {
+            channels.put(reader.readVarInt(), new Checkpoint.Channel(reader.readVarInt(), reader.readVarInt(), reader.readVarInt(), reader.readVarInt()));
+        }
+
+        return new Checkpoint(snapshotId, SnapshotType.values()[type], amount, clock, Map.copyOf(inTransit), Map.copyOf(channels));
+    }
+}
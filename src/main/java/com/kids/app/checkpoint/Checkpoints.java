@@ -0,0 +1,107 @@
+package com.kids.app.checkpoint;
+
+import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
+import com.kids.servent.message.implementation.BasicMessage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The servent's own {@link CheckpointLog}, in {@link AppConfig#CHECKPOINT_DIR}.
+ * <p>
+ * Every snapshot algorithm hands its local checkpoint in here once the servent knows everything that belongs to it.
+ * If checkpoints are turned off, or the log couldn't be opened, nothing is written.
+ */
+public class Checkpoints {
+
+    // Message ids are reserved a block at a time, checked this often
+    private static final int MESSAGE_ID_BLOCK = 65536;
+    private static final long MESSAGE_ID_RESERVE_MS = 1000;
+
+    private static volatile CheckpointLog log;
+
+    private Checkpoints() { }
+
+    /**
+     * Opens the log of this servent. Called once on startup, after the config is read.
+     */
+    public static void open() {
+        if (!AppConfig.CHECKPOINTS) return;
+
+        Path path = AppConfig.CHECKPOINT_DIR.resolve("servent" + AppConfig.myServentInfo.id() + ".log");
+        try {
+            log = CheckpointLog.open(path);
+            AppConfig.timestampedStandardPrint("Opened checkpoint log " + path + " with " + log.size() + " checkpoints");
+        } catch (IOException e) {
+            AppConfig.timestampedErrorPrint("Couldn't open checkpoint log " + path + ": " + e.getMessage() + ". Not writing checkpoints.");
+            return;
+        }
+
+        reserveMessageIds();
+        AppExecutors.scheduleAtFixedRate(Checkpoints::reserveMessageIds, MESSAGE_ID_RESERVE_MS);
+    }
+
+    public static void record(Checkpoint checkpoint) {
+        CheckpointLog current = log;
+        if (current == null) return;
+
+        try {
+            current.append(checkpoint);
+            AppConfig.timestampedStandardPrint("Wrote checkpoint of snapshot " + checkpoint.snapshotId() + ": " + checkpoint.totalAmount() + " bitcake");
+        } catch (IOException e) {
+            AppConfig.timestampedErrorPrint("Couldn't write checkpoint of snapshot " + checkpoint.snapshotId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the limit in the log at least a block ahead of the next message id. Runs on startup, after recovery
+     * and then every {@link #MESSAGE_ID_RESERVE_MS}, so the log is written once per block instead of once per message.
+     */
+    public static void reserveMessageIds() {
+        CheckpointLog current = log;
+        if (current == null) return;
+
+        int next = BasicMessage.getNextMessageId();
+        if (next + MESSAGE_ID_BLOCK > current.getMessageIdLimit()) {
+            current.reserveMessageIds(next + 2 * MESSAGE_ID_BLOCK);
+        }
+    }
+
+    /**
+     * @return an id above every message id we ever used, or 0 if we don't know of any
+     */
+    public static int messageIdLimit() {
+        CheckpointLog current = log;
+        return current == null ? 0 : current.getMessageIdLimit();
+    }
+
+    /**
+     * @return the sequence number after the last snapshot we initiated that has a checkpoint
+     */
+    public static int nextSnapshotSequence() {
+        CheckpointLog current = log;
+        if (current == null) return 0;
+
+        int myId = AppConfig.myServentInfo.id();
+        return current.snapshotIds().stream()
+                .filter(snapshotId -> snapshotId.initiatorId() == myId)
+                .mapToInt(snapshotId -> snapshotId.sequence() + 1)
+                .max().orElse(0);
+    }
+
+    /**
+     * @return the checkpoint written last, or null if there is none or it couldn't be read
+     */
+    public static Checkpoint latest() {
+        CheckpointLog current = log;
+        if (current == null) return null;
+
+        try {
+            return current.latest();
+        } catch (IOException e) {
+            AppConfig.timestampedErrorPrint("Couldn't read checkpoint log " + current.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.kids.app.checkpoint;
+
+import com.kids.app.AppConfig;
+import com.kids.app.CausalBroadcast;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.servent.Topology;
+import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelTotals;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollectorWorker;
+import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.ab.ABRecoveryRequestMessage;
+import com.kids.servent.message.util.MessageUtil;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a servent over from its latest checkpoint, when it is started in recovery mode.
+ * <p>
+ * The servent gets back its amount from the snapshot, with the bitcakes that were in transit towards it added,
+ * as the transactions that carried them were received by the process that died. Its vector clock is the one
+ * it had when it recorded, and it catches up with the others from their next messages. AB channel totals are restored
+ * too, so later snapshots still match what we received against what the others sent. Its new snapshots and
+ * messages continue from the ids after those in the log, so the others don't take them for old ones.
+ * <p>
+ * Only checkpoints of snapshots that completed are used. AB, AV and CC servents write theirs once the initiator
+ * has everyone's state. A Chandy-Lamport servent writes its own as soon as its part is recorded and never learns
+ * whether the rest completed, so those are not recovered from.
+ * <p>
+ * Restoring a single servent doesn't conserve the bitcake total on its own. Transactions it sent after the checkpoint
+ * were applied by their receivers, but their amounts are back in the restored amount, so they count twice.
+ * Transactions it received after the checkpoint were taken from their senders and are lost with the old process.
+ * <p>
+ * With AB, the checkpoint has the totals of every channel, so the servent settles the difference with every other
+ * servent before it makes new transactions, see {@link #settleWithOthers()}. Each of them answers with its own totals
+ * of the transactions between the two, and the servent gets what it was sent and gives up what was received from it,
+ * beyond what its restored totals count. Transactions between the two that are still in flight are counted too,
+ * so both sides drop them when they arrive. AV and CC checkpoints have no channel totals, so snapshots taken after
+ * such a recovery report a total that is off by the difference, as does AB for any servent that doesn't answer in time.
+ */
+public class Recovery {
+
+    // How long a recovered servent waits for the others to settle the AB totals
+    private static final long SETTLE_TIMEOUT_MS = 10000;
+
+    // Set once an AB checkpoint is restored, its totals are settled with the others afterwards
+    private static BitcakeManager settlingManager;
+    // Servents we haven't settled with yet, null when we aren't waiting for them
+    private static volatile Set<Integer> unsettled;
+    private static volatile CountDownLatch settled;
+
+    private Recovery() { }
+
+    /**
+     * Restores the servent from its latest checkpoint, or leaves it as it is if it has none.
+     * Called on startup before the listener starts, with the log already open.
+     */
+    public static void recover(SnapshotCollectorWorker snapshotCollector) {
+        if (AppConfig.SNAPSHOT_TYPE == SnapshotType.CHANDY_LAMPORT) {
+            AppConfig.timestampedErrorPrint("Chandy-Lamport checkpoints may belong to snapshots that never completed. Starting from scratch.");
+            return;
+        }
+
+        Checkpoint checkpoint = Checkpoints.latest();
+        if (checkpoint == null) {
+            AppConfig.timestampedErrorPrint("No checkpoint to recover from. Starting from scratch.");
+            return;
+        }
+        if (checkpoint.snapshotType() != AppConfig.SNAPSHOT_TYPE) {
+            AppConfig.timestampedErrorPrint("Latest checkpoint is from a " + checkpoint.snapshotType() + " snapshot, not "
+                    + AppConfig.SNAPSHOT_TYPE + ". Starting from scratch.");
+            return;
+        }
+
+        BitcakeManager bitcakeManager = snapshotCollector.getBitcakeManager();
+        bitcakeManager.addSomeBitcakes(checkpoint.totalAmount() - bitcakeManager.getCurrentBitcakeAmount());
+
+        ClockSnapshot clock = checkpoint.vectorClock() == null ? ClockSnapshot.of() : checkpoint.vectorClock();
+        CausalBroadcast.getInstance().recover(clock);
+        if (checkpoint.snapshotType() == SnapshotType.ACHARYA_BADRINATH) {
+            restoreChannels(checkpoint);
+            settlingManager = bitcakeManager;
+        }
+
+        snapshotCollector.continueSequenceFrom(Checkpoints.nextSnapshotSequence());
+        BasicMessage.continueMessageIdsFrom(Checkpoints.messageIdLimit());
+        Checkpoints.reserveMessageIds();
+
+        AppConfig.timestampedStandardPrint("Recovered from checkpoint of snapshot " + checkpoint.snapshotId() + ": "
+                + checkpoint.amount() + " bitcake and " + (checkpoint.totalAmount() - checkpoint.amount()) + " in transit, clock " + clock);
+    }
+
+    /**
+     * Settles the AB totals with every other servent after a recovery, and waits until they all answered,
+     * or for {@link #SETTLE_TIMEOUT_MS} at most. Does nothing unless an AB checkpoint was restored.
+     * Called on startup once the listener runs, before any new transaction is made.
+     */
+    public static void settleWithOthers() {
+        if (settlingManager == null) return;
+
+        int myId = AppConfig.myServentInfo.id();
+        Set<Integer> waiting = ConcurrentHashMap.newKeySet();
+        for (int serventId = 0; serventId < AppConfig.getServentCount(); serventId++) {
+            if (serventId != myId) waiting.add(serventId);
+        }
+        settled = new CountDownLatch(waiting.size());
+        unsettled = waiting;
+
+        // Every transaction from before the crash has a lower id than these requests
+        for (int serventId : List.copyOf(waiting)) {
+            int nextHop = Topology.route(serventId);
+            if (nextHop == -1) {
+                AppConfig.timestampedErrorPrint("No route to servent " + serventId + ", can't settle with it");
+                continue;
+            }
+
+            ABRecoveryRequestMessage request = new ABRecoveryRequestMessage(
+                    AppConfig.myServentInfo, AppConfig.getInfoById(serventId), AppConfig.getInfoById(nextHop));
+            MessageUtil.sendMessage(request.makeMeASender());
+        }
+
+        try {
+            settled.await(SETTLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unsettled = null;
+
+        if (waiting.isEmpty()) {
+            AppConfig.timestampedStandardPrint("Settled with every servent, now have " + settlingManager.getCurrentBitcakeAmount() + " bitcake");
+        } else {
+            AppConfig.timestampedErrorPrint("Couldn't settle with servents " + waiting + ", the bitcake total is off by "
+                    + "whatever changed between us since the checkpoint");
+        }
+    }
+
+    /**
+     * Takes over another servent's totals of the transactions between us, and adds or takes away the bitcakes
+     * they differ by. Runs in order with the transactions, see {@link CausalBroadcast#executeInOrder(Runnable)}.
+     */
+    public static void settle(int serventId, ABChannelTotals totals) {
+        Set<Integer> waiting = unsettled;
+        if (waiting == null || !waiting.remove(serventId)) {
+            AppConfig.timestampedErrorPrint("Got totals from servent " + serventId + " that we weren't waiting for, ignoring them");
+            return;
+        }
+
+        int difference = CausalBroadcast.getInstance().getAbChannels().reconcile(serventId, totals);
+        settlingManager.addSomeBitcakes(difference);
+        AppConfig.timestampedStandardPrint("Settled with servent " + serventId + ": " + difference + " bitcake");
+        settled.countDown();
+    }
+
+    private static void restoreChannels(Checkpoint checkpoint) {
+        int serventCount = AppConfig.getServentCount();
+        int[] sentCount = new int[serventCount];
+        int[] sentAmount = new int[serventCount];
+        int[] receivedCount = new int[serventCount];
+        int[] receivedAmount = new int[serventCount];
+
+        checkpoint.channels().forEach((serventId, channel) -> {
+            if (serventId >= serventCount) return;
+            sentCount[serventId] = channel.sentCount();
+            sentAmount[serventId] = channel.sentAmount();
+            receivedCount[serventId] = channel.receivedCount();
+            receivedAmount[serventId] = channel.receivedAmount();
+        });
+
+        CausalBroadcast.getInstance().getAbChannels().restore(sentCount, sentAmount, receivedCount, receivedAmount);
+    }
+}
@@ -1,10 +1,10 @@
 package com.kids.app.handler_factory;
 
 import com.kids.app.AppConfig;
+import com.kids.app.metrics.Metrics;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.handler.implementation.TransactionHandler;
 import com.kids.servent.handler.implementation.ab.ABSnapshotRequestHandler;
-import com.kids.servent.handler.implementation.ab.ABSnapshotResponseHandler;
 import com.kids.servent.handler.implementation.av.AVDoneHandler;
 import com.kids.servent.handler.implementation.av.AVMarkerHandler;
 import com.kids.servent.handler.implementation.av.AVTerminateHandler;
@@ -13,10 +13,10 @@ import com.kids.servent.handler.implementation.cc.CCSnapshotRequestHandler;
 import com.kids.servent.handler.implementation.cc.CCSnapshotResponseHandler;
 import com.kids.servent.message.MessageType;
 import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.util.DuplicateFilter;
 
 import java.util.EnumMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Function;
 
 /**
@@ -27,7 +27,7 @@ import java.util.function.Function;
 public class MessageHandlerFactory {
     
     private final SnapshotCollector snapshotCollector;
-    private final Set<BasicMessage> receivedAbRequest;
+    private final DuplicateFilter receivedAbRequest;
 
     /*
      * A map of message types to their corresponding handler creation functions.
@@ -39,10 +39,10 @@ public class MessageHandlerFactory {
      * Creates a new MessageHandlerFactory with the given snapshot collector and received request set.
      * 
      * @param snapshotCollector the snapshot collector to use
-     * @param receivedAbRequest the set of received AB snapshot requests
+     * @param receivedAbRequest the filter of AB snapshot requests that were already handled
      * @throws IllegalArgumentException if snapshotCollector is null
      */
-    public MessageHandlerFactory(SnapshotCollector snapshotCollector, Set<BasicMessage> receivedAbRequest) {
+    public MessageHandlerFactory(SnapshotCollector snapshotCollector, DuplicateFilter receivedAbRequest) {
         if (snapshotCollector == null) {
             throw new IllegalArgumentException("SnapshotCollector cannot be null");
         }
@@ -78,21 +78,10 @@ public class MessageHandlerFactory {
             return () -> {};
         });
         
-        creators.put(MessageType.AB_SNAPSHOT_RESPONSE, msg -> {
-            try {
-                if (msg.getOriginalReceiverInfo().id() == AppConfig.myServentInfo.id()) {
-                    return new ABSnapshotResponseHandler(msg, snapshotCollector);
-                }
-            } catch (Exception e) {
-                AppConfig.timestampedErrorPrint("Error creating ABSnapshotResponseHandler: " + e.getMessage());
-            }
-            return () -> {};
-        });
-        
         creators.put(MessageType.AV_MARKER, msg -> {
             try {
                 if (snapshotCollector.getBitcakeManager() != null) {
-                    return new AVMarkerHandler(msg, snapshotCollector.getBitcakeManager().getCurrentBitcakeAmount());
+                    return new AVMarkerHandler(msg, snapshotCollector.getBitcakeManager());
                 }
             } catch (Exception e) {
                 AppConfig.timestampedErrorPrint("Error creating AVMarkerHandler: " + e.getMessage());
@@ -155,11 +144,17 @@ public class MessageHandlerFactory {
     
     /**
      * Creates a message handler for the given message.
+     * How long it runs for is recorded in the <code>handler_us.TYPE</code> histogram of its message type.
      * 
      * @param message The message to create a handler for
      * @return A runnable handler for the message, or an empty runnable if no appropriate handler exists
      */
     public Runnable createHandler(BasicMessage message) {
+        Runnable handler = createUntimedHandler(message);
+        return message == null ? handler : Metrics.timed("handler_us." + message.getMessageType(), handler);
+    }
+
+    private Runnable createUntimedHandler(BasicMessage message) {
         if (message == null) {
             AppConfig.timestampedErrorPrint("Cannot create handler for null message");
             return () -> {};
@@ -0,0 +1,113 @@
+package com.kids.app.logging;
+
+import com.kids.app.AppConfig;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous logger behind the {@link AppConfig} print methods.
+ * <p>
+ * Callers only take a timestamp and put the line into a lock-free ring buffer. A single background
+ * thread formats the lines and writes everything that piled up in one go, so a servent handling
+ * messages never waits on stdout. Lines below {@link AppConfig#LOG_LEVEL} are dropped before the
+ * message is even built, when it is passed as a {@link Supplier}.
+ * <p>
+ * Whatever is still buffered when the JVM shuts down is written out by a shutdown hook.
+ */
+public final class AsyncLogger {
+
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private record Entry(LogLevel level, long timestamp, String message) { }
+
+    private static final LogRingBuffer<Entry> buffer = new LogRingBuffer<>(BUFFER_CAPACITY);
+    private static final Object drainLock = new Object();
+    private static final Thread writer;
+    private static volatile boolean writerIdle = false;
+
+    // Only touched while holding drainLock
+    private static long cachedSecond = Long.MIN_VALUE;
+    private static String cachedTime = "";
+
+    static {
+        writer = new Thread(AsyncLogger::writeLoop, "servent-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLogger::drain, "servent-logger-flush"));
+    }
+
+    private AsyncLogger() { }
+
+    public static boolean isEnabled(LogLevel level) {
+        return AppConfig.LOG_LEVEL.allows(level);
+    }
+
+    public static void log(LogLevel level, String message) {
+        if (!isEnabled(level)) return;
+        enqueue(new Entry(level, System.currentTimeMillis(), message));
+    }
+
+    /**
+     * Logs a message that is built only if the level is enabled.
+     */
+    public static void log(LogLevel level, Supplier<String> message) {
+        if (!isEnabled(level)) return;
+        enqueue(new Entry(level, System.currentTimeMillis(), message.get()));
+    }
+
+    private static void enqueue(Entry entry) {
+        // If the writer can't keep up, wait for it instead of dropping lines
+        while (!buffer.offer(entry)) {
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+        if (writerIdle) LockSupport.unpark(writer);
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            drain();
+
+            writerIdle = true;
+            if (buffer.isEmpty()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            writerIdle = false;
+        }
+    }
+
+    /**
+     * Writes all published lines, stdout and stderr each with a single write.
+     * The lock keeps the buffer single-consumer when the shutdown hook drains alongside the writer.
+     */
+    private static void drain() {
+        synchronized (drainLock) {
+            StringBuilder standard = new StringBuilder();
+            StringBuilder error = new StringBuilder();
+
+            Entry entry;
+            while ((entry = buffer.poll()) != null) {
+                StringBuilder target = LogLevel.WARN.allows(entry.level()) ? error : standard;
+                target.append(formatTime(entry.timestamp())).append(" - ").append(entry.message()).append('\n');
+            }
+
+            if (!standard.isEmpty()) System.out.print(standard);
+            if (!error.isEmpty()) System.err.print(error);
+        }
+    }
+
+    private static String formatTime(long timestamp) {
+        long second = timestamp / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochSecond(second));
+        }
+        return cachedTime;
+    }
+}
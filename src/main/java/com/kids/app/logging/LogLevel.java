@@ -0,0 +1,18 @@
+package com.kids.app.logging;
+
+/**
+ * Severity of a log line. A logger set to a level prints that level and everything more severe.
+ */
+public enum LogLevel {
+    ERROR,
+    WARN,
+    INFO,
+    DEBUG;
+
+    /**
+     * @return true if a line of the given level should be printed when this is the configured level
+     */
+    public boolean allows(LogLevel level) {
+        return level.ordinal() <= ordinal();
+    }
+}
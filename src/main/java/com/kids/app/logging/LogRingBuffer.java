@@ -0,0 +1,65 @@
+package com.kids.app.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue with many producers and a single consumer.
+ * <p>
+ * Producers claim a slot by moving the tail with a CAS and then publish their element into it.
+ * The consumer reads slots in order and stops at the first one that is claimed but not published yet,
+ * so elements come out in the order their slots were claimed.
+ */
+final class LogRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the element if there is room. Safe to call from any thread.
+     *
+     * @return false if the buffer is full
+     */
+    boolean offer(T element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head.get() >= slots.length()) return false;
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+
+        slots.set((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * Takes the next element. Must only be called from the consumer thread.
+     *
+     * @return the element, or null if there is nothing published yet
+     */
+    T poll() {
+        long next = head.get();
+        int index = (int) next & mask;
+
+        T element = slots.get(index);
+        if (element == null) return null;
+
+        slots.lazySet(index, null);
+        head.lazySet(next + 1);
+        return element;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,117 @@
+package com.kids.app.metrics;
+
+import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
+import com.kids.servent.message.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process registry of the servent's metrics, looked up by name:
+ * <ul>
+ * <li>counters - how many times something happened, see {@link Counter}</li>
+ * <li>gauges - a value read when the metrics are reported, like a queue length</li>
+ * <li>histograms - distributions of latencies, see {@link Histogram}</li>
+ * </ul>
+ * Names are dotted, and times are in the unit their name ends with.
+ * Metrics are created the first time they are asked for, so callers can just use them.
+ * They are printed with the <code>metrics</code> command, and every {@link AppConfig#METRICS_DUMP_MS} if set.
+ */
+public class Metrics {
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() { }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge, replacing the one with the same name if there is one.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Counts an encoded message that is going out, and its size.
+     */
+    public static void messageSent(MessageType type, int bytes) {
+        counter("messages.sent." + type).increment();
+        counter("bytes.sent." + type).add(bytes);
+    }
+
+    /**
+     * Counts a message that came in, and its encoded size.
+     */
+    public static void messageReceived(MessageType type, int bytes) {
+        counter("messages.received." + type).increment();
+        counter("bytes.received." + type).add(bytes);
+    }
+
+    /**
+     * Wraps a task so that how long it runs for is recorded in a histogram, in microseconds.
+     */
+    public static Runnable timed(String histogramName, Runnable task) {
+        Histogram histogram = histogram(histogramName);
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                histogram.record((System.nanoTime() - start) / 1000);
+            }
+        };
+    }
+
+    /**
+     * @return one line per metric, sorted by name
+     */
+    public static List<String> report() {
+        Map<String, String> lines = new TreeMap<>();
+        counters.forEach((name, counter) -> lines.put(name, name + " = " + counter.get()));
+        gauges.forEach((name, gauge) -> lines.put(name, name + " = " + gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> lines.put(name, name + " count=" + histogram.count()
+                + " mean=" + Math.round(histogram.mean())
+                + " p50=" + histogram.percentile(50)
+                + " p90=" + histogram.percentile(90)
+                + " p99=" + histogram.percentile(99)
+                + " max=" + histogram.max()));
+        return new ArrayList<>(lines.values());
+    }
+
+    /**
+     * Prints every metric to the standard output.
+     */
+    public static void print() {
+        List<String> lines = report();
+        if (lines.isEmpty()) {
+            AppConfig.timestampedStandardPrint("No metrics recorded yet.");
+            return;
+        }
+
+        AppConfig.timestampedStandardPrint("Metrics:");
+        lines.forEach(AppConfig::timestampedStandardPrint);
+    }
+
+    /**
+     * Prints the metrics every {@link AppConfig#METRICS_DUMP_MS}, unless that is 0.
+     */
+    public static void startPeriodicDump() {
+        if (AppConfig.METRICS_DUMP_MS > 0) {
+            AppExecutors.scheduleAtFixedRate(Metrics::print, AppConfig.METRICS_DUMP_MS);
+        }
+    }
+}
@@ -1,60 +1,46 @@
 package com.kids.app.processing_strategy;
 
+import com.kids.app.ClockSnapshot;
 import com.kids.app.VectorClock;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.implementation.BasicMessage;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Iterator;
-import java.util.Queue;
 import java.util.function.Consumer;
 
 /**
  * Causal implementation of the message processing strategy.
  * <p>
  * Ensures messages are processed according to causal order.
+ * A message waits on the first entry of its clock that is ahead of ours.
  */
 @RequiredArgsConstructor
 public class CausalMessageProcessingStrategy implements MessageProcessingStrategy {
     
-    private final Queue<Message> pendingMessages;
+    private final PendingMessageBuffer pendingMessages;
     private final VectorClock vectorClock;
     private final Consumer<Message> messageProcessor;
-    private final Object lock;
     
     @Override
     public boolean processPendingMessages() {
-        boolean processed = false;
-        boolean working = true;
-
-        while (working) {
-            working = false;
-
-            synchronized (lock) {
-                Iterator<Message> iterator = pendingMessages.iterator();
-
-                while (iterator.hasNext()) {
-                    Message pendingMessage = iterator.next();
-                    
-                    if (canProcessMessage(pendingMessage)) {
-                        messageProcessor.accept(pendingMessage);
-                        iterator.remove();
-                        working = true;
-                        processed = true;
-                        break;
-                    }
-                }
-            }
-        }
-        
-        return processed;
+        return pendingMessages.deliver(this::findBlocker, messageProcessor, vectorClock::getValue);
     }
     
     @Override
     public boolean canProcessMessage(Message message) {
         if (message == null) return false;
         
+        return findBlocker(message) == null;
+    }
+    
+    private PendingMessageBuffer.Blocker findBlocker(Message message) {
         BasicMessage basicMessage = (BasicMessage) message;
-        return !vectorClock.isOtherClockGreater(basicMessage.getSenderVectorClock());
+        ClockSnapshot senderClock = basicMessage.getSenderClock();
+        if (senderClock == null) return PendingMessageBuffer.Blocker.never(message.getOriginalSenderInfo().id());
+        
+        int blockingEntry = vectorClock.findGreaterEntry(senderClock);
+        if (blockingEntry == -1) return null;
+        
+        return new PendingMessageBuffer.Blocker(blockingEntry, senderClock.get(blockingEntry));
     }
-} 
\ No newline at end of file
+}
@@ -1,72 +1,68 @@
 package com.kids.app.processing_strategy;
 
+import com.kids.app.ClockSnapshot;
 import com.kids.app.VectorClock;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.implementation.BasicMessage;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Iterator;
-import java.util.Queue;
 import java.util.function.Consumer;
 
 /**
  * FIFO implementation of the message processing strategy.
  * <p>
  * Ensures messages from the same sender are processed in order.
+ * A message waits on its sender's entry until it is the next one from that sender,
+ * and on any other entry of its clock that is ahead of ours.
  */
 @RequiredArgsConstructor
 public class FIFOMessageProcessingStrategy implements MessageProcessingStrategy {
     
-    private final Queue<Message> pendingMessages;
+    private final PendingMessageBuffer pendingMessages;
     private final VectorClock vectorClock;
     private final Consumer<Message> messageProcessor;
-    private final Object lock;
     
     @Override
     public boolean processPendingMessages() {
-        boolean processed = false;
-        
-        synchronized (lock) {
-            boolean working = true;
-
-            while (working) {
-                working = false;
-                Iterator<Message> iterator = pendingMessages.iterator();
-
-                while (iterator.hasNext()) {
-                    Message pendingMessage = iterator.next();
-                    if (!canProcessMessage(pendingMessage)) continue;
-
-                    messageProcessor.accept(pendingMessage);
-                    iterator.remove();
-                    working = true;
-                    processed = true;
-                    break;
-                }
-            }
-        }
-        
-        return processed;
+        return pendingMessages.deliver(this::findBlocker, messageProcessor, vectorClock::getValue);
     }
     
     @Override
     public boolean canProcessMessage(Message message) {
         if (message == null) return false;
         
-        BasicMessage basicMessage = (BasicMessage) message;
-        return !isCausalityViolated(basicMessage);
+        return findBlocker(message) == null;
     }
     
     /**
-     * Checks if the FIFO causality requirement is violated for a message.
+     * Finds what keeps the FIFO causality requirement from being met for a message.
      * 
      * @param message The message to check
-     * @return true if causality is violated, false otherwise
+     * @return the blocking clock entry, or null if the message can be processed
      */
-    private boolean isCausalityViolated(BasicMessage message) {
-        if (message.getSenderVectorClock() == null) return true;
+    private PendingMessageBuffer.Blocker findBlocker(Message message) {
+        BasicMessage basicMessage = (BasicMessage) message;
+        int senderId = basicMessage.getOriginalSenderInfo().id();
+        ClockSnapshot senderClock = basicMessage.getSenderClock();
+        if (senderClock == null) return PendingMessageBuffer.Blocker.never(senderId);
+        
+        if (!vectorClock.isCausalityViolatedFIFO(senderClock, senderId)) return null;
         
-        int senderId = message.getOriginalSenderInfo().id();
-        return vectorClock.isCausalityViolatedFIFO(message.getSenderVectorClock(), senderId);
+        int senderValue = senderClock.get(senderId);
+        int localValue = vectorClock.getValue(senderId);
+        if (senderValue <= localValue) {
+            // Already past this one, it can never be next
+            return PendingMessageBuffer.Blocker.never(senderId);
+        }
+        if (senderValue > localValue + 1) {
+            return new PendingMessageBuffer.Blocker(senderId, senderValue - 1);
+        }
+        
+        for (int id = 0; id < senderClock.size(); id++) {
+            if (id != senderId && senderClock.get(id) > vectorClock.getValue(id)) {
+                return new PendingMessageBuffer.Blocker(id, senderClock.get(id));
+            }
+        }
+        return null;
     }
-} 
\ No newline at end of file
+}
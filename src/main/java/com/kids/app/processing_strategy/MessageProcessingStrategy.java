@@ -11,6 +11,7 @@ public interface MessageProcessingStrategy {
     
     /**
      * Process pending messages according to the specific strategy.
+     * Must not be called from more than one thread at a time, see {@link PendingMessageBuffer}.
      * 
      * @return true if at least one message was processed, false otherwise
      */
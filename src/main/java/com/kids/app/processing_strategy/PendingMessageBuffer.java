@@ -0,0 +1,135 @@
+package com.kids.app.processing_strategy;
+
+import com.kids.app.metrics.Histogram;
+import com.kids.app.metrics.Metrics;
+import com.kids.servent.message.Message;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Buffer for messages that can't be delivered yet, indexed by what they are waiting for.
+ * <p>
+ * A blocked message is parked on a single clock entry that holds it back, in a priority queue
+ * ordered by the value that entry has to reach. After a delivery only the heads of those queues
+ * are looked at, and a message is checked again only once its entry has caught up. If it turns out
+ * to be blocked on another entry, it is parked there. So every delivery costs a look at one queue head
+ * per servent instead of a rescan of the whole buffer.
+ * <p>
+ * Adding is thread safe and lock-free. Delivering must be done by one thread at a time.
+ * How long messages wait between being added and delivered goes to the <code>causal.wait_us</code> histogram.
+ */
+public class PendingMessageBuffer {
+
+    /**
+     * Tells where a message is blocked: the clock entry of servent {@code serventId} has to reach
+     * {@code requiredValue} before the message is worth checking again.
+     */
+    public record Blocker(int serventId, int requiredValue) {
+
+        /**
+         * For messages that can never be delivered, like ones without a clock. They stay in the buffer,
+         * but are never checked again.
+         */
+        public static Blocker never(int serventId) {
+            return new Blocker(serventId, Integer.MAX_VALUE);
+        }
+    }
+
+    private record Arrival(Message message, long addedAt) { }
+
+    private record Parked(Arrival arrival, int requiredValue, long order) { }
+
+    private static final Comparator<Parked> PARKED_ORDER = Comparator
+            .comparingInt(Parked::requiredValue)
+            .thenComparingLong(Parked::order);
+
+    /*
+     * Messages that were added but not checked yet.
+     */
+    private final Queue<Arrival> unchecked = new ConcurrentLinkedQueue<>();
+
+    /*
+     * Blocked messages, by the id of the clock entry they are waiting on.
+     */
+    private final Map<Integer, PriorityQueue<Parked>> parked = new HashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+    private long parkedCount = 0;
+    private final Histogram waitTimes = Metrics.histogram("causal.wait_us");
+
+    public void add(Message message) {
+        unchecked.add(new Arrival(message, System.nanoTime()));
+        size.incrementAndGet();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Delivers every message that has become deliverable, including the ones that become
+     * deliverable because of earlier deliveries in the same call. Messages that were waiting
+     * on the same entry are delivered in the order they were parked.
+     *
+     * @param blockerOf returns what a message is blocked on, or null if it can be delivered now
+     * @param deliver delivers the message, usually advancing the clock
+     * @param clock current value of the clock entry for a servent id
+     * @return true if at least one message was delivered
+     */
+    public boolean deliver(Function<Message, Blocker> blockerOf, Consumer<Message> deliver, IntUnaryOperator clock) {
+        boolean delivered = false;
+        Deque<Arrival> candidates = new ArrayDeque<>();
+
+        while (true) {
+            Arrival arrival;
+            while ((arrival = unchecked.poll()) != null) {
+                candidates.add(arrival);
+            }
+            releaseCaughtUp(candidates, clock);
+            if (candidates.isEmpty()) return delivered;
+
+            while ((arrival = candidates.poll()) != null) {
+                Blocker blocker = blockerOf.apply(arrival.message());
+                if (blocker == null) {
+                    size.decrementAndGet();
+                    waitTimes.record((System.nanoTime() - arrival.addedAt()) / 1000);
+                    deliver.accept(arrival.message());
+                    delivered = true;
+                } else {
+                    park(arrival, blocker);
+                }
+            }
+        }
+    }
+
+    private void park(Arrival arrival, Blocker blocker) {
+        parked.computeIfAbsent(blocker.serventId(), id -> new PriorityQueue<>(PARKED_ORDER))
+                .add(new Parked(arrival, blocker.requiredValue(), parkedCount++));
+    }
+
+    private void releaseCaughtUp(Deque<Arrival> candidates, IntUnaryOperator clock) {
+        for (Map.Entry<Integer, PriorityQueue<Parked>> entry : parked.entrySet()) {
+            int current = clock.applyAsInt(entry.getKey());
+            PriorityQueue<Parked> queue = entry.getValue();
+
+            while (!queue.isEmpty() && queue.peek().requiredValue() <= current) {
+                candidates.add(queue.poll().arrival());
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.kids.app.servent;
 
 import com.kids.app.AppConfig;
 import com.kids.app.CausalBroadcast;
+import com.kids.app.checkpoint.Checkpoints;
+import com.kids.app.checkpoint.Recovery;
+import com.kids.app.metrics.Metrics;
 import com.kids.app.snapshot_bitcake.snapshot_collector.NullSnapshotCollector;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollectorWorker;
@@ -25,12 +28,18 @@ public class ServentMain {
 	 * Command line arguments are:
 	 * 0 - path to servent list file
 	 * 1 - this servent's id
+	 * 2 - optional, <code>recover</code> to start over from the latest checkpoint
 	 */
 	public static void main(String[] args) {
-		if (args.length != 2) {
+		if (args.length != 2 && args.length != 3) {
 			AppConfig.timestampedErrorPrint("Please provide servent list file and id of this servent.");
 		}
 		
+		boolean recover = args.length == 3 && args[2].equals("recover");
+		if (args.length == 3 && !recover) {
+			AppConfig.timestampedErrorPrint("Third argument can only be recover. Starting from scratch.");
+		}
+		
 		int serventId = -1;
 		int portNumber;
 		
@@ -63,6 +72,8 @@ public class ServentMain {
 		}
 		
 		MessageUtil.initializePendingMessages();
+		Topology.initializeRoutes();
+		Checkpoints.open();
 		
 		AppConfig.timestampedStandardPrint("Starting servent " + AppConfig.myServentInfo);
 		
@@ -76,6 +87,14 @@ public class ServentMain {
 
 		CausalBroadcast.getInstance().injectSnapshotCollector(snapshotCollector);
 
+		if (recover) {
+			if (snapshotCollector instanceof SnapshotCollectorWorker worker) {
+				Recovery.recover(worker);
+			} else {
+				AppConfig.timestampedErrorPrint("There are no checkpoints without a snapshot algorithm. Starting from scratch.");
+			}
+		}
+
 		Thread snapshotCollectorThread = new Thread(snapshotCollector);
 		snapshotCollectorThread.start();
 		
@@ -83,6 +102,11 @@ public class ServentMain {
 		Thread listenerThread = new Thread(simpleListener);
 		listenerThread.start();
 
+		Metrics.startPeriodicDump();
+
+		// A recovered servent settles with the others before the CLI can make new transactions
+		Recovery.settleWithOthers();
+
 		List<FifoSendWorker> senderWorkers = new ArrayList<>();
 		if (AppConfig.IS_FIFO) {
 			for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
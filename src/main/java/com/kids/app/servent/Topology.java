@@ -0,0 +1,97 @@
+package com.kids.app.servent;
+
+import com.kids.app.AppConfig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shortest-path trees over the servent graph from {@link AppConfig}.
+ * <p>
+ * Every servent knows the whole graph, and the search visits neighbors in the order of their ids,
+ * so all servents compute the same tree for the same root without talking to each other.
+ * Trees are computed the first time they are needed and kept, as the graph never changes.
+ * <p>
+ * Point-to-point messages are routed over the same trees: the next hop towards a servent is our parent
+ * in the tree rooted at it, so every hop moves along one shortest path.
+ */
+public final class Topology {
+
+    private static final Map<Integer, int[]> parentsByRoot = new ConcurrentHashMap<>();
+
+    // Next hop towards every servent, indexed by its id
+    private static int[] nextHops = new int[0];
+
+    private Topology() { }
+
+    /**
+     * Computes the routing table of this servent. Should be called once at start of app,
+     * after {@link AppConfig#myServentInfo} is set.
+     */
+    public static void initializeRoutes() {
+        int myId = AppConfig.myServentInfo.id();
+        int[] hops = new int[AppConfig.getServentCount()];
+        for (int destinationId = 0; destinationId < hops.length; destinationId++) {
+            hops[destinationId] = destinationId == myId ? myId : parents(destinationId)[myId];
+        }
+        nextHops = hops;
+    }
+
+    /**
+     * @return the neighbor to send a message for the given servent to, our own id if it is for us,
+     * or -1 if the servent can't be reached
+     */
+    public static int route(int destinationId) {
+        int[] hops = nextHops;
+        return destinationId >= 0 && destinationId < hops.length ? hops[destinationId] : -1;
+    }
+
+    /**
+     * Breadth-first search from a servent.
+     *
+     * @return the parent of every servent in the tree rooted at the given servent, the root being its own parent,
+     * and -1 for servents that can't be reached
+     */
+    public static int[] parents(int rootId) {
+        return parentsByRoot.computeIfAbsent(rootId, Topology::search);
+    }
+
+    /**
+     * @return the children of a servent in the tree rooted at another one, in the order of their ids
+     */
+    public static List<Integer> children(int serventId, int rootId) {
+        int[] parents = parents(rootId);
+        List<Integer> children = new ArrayList<>();
+        for (int id = 0; id < parents.length; id++) {
+            if (id != rootId && parents[id] == serventId) children.add(id);
+        }
+        return children;
+    }
+
+    private static int[] search(int rootId) {
+        int[] parents = new int[AppConfig.getServentCount()];
+        Arrays.fill(parents, -1);
+        parents[rootId] = rootId;
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(rootId);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+
+            List<Integer> neighbors = new ArrayList<>(AppConfig.getInfoById(current).neighbors());
+            neighbors.sort(null);
+            for (int neighbor : neighbors) {
+                if (parents[neighbor] != -1) continue;
+
+                parents[neighbor] = current;
+                queue.add(neighbor);
+            }
+        }
+        return parents;
+    }
+}
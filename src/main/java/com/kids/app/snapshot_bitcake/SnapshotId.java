@@ -0,0 +1,22 @@
+package com.kids.app.snapshot_bitcake;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Identifies one snapshot: the servent that started it, and how many snapshots that servent started before it.
+ * Every snapshot message carries one, so snapshots from several initiators can run at the same time.
+ */
+public record SnapshotId(
+        int initiatorId,
+        int sequence
+) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 2861472039485130547L;
+
+    @Override
+    public String toString() {
+        return initiatorId + "." + sequence;
+    }
+}
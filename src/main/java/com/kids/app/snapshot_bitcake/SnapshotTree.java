@@ -0,0 +1,139 @@
+package com.kids.app.snapshot_bitcake;
+
+import com.kids.app.AppConfig;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spanning trees that snapshot results are gathered over, one for every snapshot this servent takes part in.
+ * <p>
+ * The parent of a servent is the neighbor it got the snapshot request from first. The request goes on to
+ * all the other neighbors, and each of them answers in one of two ways: with the results of its subtree if
+ * we are its parent, or with a copy of the request if it already has a parent. Once our own result is in and
+ * every neighbor except the parent has answered, the results of the whole subtree go to the parent in one
+ * message. The initiator gets everyone's results from its children alone, with one message per servent.
+ * <p>
+ * The tree is kept until the snapshot is over, so whatever comes after it can travel back down.
+ * <p>
+ * Copies of a request may be handled on different threads, so a neighbor can turn out not to be a child
+ * before we know our parent. Such answers are kept until we join.
+ *
+ * @param <T> the result of a single servent
+ */
+public class SnapshotTree<T> {
+
+    /**
+     * Results of a subtree whose servents have all answered.
+     *
+     * @param parentId where the results go, our own id at the initiator
+     * @param results results of every servent in the subtree, by servent id
+     */
+    public record Subtree<T>(int parentId, Map<Integer, T> results) {
+
+        public boolean isRoot() {
+            return parentId == AppConfig.myServentInfo.id();
+        }
+    }
+
+    private static class Node<T> {
+        private final int parentId;
+        private final Set<Integer> waitingFor;
+        private final Map<Integer, T> results = new HashMap<>();
+        private final Map<Integer, Set<Integer>> children = new HashMap<>();
+        private boolean hasOwnResult;
+        private boolean done;
+
+        Node(int parentId, Collection<Integer> forwardedTo) {
+            this.parentId = parentId;
+            this.waitingFor = new HashSet<>(forwardedTo);
+        }
+    }
+
+    private final Map<SnapshotId, Node<T>> nodes = new HashMap<>();
+    private final Map<SnapshotId, Set<Integer>> earlyNonChildren = new HashMap<>();
+
+    /**
+     * Joins the tree of a snapshot. Only the first call for a snapshot counts.
+     *
+     * @param parentId the neighbor the request came from first, or our own id at the initiator
+     * @param forwardedTo the neighbors the request goes on to, each of which will answer
+     */
+    public synchronized void join(SnapshotId snapshotId, int parentId, Collection<Integer> forwardedTo) {
+        if (nodes.containsKey(snapshotId)) return;
+
+        Node<T> node = new Node<>(parentId, forwardedTo);
+        Set<Integer> nonChildren = earlyNonChildren.remove(snapshotId);
+        if (nonChildren != null) node.waitingFor.removeAll(nonChildren);
+        nodes.put(snapshotId, node);
+    }
+
+    /**
+     * @return the results of our subtree if this completed it, otherwise null
+     */
+    public synchronized Subtree<T> addOwnResult(SnapshotId snapshotId, T result) {
+        Node<T> node = nodes.get(snapshotId);
+        if (node == null) {
+            AppConfig.timestampedErrorPrint("Result for snapshot " + snapshotId + " that we didn't join");
+            return null;
+        }
+
+        node.results.put(AppConfig.myServentInfo.id(), result);
+        node.hasOwnResult = true;
+        return completed(node);
+    }
+
+    /**
+     * Adds the results of a child's subtree.
+     *
+     * @return the results of our subtree if this completed it, otherwise null
+     */
+    public synchronized Subtree<T> addChild(SnapshotId snapshotId, int childId, Map<Integer, T> results) {
+        Node<T> node = nodes.get(snapshotId);
+        if (node == null || !node.waitingFor.remove(childId)) {
+            AppConfig.timestampedErrorPrint("Unexpected results of snapshot " + snapshotId + " from servent " + childId);
+            return null;
+        }
+
+        node.results.putAll(results);
+        node.children.put(childId, new HashSet<>(results.keySet()));
+        return completed(node);
+    }
+
+    /**
+     * Notes that a neighbor sent us the request too, so it is not our child.
+     *
+     * @return the results of our subtree if this completed it, otherwise null
+     */
+    public synchronized Subtree<T> addNonChild(SnapshotId snapshotId, int neighborId) {
+        Node<T> node = nodes.get(snapshotId);
+        if (node == null) {
+            earlyNonChildren.computeIfAbsent(snapshotId, id -> new HashSet<>()).add(neighborId);
+            return null;
+        }
+        if (!node.waitingFor.remove(neighborId)) return null;
+
+        return completed(node);
+    }
+
+    /**
+     * Leaves the tree of a snapshot that is over.
+     *
+     * @return our children, each with the ids of the servents in its subtree, or an empty map if we weren't in the tree
+     */
+    public synchronized Map<Integer, Set<Integer>> leave(SnapshotId snapshotId) {
+        earlyNonChildren.remove(snapshotId);
+        Node<T> node = nodes.remove(snapshotId);
+        return node == null ? Map.of() : node.children;
+    }
+
+    private Subtree<T> completed(Node<T> node) {
+        if (node.done || !node.hasOwnResult || !node.waitingFor.isEmpty()) return null;
+
+        node.done = true;
+        return new Subtree<>(node.parentId, new HashMap<>(node.results));
+    }
+}
@@ -4,5 +4,6 @@ public enum SnapshotType {
 	ACHARYA_BADRINATH,
 	ALAGAR_VENKATESAN,
 	COORDINATED_CHECKPOINTING,
+	CHANDY_LAMPORT,
 	NONE
 }
@@ -0,0 +1,263 @@
+package com.kids.app.snapshot_bitcake.acharya_badrinath;
+
+import com.kids.app.snapshot_bitcake.SnapshotId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Running totals of the transactions this servent sent to and received from every other servent.
+ * <p>
+ * This is all an Acharya-Badrinath snapshot needs to know about the channels: whatever one side
+ * sent and the other didn't receive yet is in transit, so there is no need to keep the transactions themselves.
+ * The totals only ever grow, and a snapshot takes a consistent copy of them with {@link #snapshot(SnapshotId)}.
+ * <p>
+ * Sent transactions are also kept in an {@link ABTransactionLog} per receiver, so the sender can list the ones
+ * in transit once a snapshot is over. The logs never leave the servent, only the totals go into snapshots.
+ * Transactions between two servents can be received in a different order than they were sent, so every transaction
+ * carries its index in the sender's log, and the receiver keeps track of which indexes it got, see {@link ABReceivedIndexes}.
+ * A record is dropped once a finished snapshot shows that the receiver got it and every transaction before it,
+ * so the logs only hold what was sent since the oldest transaction still missing at the last snapshot.
+ * Snapshots can finish in any order, so while one is still running, nothing that was logged when it was taken is dropped,
+ * as it may need to list it.
+ * <p>
+ * A servent that started over from a checkpoint settles its totals with every other servent, see
+ * {@link #settle(int, int)} and {@link #reconcile(int, ABChannelTotals)}. After that, both sides drop the transactions
+ * between them that were already in flight, as the settled totals count them.
+ */
+public class ABChannelCounters {
+
+    private int[] sentCount = new int[0];
+    private int[] sentAmount = new int[0];
+    private int[] receivedCount = new int[0];
+    private int[] receivedAmount = new int[0];
+    private ABTransactionLog[] sentLogs = new ABTransactionLog[0];
+    // Message id of the last transaction sent to each receiver, -1 if none
+    private int[] lastSentId = new int[0];
+    // For every sender, the transactions with lower ids are settled by a recovery and are dropped
+    private int[] acceptFrom = new int[0];
+    // For every sender, every transaction with a lower index in its log was received
+    private int[] receivedBelow = new int[0];
+    // For every sender, the indexes past the watermark that were received
+    private List<TreeSet<Integer>> receivedAbove = List.of();
+
+    // For each receiver, the lowest index that finished snapshots showed as still missing
+    private int[] delivered = new int[0];
+    // For snapshots that are not over, the first logged index of every receiver when they were taken
+    private final Map<SnapshotId, int[]> holds = new HashMap<>();
+
+    /**
+     * Resets the totals for a system of the given number of servents.
+     *
+     * @param serventCount The number of servents in the system
+     */
+    public synchronized void initialize(int serventCount) {
+        sentCount = new int[serventCount];
+        sentAmount = new int[serventCount];
+        receivedCount = new int[serventCount];
+        receivedAmount = new int[serventCount];
+        sentLogs = new ABTransactionLog[serventCount];
+        for (int id = 0; id < serventCount; id++) {
+            sentLogs[id] = new ABTransactionLog();
+        }
+        delivered = new int[serventCount];
+        holds.clear();
+        lastSentId = new int[serventCount];
+        Arrays.fill(lastSentId, -1);
+        acceptFrom = new int[serventCount];
+        receivedBelow = new int[serventCount];
+        receivedAbove = emptyIndexes(serventCount);
+    }
+
+    /**
+     * Sets the totals to the ones in a checkpoint, for a servent that starts over from it.
+     * The transactions sent before it are only counted, the logs start out empty.
+     * The ones received before it are taken to be the first ones each sender sent, until the recovery settles them.
+     */
+    public synchronized void restore(int[] sentCount, int[] sentAmount, int[] receivedCount, int[] receivedAmount) {
+        this.sentCount = sentCount.clone();
+        this.sentAmount = sentAmount.clone();
+        this.receivedCount = receivedCount.clone();
+        this.receivedAmount = receivedAmount.clone();
+        this.sentLogs = new ABTransactionLog[sentCount.length];
+        for (int id = 0; id < sentCount.length; id++) {
+            sentLogs[id] = new ABTransactionLog(sentCount[id]);
+        }
+        this.delivered = sentCount.clone();
+        holds.clear();
+        this.lastSentId = new int[sentCount.length];
+        Arrays.fill(lastSentId, -1);
+        this.acceptFrom = new int[sentCount.length];
+        this.receivedBelow = receivedCount.clone();
+        this.receivedAbove = emptyIndexes(sentCount.length);
+    }
+
+    private static List<TreeSet<Integer>> emptyIndexes(int serventCount) {
+        List<TreeSet<Integer>> indexes = new ArrayList<>(serventCount);
+        for (int id = 0; id < serventCount; id++) {
+            indexes.add(new TreeSet<>());
+        }
+        return indexes;
+    }
+
+    /**
+     * Records a transaction sent to another servent.
+     *
+     * @param receiverId The ID of the servent the transaction is for
+     * @param messageId The ID of the transaction message
+     * @param amount The amount of bitcakes in the transaction
+     * @return The index of the transaction in the log, which goes with it to the receiver, or -1 if it is not logged
+     */
+    public synchronized int recordSent(int receiverId, int messageId, int amount) {
+        if (receiverId < 0 || receiverId >= sentCount.length) return -1;
+
+        int index = sentCount[receiverId];
+        sentCount[receiverId]++;
+        sentAmount[receiverId] += amount;
+        sentLogs[receiverId].append(messageId, amount);
+        lastSentId[receiverId] = messageId;
+        return index;
+    }
+
+    /**
+     * Records a transaction received from another servent, unless a recovery already settled it.
+     *
+     * @param senderId The ID of the servent the transaction came from
+     * @param messageId The ID of the transaction message
+     * @param index The index of the transaction in the sender's log, or -1 if it has none
+     * @param amount The amount of bitcakes in the transaction
+     * @return false if the transaction is settled and must not be applied
+     */
+    public synchronized boolean recordReceived(int senderId, int messageId, int index, int amount) {
+        if (senderId < 0 || senderId >= receivedCount.length) return true;
+        if (messageId < acceptFrom[senderId]) return false;
+
+        receivedCount[senderId]++;
+        receivedAmount[senderId] += amount;
+        if (index >= receivedBelow[senderId]) {
+            TreeSet<Integer> above = receivedAbove.get(senderId);
+            above.add(index);
+            while (above.remove(receivedBelow[senderId])) {
+                receivedBelow[senderId]++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * From now on, the servent's transactions are taken to be received up to but not including the given index.
+     */
+    private void resetReceived(int serventId, int below) {
+        receivedBelow[serventId] = below;
+        receivedAbove.get(serventId).clear();
+    }
+
+    /**
+     * Answers a servent that started over from a checkpoint with our totals of the transactions between us.
+     * It counts what we sent it as received and what we received from it as sent. Its transactions from before
+     * the crash that haven't reached us yet are left out of that, so from now on they are dropped, and it keeps
+     * their bitcakes.
+     *
+     * @param serventId The ID of the recovered servent
+     * @param firstNewId Every transaction it sent before it crashed has a lower message id
+     * @return Our totals with the servent
+     */
+    public synchronized ABChannelTotals settle(int serventId, int firstNewId) {
+        acceptFrom[serventId] = Math.max(acceptFrom[serventId], firstNewId);
+        // It goes on from what we received, as it takes our totals over
+        resetReceived(serventId, receivedCount[serventId]);
+
+        return new ABChannelTotals(sentCount[serventId], sentAmount[serventId],
+                receivedCount[serventId], receivedAmount[serventId], lastSentId[serventId] + 1);
+    }
+
+    /**
+     * Takes over the totals another servent has of the transactions between us, after we started over from a checkpoint.
+     * Its transactions that reach us from now on are already counted, so they are dropped.
+     *
+     * @param serventId The ID of the other servent
+     * @param theirs Its totals, from {@link #settle(int, int)}
+     * @return The bitcakes we have to add to our amount to match, negative if we have to give some up
+     */
+    public synchronized int reconcile(int serventId, ABChannelTotals theirs) {
+        // Whatever it sent us that we haven't counted, less whatever it got from us that we don't know we sent
+        int difference = (theirs.sentAmount() - receivedAmount[serventId]) - (theirs.receivedAmount() - sentAmount[serventId]);
+
+        sentCount[serventId] = theirs.receivedCount();
+        sentAmount[serventId] = theirs.receivedAmount();
+        receivedCount[serventId] = theirs.sentCount();
+        receivedAmount[serventId] = theirs.sentAmount();
+        acceptFrom[serventId] = Math.max(acceptFrom[serventId], theirs.sentBelowId());
+        resetReceived(serventId, receivedCount[serventId]);
+
+        sentLogs[serventId] = new ABTransactionLog(sentCount[serventId]);
+        delivered[serventId] = sentCount[serventId];
+        for (int[] hold : holds.values()) {
+            hold[serventId] = sentCount[serventId];
+        }
+        return difference;
+    }
+
+    /**
+     * Ends a snapshot taken with {@link #snapshot(SnapshotId)}, and drops the logged transactions that the receivers
+     * are known to have got, unless a snapshot that is still running may need them.
+     * Transactions can overtake each other, so only the ones before the first a receiver was still missing are dropped.
+     * The ones it got past that stay logged until a later snapshot shows that nothing before them is missing.
+     *
+     * @param snapshotId The snapshot that is over
+     * @param receivedBy Which of our transactions each receiver had received when it recorded its state,
+     *                   indexed by receiver id, or null if we don't know
+     */
+    public synchronized void release(SnapshotId snapshotId, ABReceivedIndexes[] receivedBy) {
+        holds.remove(snapshotId);
+
+        for (int receiverId = 0; receiverId < sentLogs.length; receiverId++) {
+            if (receivedBy != null && receiverId < receivedBy.length) {
+                delivered[receiverId] = Math.max(delivered[receiverId], receivedBy[receiverId].below());
+            }
+
+            int discardBefore = delivered[receiverId];
+            for (int[] hold : holds.values()) {
+                discardBefore = Math.min(discardBefore, hold[receiverId]);
+            }
+            sentLogs[receiverId].discardBefore(discardBefore);
+        }
+    }
+
+    /**
+     * Returns the logged transactions sent to a servent with indexes in the given range, in the order they were sent.
+     * Transactions that were already dropped from the log are left out.
+     *
+     * @param receiverId The ID of the servent the transactions were sent to
+     * @param from Index of the first transaction, the number of transactions sent to the servent before it
+     * @param to Index after the last transaction
+     */
+    synchronized List<ABTransactionLog.Entry> sentBetween(int receiverId, int from, int to) {
+        if (receiverId < 0 || receiverId >= sentLogs.length) return List.of();
+
+        return sentLogs[receiverId].between(from, to);
+    }
+
+    /**
+     * Takes a copy of the current totals for a snapshot, and keeps what is logged now until it is over.
+     *
+     * @return A copy of the current totals
+     */
+    public synchronized ABChannelState snapshot(SnapshotId snapshotId) {
+        int[] firstLogged = new int[sentLogs.length];
+        for (int id = 0; id < sentLogs.length; id++) {
+            firstLogged[id] = sentLogs[id].firstIndex();
+        }
+        holds.put(snapshotId, firstLogged);
+
+        ABReceivedIndexes[] received = new ABReceivedIndexes[receivedBelow.length];
+        for (int id = 0; id < received.length; id++) {
+            received[id] = new ABReceivedIndexes(receivedBelow[id], receivedAbove.get(id).stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new ABChannelState(sentCount, sentAmount, receivedCount, receivedAmount, received);
+    }
+}
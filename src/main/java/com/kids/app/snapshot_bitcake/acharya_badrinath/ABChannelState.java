@@ -0,0 +1,84 @@
+package com.kids.app.snapshot_bitcake.acharya_badrinath;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Immutable copy of a servent's {@link ABChannelCounters}, as carried by AB snapshot responses.
+ * <p>
+ * For every other servent it holds how many transactions, and how many bitcakes in total,
+ * went to it and came from it, and which of its transactions were received, see {@link ABReceivedIndexes}.
+ * Its size depends on the number of servents and on how many transactions overtook each other,
+ * not on how many transactions were made, so snapshots don't grow as the history does.
+ * The sent transactions themselves stay in the sender's logs, see {@link ABChannelCounters}.
+ */
+public final class ABChannelState implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -2347718236190544176L;
+
+    private final int[] sentCount;
+    private final int[] sentAmount;
+    private final int[] receivedCount;
+    private final int[] receivedAmount;
+    private final ABReceivedIndexes[] received;
+
+    /**
+     * Creates a state from copies of the given arrays, indexed by servent id. All of them must be of the same size.
+     */
+    public ABChannelState(int[] sentCount, int[] sentAmount, int[] receivedCount, int[] receivedAmount, ABReceivedIndexes[] received) {
+        int size = sentCount.length;
+        if (sentAmount.length != size || receivedCount.length != size || receivedAmount.length != size || received.length != size) {
+            throw new IllegalArgumentException("Channel counters are not same size");
+        }
+
+        this.sentCount = sentCount.clone();
+        this.sentAmount = sentAmount.clone();
+        this.receivedCount = receivedCount.clone();
+        this.receivedAmount = receivedAmount.clone();
+        this.received = received.clone();
+    }
+
+    public int size() {
+        return sentCount.length;
+    }
+
+    /**
+     * @return how many transactions were sent to the servent
+     */
+    public int getSentCount(int serventId) {
+        return valueOf(sentCount, serventId);
+    }
+
+    /**
+     * @return how many bitcakes were sent to the servent
+     */
+    public int getSentAmount(int serventId) {
+        return valueOf(sentAmount, serventId);
+    }
+
+    /**
+     * @return how many transactions were received from the servent
+     */
+    public int getReceivedCount(int serventId) {
+        return valueOf(receivedCount, serventId);
+    }
+
+    /**
+     * @return how many bitcakes were received from the servent
+     */
+    public int getReceivedAmount(int serventId) {
+        return valueOf(receivedAmount, serventId);
+    }
+
+    /**
+     * @return which of the servent's transactions were received
+     */
+    public ABReceivedIndexes getReceived(int serventId) {
+        return serventId >= 0 && serventId < received.length ? received[serventId] : ABReceivedIndexes.NONE;
+    }
+
+    private static int valueOf(int[] values, int serventId) {
+        return serventId >= 0 && serventId < values.length ? values[serventId] : 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.kids.app.snapshot_bitcake.acharya_badrinath;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The totals of the transactions between this servent and one other, as this servent counts them,
+ * sent to a servent that started over from a checkpoint so it can settle its side with ours.
+ *
+ * @param sentCount How many transactions we sent to the other servent
+ * @param sentAmount How many bitcakes we sent to the other servent
+ * @param receivedCount How many transactions we received from the other servent
+ * @param receivedAmount How many bitcakes we received from the other servent
+ * @param sentBelowId Every transaction we sent to the other servent that these totals count has a lower message id
+ */
+public record ABChannelTotals(int sentCount, int sentAmount, int receivedCount, int receivedAmount, int sentBelowId) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 7261184430165537803L;
+}
@@ -0,0 +1,40 @@
+package com.kids.app.snapshot_bitcake.acharya_badrinath;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Which of one sender's transactions a servent has received, by their index in the sender's log.
+ * <p>
+ * Transactions are not always received in the order they were sent, so a count is not enough to tell which ones arrived.
+ * Every index below a watermark was received, and past it only the few that overtook a missing one are listed.
+ *
+ * @param below Every transaction with a lower index was received
+ * @param above The indexes past the watermark that were received, in ascending order
+ */
+public record ABReceivedIndexes(int below, int[] above) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -5176205379027118465L;
+
+    public static final ABReceivedIndexes NONE = new ABReceivedIndexes(0, new int[0]);
+
+    /**
+     * @return whether the transaction with the given index was received
+     */
+    public boolean contains(int index) {
+        return index < below || Arrays.binarySearch(above, index) >= 0;
+    }
+
+    /**
+     * @return how many of the transactions with indexes from from up to but not including to were received
+     */
+    public int countBetween(int from, int to) {
+        int count = Math.max(0, Math.min(below, to) - from);
+        for (int index : above) {
+            if (index >= from && index < to) count++;
+        }
+        return count;
+    }
+}
@@ -1,20 +1,18 @@
 package com.kids.app.snapshot_bitcake.acharya_badrinath;
 
-import com.kids.servent.message.Message;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
 import java.io.Serializable;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Snapshot result for servent with id serventId: the amount of bitcakes it had,
+ * and the totals of what it sent to and received from the other servents.
+ */
 @Getter
 @AllArgsConstructor
-@RequiredArgsConstructor
 public class ABSnapshot implements Serializable {
     private final int serventId;
     private final int amount;
-    private List<Message> sent = new CopyOnWriteArrayList<>();
-    private List<Message> received = new CopyOnWriteArrayList<>();
+    private final ABChannelState channels;
 }
@@ -0,0 +1,236 @@
+package com.kids.app.snapshot_bitcake.acharya_badrinath;
+
+import com.kids.app.AppConfig;
+import com.kids.app.CausalBroadcast;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.checkpoint.Checkpoint;
+import com.kids.app.checkpoint.Checkpoints;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.SnapshotTree;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.app.snapshot_bitcake.snapshot_collector.ABCollector;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
+import com.kids.servent.message.implementation.ab.ABDeliveredMessage;
+import com.kids.servent.message.implementation.ab.ABSnapshotResponseMessage;
+import com.kids.servent.message.util.MessageUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gathers the results of AB snapshots over their spanning trees, see {@link SnapshotTree}.
+ * <p>
+ * Requests are causal broadcasts, so the tree is built from the copies of a request that the broadcast brings in.
+ * Results only go up to the parent, outside the causal order, as nobody acts on them before the initiator has them all.
+ * The initiator then sends back down the tree which transactions each servent had received from every other one,
+ * so each servent can list the transactions it sent that were still in transit and drop the others from its sent logs,
+ * along with the bitcakes that were in transit towards it.
+ * Only then does a servent know everything that belongs to its checkpoint, so that is when it writes it.
+ */
+public class ABSnapshotTree {
+
+    private final SnapshotTree<ABSnapshot> tree = new SnapshotTree<>();
+    private final ABChannelCounters channels;
+
+    // Our own results, with our vector clock when we recorded them, until the received indexes come back
+    private final Map<SnapshotId, Recorded> recorded = new ConcurrentHashMap<>();
+
+    private record Recorded(ABSnapshot snapshot, ClockSnapshot vectorClock) { }
+
+    public ABSnapshotTree(ABChannelCounters channels) {
+        this.channels = channels;
+    }
+
+    /**
+     * Makes this servent the root of the tree of a snapshot it initiates.
+     */
+    public void start(SnapshotId snapshotId) {
+        tree.join(snapshotId, AppConfig.myServentInfo.id(), AppConfig.myServentInfo.neighbors());
+    }
+
+    /**
+     * Called for every copy of a request that reaches us, our own ones coming back included.
+     *
+     * @param senderId the neighbor the copy came from
+     * @param first whether this is the first copy, which makes the sender our parent
+     */
+    public void requestReceived(SnapshotId snapshotId, int senderId, boolean first) {
+        if (first) {
+            List<Integer> forwardedTo = CausalBroadcast.getInstance().rebroadcastTargets(snapshotId.initiatorId(), senderId);
+            tree.join(snapshotId, senderId, forwardedTo);
+        } else {
+            sendSubtree(snapshotId, tree.addNonChild(snapshotId, senderId));
+        }
+    }
+
+    public void addOwnSnapshot(SnapshotId snapshotId, ABSnapshot snapshot) {
+        recorded.put(snapshotId, new Recorded(snapshot, CausalBroadcast.getInstance().getVectorClock().snapshot()));
+        sendSubtree(snapshotId, tree.addOwnResult(snapshotId, snapshot));
+    }
+
+    public void addChild(SnapshotId snapshotId, int childId, Map<Integer, ABSnapshot> snapshots) {
+        sendSubtree(snapshotId, tree.addChild(snapshotId, childId, snapshots));
+    }
+
+    /**
+     * Lists our transactions that were in transit, drops the ones the others had received, writes our checkpoint,
+     * and passes the counts and amounts of every child's subtree on to that child.
+     *
+     * @param receivedIndexes for every servent in our subtree, which of its transactions each servent had received
+     * @param inTransitCounts for every servent in our subtree, the number of transactions in transit towards it from each servent
+     * @param inTransitAmounts for every servent in our subtree, the bitcakes in transit towards it from each servent
+     */
+    public void delivered(SnapshotId snapshotId, Map<Integer, ABReceivedIndexes[]> receivedIndexes,
+                          Map<Integer, int[]> inTransitCounts, Map<Integer, int[]> inTransitAmounts) {
+        int myId = AppConfig.myServentInfo.id();
+        Recorded own = recorded.remove(snapshotId);
+        ABReceivedIndexes[] myReceived = receivedIndexes.get(myId);
+        if (myReceived != null && own != null) {
+            for (int receiver = 0; receiver < myReceived.length; receiver++) {
+                if (receiver != myId) printInTransit(snapshotId, receiver, myReceived[receiver], own.snapshot().getChannels().getSentCount(receiver));
+            }
+        }
+        channels.release(snapshotId, myReceived);
+        if (own != null) writeCheckpoint(snapshotId, own, inTransitCounts.get(myId), inTransitAmounts.get(myId));
+
+        for (Map.Entry<Integer, Set<Integer>> child : tree.leave(snapshotId).entrySet()) {
+            Map<Integer, ABReceivedIndexes[]> childReceived = new HashMap<>();
+            Map<Integer, int[]> childInTransitCounts = new HashMap<>();
+            Map<Integer, int[]> childInTransitAmounts = new HashMap<>();
+            for (Integer serventId : child.getValue()) {
+                childReceived.put(serventId, receivedIndexes.get(serventId));
+                childInTransitCounts.put(serventId, inTransitCounts.get(serventId));
+                childInTransitAmounts.put(serventId, inTransitAmounts.get(serventId));
+            }
+            MessageUtil.sendMessage(new ABDeliveredMessage(
+                    AppConfig.myServentInfo, AppConfig.getInfoById(child.getKey()),
+                    childReceived, childInTransitCounts, childInTransitAmounts, snapshotId
+            ));
+        }
+    }
+
+    /**
+     * Lists the transactions we had sent to a servent when we recorded our state that it hadn't received.
+     * Transactions can overtake each other, so these are the ones past its watermark that it didn't list as received.
+     */
+    private void printInTransit(SnapshotId snapshotId, int receiverId, ABReceivedIndexes received, int sent) {
+        int missing = (sent - received.below()) - received.countBetween(received.below(), sent);
+        if (missing <= 0) return;
+
+        int listed = 0;
+        for (ABTransactionLog.Entry entry : channels.sentBetween(receiverId, received.below(), sent)) {
+            if (received.contains(entry.index())) continue;
+
+            AppConfig.timestampedStandardPrint("Unprocessed transaction #" + entry.messageId() + " in snapshot " + snapshotId
+                    + " [" + AppConfig.myServentInfo.id() + " to " + receiverId + "]: " + entry.amount() + " bitcake");
+            listed++;
+        }
+
+        if (listed < missing) {
+            AppConfig.timestampedStandardPrint("Unprocessed transactions in snapshot " + snapshotId + " no longer logged "
+                    + "[" + AppConfig.myServentInfo.id() + " to " + receiverId + "]: " + (missing - listed));
+        }
+    }
+
+    /**
+     * Writes our recorded amount and channel totals, together with what the others had sent us and we hadn't received.
+     */
+    private void writeCheckpoint(SnapshotId snapshotId, Recorded own, int[] myInTransitCounts, int[] myInTransitAmounts) {
+        ABChannelState state = own.snapshot().getChannels();
+        Map<Integer, Integer> inTransit = new HashMap<>();
+        Map<Integer, Checkpoint.Channel> totals = new HashMap<>();
+        for (int serventId = 0; serventId < state.size(); serventId++) {
+            if (serventId == AppConfig.myServentInfo.id()) continue;
+
+            int count = valueOf(myInTransitCounts, serventId);
+            int amount = valueOf(myInTransitAmounts, serventId);
+            if (amount > 0) inTransit.put(serventId, amount);
+
+            totals.put(serventId, new Checkpoint.Channel(
+                    state.getSentCount(serventId), state.getSentAmount(serventId),
+                    state.getReceivedCount(serventId) + count, state.getReceivedAmount(serventId) + amount
+            ));
+        }
+
+        Checkpoints.record(new Checkpoint(
+                snapshotId, SnapshotType.ACHARYA_BADRINATH, own.snapshot().getAmount(), own.vectorClock(), inTransit, totals
+        ));
+    }
+
+    private static int valueOf(int[] values, int serventId) {
+        return values != null && serventId < values.length ? values[serventId] : 0;
+    }
+
+    /**
+     * Sends the results of a finished subtree to the parent. At the initiator they are the results
+     * of every servent, so they go to the collector, and the received indexes go back down the tree.
+     */
+    private void sendSubtree(SnapshotId snapshotId, SnapshotTree.Subtree<ABSnapshot> subtree) {
+        if (subtree == null) return;
+
+        if (!subtree.isRoot()) {
+            MessageUtil.sendMessage(new ABSnapshotResponseMessage(
+                    AppConfig.myServentInfo, AppConfig.getInfoById(subtree.parentId()), subtree.results(), snapshotId
+            ));
+            return;
+        }
+
+        SnapshotCollector snapshotCollector = CausalBroadcast.getInstance().getSnapshotCollector();
+        Map<String, ABSnapshot> collected = ((ABCollector) snapshotCollector).getCollectedABValues(snapshotId);
+        for (ABSnapshot snapshot : subtree.results().values()) {
+            collected.put("node " + snapshot.getServentId(), snapshot);
+        }
+        snapshotCollector.checkCompletion(snapshotId);
+
+        delivered(snapshotId, receivedIndexes(subtree.results()), inTransitCounts(subtree.results()), inTransitAmounts(subtree.results()));
+    }
+
+    private static Map<Integer, ABReceivedIndexes[]> receivedIndexes(Map<Integer, ABSnapshot> snapshots) {
+        Map<Integer, ABReceivedIndexes[]> receivedIndexes = new HashMap<>();
+        for (Integer sender : snapshots.keySet()) {
+            ABReceivedIndexes[] received = new ABReceivedIndexes[AppConfig.getServentCount()];
+            Arrays.fill(received, ABReceivedIndexes.NONE);
+            for (ABSnapshot receiver : snapshots.values()) {
+                if (receiver.getServentId() != sender) received[receiver.getServentId()] = receiver.getChannels().getReceived(sender);
+            }
+            receivedIndexes.put(sender, received);
+        }
+        return receivedIndexes;
+    }
+
+    private static Map<Integer, int[]> inTransitCounts(Map<Integer, ABSnapshot> snapshots) {
+        Map<Integer, int[]> inTransitCounts = new HashMap<>();
+        for (ABSnapshot receiver : snapshots.values()) {
+            int[] counts = new int[AppConfig.getServentCount()];
+            for (ABSnapshot sender : snapshots.values()) {
+                if (sender == receiver) continue;
+                int sent = sender.getChannels().getSentCount(receiver.getServentId());
+                counts[sender.getServentId()] = Math.max(0, sent - receiver.getChannels().getReceivedCount(sender.getServentId()));
+            }
+            inTransitCounts.put(receiver.getServentId(), counts);
+        }
+        return inTransitCounts;
+    }
+
+    /**
+     * Whatever one side sent and the other didn't receive is in transit. Amounts are compared as totals,
+     * so it doesn't matter in which order the transactions arrived.
+     */
+    private static Map<Integer, int[]> inTransitAmounts(Map<Integer, ABSnapshot> snapshots) {
+        Map<Integer, int[]> inTransitAmounts = new HashMap<>();
+        for (ABSnapshot receiver : snapshots.values()) {
+            int[] amounts = new int[AppConfig.getServentCount()];
+            for (ABSnapshot sender : snapshots.values()) {
+                if (sender == receiver) continue;
+                int sent = sender.getChannels().getSentAmount(receiver.getServentId());
+                amounts[sender.getServentId()] = Math.max(0, sent - receiver.getChannels().getReceivedAmount(sender.getServentId()));
+            }
+            inTransitAmounts.put(receiver.getServentId(), amounts);
+        }
+        return inTransitAmounts;
+    }
+}
@@ -0,0 +1,94 @@
+package com.kids.app.snapshot_bitcake.acharya_badrinath;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Append-only log of the transactions this servent sent to one other servent, in the order they were sent.
+ * <p>
+ * Records are compact, just the message id and the amount, since the sender and the receiver are the same
+ * for the whole log. They are kept in fixed-size chunks, so appending never copies what is already logged,
+ * and whole chunks are dropped once the receiver has confirmed it got their transactions.
+ * Every record has an index: the number of transactions sent to the receiver before it.
+ * <p>
+ * Not thread safe, {@link ABChannelCounters} guards it.
+ */
+class ABTransactionLog {
+
+    /**
+     * A logged transaction, with its index in the log.
+     */
+    record Entry(int index, int messageId, int amount) { }
+
+    private static final int CHUNK_SIZE = 256;
+
+    // Every chunk holds CHUNK_SIZE records as (message id, amount) pairs
+    private final Deque<int[]> chunks = new ArrayDeque<>();
+    private int chunkBase;
+    private int start;
+    private int end;
+
+    ABTransactionLog() {
+        this(0);
+    }
+
+    /**
+     * Starts a log whose first record gets the given index.
+     */
+    ABTransactionLog(int firstIndex) {
+        this.chunkBase = firstIndex;
+        this.start = firstIndex;
+        this.end = firstIndex;
+    }
+
+    void append(int messageId, int amount) {
+        int offset = end - chunkBase - (chunks.size() - 1) * CHUNK_SIZE;
+        if (chunks.isEmpty() || offset == CHUNK_SIZE) {
+            chunks.addLast(new int[CHUNK_SIZE * 2]);
+            offset = 0;
+        }
+
+        int[] chunk = chunks.peekLast();
+        chunk[offset * 2] = messageId;
+        chunk[offset * 2 + 1] = amount;
+        end++;
+    }
+
+    /**
+     * @return index of the first record that is still kept
+     */
+    int firstIndex() {
+        return start;
+    }
+
+    /**
+     * Forgets the records before the index, and frees the chunks that hold only such records.
+     */
+    void discardBefore(int index) {
+        start = Math.max(start, Math.min(index, end));
+        while (chunks.size() > 1 && chunkBase + CHUNK_SIZE <= start) {
+            chunks.pollFirst();
+            chunkBase += CHUNK_SIZE;
+        }
+    }
+
+    /**
+     * @return the records that are still kept with indexes from from up to but not including to
+     */
+    List<Entry> between(int from, int to) {
+        List<Entry> entries = new ArrayList<>();
+        int first = Math.max(from, start);
+        int last = Math.min(to, end);
+
+        int index = chunkBase;
+        for (int[] chunk : chunks) {
+            for (int offset = 0; offset < CHUNK_SIZE && index < last; offset++, index++) {
+                if (index < first) continue;
+                entries.add(new Entry(index, chunk[offset * 2], chunk[offset * 2 + 1]));
+            }
+        }
+        return entries;
+    }
+}
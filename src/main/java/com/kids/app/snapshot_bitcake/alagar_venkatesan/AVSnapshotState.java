@@ -0,0 +1,56 @@
+package com.kids.app.snapshot_bitcake.alagar_venkatesan;
+
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What a servent recorded for one Alagar-Venkatesan snapshot: its bitcake amount when the marker arrived,
+ * and the transactions that were sent before the marker but received after it.
+ */
+public class AVSnapshotState {
+
+    @Getter private final SnapshotId snapshotId;
+    @Getter private final int recordedAmount;
+    @Getter private final ClockSnapshot markerVectorClock;
+    private final Map<Integer, Integer> inputChannel = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> outputChannel = new ConcurrentHashMap<>();
+
+    public AVSnapshotState(SnapshotId snapshotId, int recordedAmount, ClockSnapshot markerVectorClock) {
+        this.snapshotId = snapshotId;
+        this.recordedAmount = recordedAmount;
+        this.markerVectorClock = markerVectorClock;
+
+        for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
+            inputChannel.put(neighbor, 0);
+        }
+    }
+
+    /**
+     * Records a received transaction in the input channel if it was sent before the sender got the marker,
+     * that is, if the sender hadn't yet seen the initiator's clock entry of the marker.
+     *
+     * @param senderVectorClock the vector clock of the transaction's sender
+     * @param neighbor the ID of the servent that sent this transaction
+     * @param amount the amount of bitcake involved in the transaction
+     */
+    public void recordTransaction(ClockSnapshot senderVectorClock, int neighbor, int amount) {
+        int initiatorId = snapshotId.initiatorId();
+        if (senderVectorClock.get(initiatorId) <= markerVectorClock.get(initiatorId)) {
+            inputChannel.merge(neighbor, amount, Integer::sum);
+        }
+    }
+
+    public Map<Integer, Integer> getInputChannel() {
+        return Collections.unmodifiableMap(inputChannel);
+    }
+
+    public Map<Integer, Integer> getOutputChannel() {
+        return Collections.unmodifiableMap(outputChannel);
+    }
+}
@@ -0,0 +1,179 @@
+package com.kids.app.snapshot_bitcake.chandy_lamport;
+
+import com.kids.app.AppConfig;
+import com.kids.app.checkpoint.Checkpoint;
+import com.kids.app.checkpoint.Checkpoints;
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.app.snapshot_bitcake.snapshot_collector.CLCollector;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
+import com.kids.servent.message.implementation.SnapshotMessage;
+import com.kids.servent.message.implementation.cl.CLMarkerMessage;
+import com.kids.servent.message.implementation.cl.CLSnapshotResponseMessage;
+import com.kids.servent.message.util.MessageUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bitcake manager for the Chandy-Lamport snapshot.
+ * <p>
+ * Unlike Coordinated Checkpointing, transactions keep flowing while a snapshot runs. A servent records
+ * its amount and sends a marker on every outgoing channel. From then on it records what arrives on each
+ * incoming channel until the marker comes on that channel. This needs FIFO channels.
+ * <p>
+ * Our bitcakes are taken away when a transaction actually goes out, in {@link com.kids.servent.message.util.FifoSendWorker}
+ * under {@link AppConfig#colorLock}. We record under the same lock and stop being white until all of our markers are out,
+ * so every transaction that left before we recorded is ahead of the marker on its channel, and every one after it is behind.
+ */
+public class CLBitcakeManager implements BitcakeManager {
+
+    private final AtomicInteger amount = new AtomicInteger(1000);
+
+    // Snapshots we recorded our state for and still record channels of. Guarded by channelLock
+    private final Map<SnapshotId, CLSnapshotState> recordings = new HashMap<>();
+    private final Object channelLock = new Object();
+
+    // Markers we queued and that haven't gone out yet. Guarded by AppConfig.colorLock
+    private int unsentMarkers = 0;
+
+    @Override
+    public void takeSomeBitcakes(int amount) {
+        this.amount.getAndAdd(-amount);
+    }
+
+    @Override
+    public void addSomeBitcakes(int amount) {
+        this.amount.getAndAdd(amount);
+    }
+
+    @Override
+    public int getCurrentBitcakeAmount() {
+        return amount.get();
+    }
+
+    /**
+     * Takes in a received transaction and counts it towards every channel that is being recorded.
+     */
+    public void receiveTransaction(int senderId, int amount) {
+        synchronized (channelLock) {
+            addSomeBitcakes(amount);
+            for (CLSnapshotState recording : recordings.values()) {
+                recording.recordTransaction(senderId, amount);
+            }
+        }
+    }
+
+    /**
+     * Starts a snapshot as its initiator.
+     */
+    public void startSnapshot(SnapshotId snapshotId, SnapshotCollector snapshotCollector) {
+        CLSnapshotState recording = recordState(snapshotId);
+        if (recording != null && recording.isComplete()) {
+            finishSnapshot(recording, snapshotCollector);
+        }
+    }
+
+    /**
+     * Handles a marker from a neighbor. The first marker of a snapshot makes us record our state,
+     * and every marker ends the recording of the channel it came on.
+     */
+    public void handleMarker(SnapshotMessage marker, SnapshotCollector snapshotCollector) {
+        SnapshotId snapshotId = marker.getSnapshotId();
+        int senderId = marker.getOriginalSenderInfo().id();
+
+        // Recording adds the state, so it happens before we take the channel lock
+        recordState(snapshotId);
+
+        CLSnapshotState finished = null;
+        synchronized (channelLock) {
+            CLSnapshotState recording = recordings.get(snapshotId);
+            if (recording == null) {
+                AppConfig.timestampedErrorPrint("Got marker for snapshot " + snapshotId + " that we already finished: " + marker);
+                return;
+            }
+
+            if (recording.closeChannel(senderId)) {
+                recordings.remove(snapshotId);
+                finished = recording;
+            }
+        }
+
+        if (finished != null) {
+            finishSnapshot(finished, snapshotCollector);
+        }
+    }
+
+    /**
+     * Records our amount for the snapshot and queues a marker for every neighbor, unless we already did.
+     *
+     * @return the new recording, or null if we had already recorded for this snapshot
+     */
+    private CLSnapshotState recordState(SnapshotId snapshotId) {
+        synchronized (AppConfig.colorLock) {
+            CLSnapshotState recording;
+            int recordedAmount;
+            synchronized (channelLock) {
+                if (recordings.containsKey(snapshotId)) return null;
+
+                recordedAmount = getCurrentBitcakeAmount();
+                recording = new CLSnapshotState(snapshotId, recordedAmount);
+                recordings.put(snapshotId, recording);
+            }
+            AppConfig.timestampedStandardPrint("Recorded " + recordedAmount + " bitcakes for snapshot " + snapshotId);
+
+            // Hold regular messages back until the markers are ahead of them
+            for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
+                ServentInfo neighborInfo = AppConfig.getInfoById(neighbor);
+                unsentMarkers++;
+                AppConfig.isWhite.set(false);
+                MessageUtil.sendMessage(new CLMarkerMessage(AppConfig.myServentInfo, neighborInfo, snapshotId, this));
+            }
+
+            if (recording.isComplete()) {
+                synchronized (channelLock) {
+                    recordings.remove(snapshotId);
+                }
+            }
+            return recording;
+        }
+    }
+
+    /**
+     * Called by a marker as it goes out, already holding {@link AppConfig#colorLock}.
+     * Once all of our markers are out, regular messages can go again.
+     */
+    public void markerSent() {
+        synchronized (AppConfig.colorLock) {
+            unsentMarkers--;
+            if (unsentMarkers == 0) {
+                AppConfig.isWhite.set(true);
+            }
+        }
+    }
+
+    /**
+     * Reports what we recorded to the initiator, or to our own collector if we are the initiator.
+     */
+    private void finishSnapshot(CLSnapshotState recording, SnapshotCollector snapshotCollector) {
+        SnapshotId snapshotId = recording.getSnapshotId();
+        CLSnapshot snapshot = recording.toSnapshot();
+        AppConfig.timestampedStandardPrint("Finished recording snapshot " + snapshotId);
+        Checkpoints.record(new Checkpoint(snapshotId, SnapshotType.CHANDY_LAMPORT, snapshot.recordedAmount(), null, snapshot.channelAmounts(), Map.of()));
+
+        if (snapshotId.initiatorId() == AppConfig.myServentInfo.id()) {
+            ((CLCollector) snapshotCollector).addCLSnapshotInfo(snapshotId, snapshot.serventId(), snapshot);
+            snapshotCollector.checkCompletion(snapshotId);
+        } else {
+            MessageUtil.sendMessage(new CLSnapshotResponseMessage(
+                    AppConfig.myServentInfo,
+                    AppConfig.getInfoById(snapshotId.initiatorId()),
+                    snapshot,
+                    snapshotId
+            ));
+        }
+    }
+}
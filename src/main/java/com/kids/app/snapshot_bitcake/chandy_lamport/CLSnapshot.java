@@ -0,0 +1,20 @@
+package com.kids.app.snapshot_bitcake.chandy_lamport;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Snapshot result for servent with id serventId.
+ * The amount of bitcakes on that servent is recordedAmount, and channelAmounts holds,
+ * for every neighbor, the bitcakes it sent us that were in transit when we recorded.
+ */
+public record CLSnapshot(
+        int serventId,
+        int recordedAmount,
+        Map<Integer, Integer> channelAmounts
+) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 4719215735320813062L;
+}
@@ -0,0 +1,64 @@
+package com.kids.app.snapshot_bitcake.chandy_lamport;
+
+import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a servent is recording for one Chandy-Lamport snapshot: its amount when it recorded,
+ * and what arrived on each incoming channel since then, until the marker came on that channel.
+ * <p>
+ * Guarded by the lock of the {@link CLBitcakeManager} that owns it.
+ */
+class CLSnapshotState {
+
+    private final SnapshotId snapshotId;
+    private final int recordedAmount;
+    private final Map<Integer, Integer> channelAmounts = new HashMap<>();
+    private final Set<Integer> openChannels = new HashSet<>();
+
+    CLSnapshotState(SnapshotId snapshotId, int recordedAmount) {
+        this.snapshotId = snapshotId;
+        this.recordedAmount = recordedAmount;
+
+        for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
+            channelAmounts.put(neighbor, 0);
+            openChannels.add(neighbor);
+        }
+    }
+
+    /**
+     * Counts a transaction towards the channel state, if we haven't got the marker on its channel yet.
+     */
+    void recordTransaction(int senderId, int amount) {
+        if (openChannels.contains(senderId)) {
+            channelAmounts.merge(senderId, amount, Integer::sum);
+        }
+    }
+
+    /**
+     * Stops recording the channel the marker came on.
+     *
+     * @return true if that was the last channel we were recording
+     */
+    boolean closeChannel(int senderId) {
+        openChannels.remove(senderId);
+        return openChannels.isEmpty();
+    }
+
+    boolean isComplete() {
+        return openChannels.isEmpty();
+    }
+
+    CLSnapshot toSnapshot() {
+        return new CLSnapshot(AppConfig.myServentInfo.id(), recordedAmount, Map.copyOf(channelAmounts));
+    }
+
+    SnapshotId getSnapshotId() {
+        return snapshotId;
+    }
+}
@@ -1,26 +1,51 @@
 package com.kids.app.snapshot_bitcake.coordinated_checkpointing;
 
 import com.kids.app.AppConfig;
+import com.kids.app.checkpoint.Checkpoint;
+import com.kids.app.checkpoint.Checkpoints;
 import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.app.snapshot_bitcake.SnapshotTree;
 import com.kids.app.snapshot_bitcake.snapshot_collector.CCCollector;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.message.Message;
+import com.kids.servent.message.implementation.SnapshotMessage;
 import com.kids.servent.message.implementation.cc.CCResumeMessage;
 import com.kids.servent.message.implementation.cc.CCSnapshotRequestMessage;
 import com.kids.servent.message.implementation.cc.CCSnapshotResponseMessage;
 import com.kids.servent.message.util.MessageUtil;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Bitcake manager for Coordinated Checkpointing.
+ * <p>
+ * Several snapshots can be in progress at the same time. The servent stays in snapshot mode,
+ * holding back incoming transactions, for as long as at least one of them hasn't been resumed.
+ */
 public class CCBitcakeManager implements BitcakeManager {
 
     private final AtomicInteger amount = new AtomicInteger(1000);
-    private final AtomicBoolean snapshotMode = new AtomicBoolean(false);
-    private final Map<Integer, Message> pendingMessages = new ConcurrentHashMap<>();
-    private int initiatorId = -1;
+    private final Object snapshotLock = new Object();
+
+    // Transactions received in snapshot mode. Guarded by snapshotLock
+    private final CCHoldBuffer heldTransactions = new CCHoldBuffer();
+
+    // Snapshots we recorded our state for and that haven't been resumed yet
+    private final Set<SnapshotId> activeSnapshots = ConcurrentHashMap.newKeySet();
+    // Snapshots that were resumed, so late copies of their request don't start them again
+    private final Set<SnapshotId> finishedSnapshots = ConcurrentHashMap.newKeySet();
+    // What we recorded for the snapshots in progress, checkpointed once they are resumed. Guarded by snapshotLock
+    private final Map<SnapshotId, Integer> recordedAmounts = new HashMap<>();
+
+    // Amounts of the servents in our subtree, for every snapshot in progress
+    private final SnapshotTree<Integer> resultTree = new SnapshotTree<>();
 
     @Override
     public void takeSomeBitcakes(int amount) {
@@ -38,131 +63,181 @@ public class CCBitcakeManager implements BitcakeManager {
     }
 
     /**
-     * Handles a snapshot request from the initiator.
-     * When a node receives a snapshot request, it:
-     * 1. Records its local state
-     * 2. Enters snapshot mode (blocking new messages)
-     * 3. Forwards the request to neighbors
-     * 4. Sends a response back to the initiator
+     * Handles a snapshot request from the initiator or a neighbor.
+     * When a node receives a snapshot request for the first time, it:
+     * 1. Joins the snapshot's spanning tree, with the sender as its parent
+     * 2. Records its local state
+     * 3. Enters snapshot mode (blocking new messages)
+     * 4. Forwards the request to its other neighbors
+     * Any later copy of the request tells it that the sender is not its child.
      */
     public void handleSnapshotRequest(Message requestMessage, SnapshotCollector snapshotCollector) {
         try {
             AppConfig.timestampedStandardPrint("Handling snapshot request: " + requestMessage);
-            
-            // Only proceed if not already in snapshot mode
-            if (snapshotMode.compareAndSet(false, true)) {
-                CCSnapshotRequestMessage request = (CCSnapshotRequestMessage) requestMessage;
-                initiatorId = request.getInitiatorId();
-                
-                AppConfig.timestampedStandardPrint("Entering snapshot mode, initiator: " + initiatorId);
-                
-                // Record local state
-                int currentAmount = getCurrentBitcakeAmount();
-                CCSnapshot snapshot = new CCSnapshot(AppConfig.myServentInfo.id(), currentAmount);
-
-                AppConfig.timestampedStandardPrint("Adding snapshot to collector, amount: " + currentAmount);
-                ((CCCollector) snapshotCollector).addCCSnapshotInfo(AppConfig.myServentInfo.id(), snapshot);
-                
-                // Forward to neighbors
-                for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
-                    if (neighbor != requestMessage.getOriginalSenderInfo().id()) {
-                        AppConfig.timestampedStandardPrint("Forwarding snapshot request to neighbor: " + neighbor);
-                        
-                        CCSnapshotRequestMessage forwardMessage = new CCSnapshotRequestMessage(
-                                AppConfig.myServentInfo,
-                                AppConfig.getInfoById(neighbor),
-                                initiatorId
-                        );
-                        
-                        MessageUtil.sendMessage(forwardMessage);
-                    }
-                }
-                
-                // Send response back to initiator
-                if (AppConfig.myServentInfo.id() != initiatorId) {
-                    AppConfig.timestampedStandardPrint("Sending snapshot response to initiator: " + initiatorId);
-                    
-                    CCSnapshotResponseMessage response = new CCSnapshotResponseMessage(
-                            AppConfig.myServentInfo,
-                            AppConfig.getInfoById(initiatorId),
-                            currentAmount
-                    );
-                    
-                    MessageUtil.sendMessage(response);
-                } else {
-                    AppConfig.timestampedStandardPrint("I am the initiator, not sending response to myself");
-                }
+            SnapshotId snapshotId = ((SnapshotMessage) requestMessage).getSnapshotId();
+            int senderId = requestMessage.getOriginalSenderInfo().id();
+
+            // Only proceed the first time we see this snapshot
+            boolean first;
+            synchronized (snapshotLock) {
+                first = !finishedSnapshots.contains(snapshotId) && activeSnapshots.add(snapshotId);
+                if (first) resultTree.join(snapshotId, senderId, forwardTargets(senderId));
+            }
+            if (!first) {
+                sendSubtree(snapshotId, resultTree.addNonChild(snapshotId, senderId), snapshotCollector);
+                return;
+            }
+
+            AppConfig.timestampedStandardPrint("Entering snapshot mode for snapshot " + snapshotId);
+
+            // Record local state
+            int currentAmount = getCurrentBitcakeAmount();
+            synchronized (snapshotLock) {
+                recordedAmounts.put(snapshotId, currentAmount);
+            }
+
+            // Forward to neighbors
+            for (Integer neighbor : forwardTargets(senderId)) {
+                AppConfig.timestampedStandardPrint("Forwarding snapshot request to neighbor: " + neighbor);
+
+                CCSnapshotRequestMessage forwardMessage = new CCSnapshotRequestMessage(
+                        AppConfig.myServentInfo,
+                        AppConfig.getInfoById(neighbor),
+                        snapshotId
+                );
+
+                MessageUtil.sendMessage(forwardMessage);
             }
+
+            sendSubtree(snapshotId, resultTree.addOwnResult(snapshotId, currentAmount), snapshotCollector);
         } catch (Exception e) {
             AppConfig.timestampedErrorPrint("Error handling snapshot request: " + e.getMessage());
         }
     }
 
+    private static List<Integer> forwardTargets(int senderId) {
+        return AppConfig.myServentInfo.neighbors().stream()
+                .filter(neighbor -> neighbor != senderId)
+                .toList();
+    }
+
+    /**
+     * Handles the results of a child's subtree.
+     */
+    public void handleSnapshotResponse(CCSnapshotResponseMessage response, SnapshotCollector snapshotCollector) {
+        SnapshotId snapshotId = response.getSnapshotId();
+        int childId = response.getOriginalSenderInfo().id();
+
+        sendSubtree(snapshotId, resultTree.addChild(snapshotId, childId, response.getAmounts()), snapshotCollector);
+    }
+
     /**
-     * Exits snapshot mode when receiving a resume message.
-     * Process any pending messages that were received during snapshot mode.
+     * Sends the results of a finished subtree to the parent. At the initiator they are the results of
+     * every servent, so they go to the collector and the snapshot is resumed.
      */
-    public void exitSnapshotMode() {
-        if (snapshotMode.compareAndSet(true, false)) {
-            AppConfig.timestampedStandardPrint("Exiting snapshot mode, processing " + pendingMessages.size() + " pending messages");
-            initiatorId = -1;
-            
-            // Process any pending messages
-            for (Message pendingMessage : pendingMessages.values()) {
-                MessageUtil.sendMessage(pendingMessage);
+    private void sendSubtree(SnapshotId snapshotId, SnapshotTree.Subtree<Integer> subtree, SnapshotCollector snapshotCollector) {
+        if (subtree == null) return;
+
+        if (!subtree.isRoot()) {
+            AppConfig.timestampedStandardPrint("Sending snapshot response for " + subtree.results().size() + " servents to parent: " + subtree.parentId());
+
+            CCSnapshotResponseMessage response = new CCSnapshotResponseMessage(
+                    AppConfig.myServentInfo,
+                    AppConfig.getInfoById(subtree.parentId()),
+                    subtree.results(),
+                    snapshotId
+            );
+            MessageUtil.sendMessage(response);
+            return;
+        }
+
+        CCCollector collector = (CCCollector) snapshotCollector;
+        subtree.results().forEach((serventId, recordedAmount) ->
+                collector.addCCSnapshotInfo(snapshotId, serventId, new CCSnapshot(serventId, recordedAmount)));
+
+        AppConfig.timestampedStandardPrint("Snapshot complete, sending resume messages");
+        sendResumeMessages(snapshotId);
+        snapshotCollector.checkCompletion(snapshotId);
+    }
+
+    /**
+     * Ends a snapshot when receiving a resume message. When it was the last snapshot in progress,
+     * exits snapshot mode and applies the transactions that were held during snapshot mode, all at once.
+     * <p>
+     * The initiator only resumes once it has everyone's state, so this is where our checkpoint is written.
+     * A snapshot that never completes leaves no checkpoint to recover from.
+     */
+    public void exitSnapshotMode(SnapshotId snapshotId) {
+        Integer recordedAmount;
+        synchronized (snapshotLock) {
+            if (!activeSnapshots.remove(snapshotId)) return;
+            finishedSnapshots.add(snapshotId);
+            recordedAmount = recordedAmounts.remove(snapshotId);
+
+            if (activeSnapshots.isEmpty()) {
+                // Apply the held transactions here, they were already received and must not go over the network again
+                List<Message> held = heldTransactions.drain();
+                int heldAmount = 0;
+                for (Message transaction : held) {
+                    heldAmount += Integer.parseInt(transaction.getMessageText());
+                }
+                addSomeBitcakes(heldAmount);
+
+                AppConfig.timestampedStandardPrint("Exiting snapshot mode, applied " + held.size() + " held transactions with " + heldAmount + " bitcakes");
             }
-            pendingMessages.clear();
+        }
+
+        if (recordedAmount != null) {
+            Checkpoints.record(new Checkpoint(snapshotId, SnapshotType.COORDINATED_CHECKPOINTING, recordedAmount, null, Map.of(), Map.of()));
         }
     }
 
     /**
      * Checks if a message should be processed or queued while in snapshot mode.
+     * <p>
+     * If the sender already has {@link AppConfig#CC_HOLD_CAPACITY} transactions held, the message is not
+     * queued and gets applied right away. Our amount for the snapshots in progress was recorded before,
+     * so this only gives up holding the transaction back, it doesn't change the snapshot.
      * 
      * @param message The message to check
      * @return true if the message should be queued, false if it can be processed immediately
      */
     public boolean shouldQueueMessage(Message message) {
-        if (!snapshotMode.get()) return false;
-        
-        // Queue the message for later processing
-        pendingMessages.put(message.getMessageId(), message);
+        int senderId = message.getOriginalSenderInfo().id();
+        synchronized (snapshotLock) {
+            if (activeSnapshots.isEmpty()) return false;
+
+            // Queue the message for later processing
+            if (!heldTransactions.hold(senderId, message)) {
+                AppConfig.timestampedErrorPrint("Hold buffer for servent " + senderId + " is full, applying transaction right away: " + message);
+                return false;
+            }
+        }
         AppConfig.timestampedStandardPrint("Queued message during snapshot: " + message);
         return true;
     }
 
     /**
-     * Called by the initiator to resume normal operation after the snapshot is complete.
+     * Resumes normal operation after the snapshot is complete. The initiator starts it,
+     * and every node passes the resume message on to its children in the spanning tree.
      */
-    public void sendResumeMessages() {
-        if (AppConfig.myServentInfo.id() == initiatorId) {
-            AppConfig.timestampedStandardPrint("Initiator sending resume messages to all nodes");
-            
-            // Send CC_RESUME message to all nodes
-            for (int i = 0; i < AppConfig.getServentCount(); i++) {
-                if (i != AppConfig.myServentInfo.id()) {
-                    CCResumeMessage resumeMessage = new CCResumeMessage(
-                            AppConfig.myServentInfo,
-                            AppConfig.getInfoById(i)
-                    );
-                    MessageUtil.sendMessage(resumeMessage);
-                }
-            }
-
-            exitSnapshotMode();
+    public void sendResumeMessages(SnapshotId snapshotId) {
+        for (Integer child : resultTree.leave(snapshotId).keySet()) {
+            CCResumeMessage resumeMessage = new CCResumeMessage(
+                    AppConfig.myServentInfo,
+                    AppConfig.getInfoById(child),
+                    snapshotId
+            );
+            MessageUtil.sendMessage(resumeMessage);
         }
+
+        exitSnapshotMode(snapshotId);
     }
     
     /**
      * Checks if the node is currently in snapshot mode.
      */
     public boolean isInSnapshotMode() {
-        return snapshotMode.get();
-    }
-    
-    /**
-     * Checks if this node is the initiator of the current snapshot.
-     */
-    public boolean isInitiator() {
-        return AppConfig.myServentInfo.id() == initiatorId;
+        return !activeSnapshots.isEmpty();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.kids.app.snapshot_bitcake.coordinated_checkpointing;
+
+import com.kids.app.AppConfig;
+import com.kids.servent.message.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transactions a servent received while in snapshot mode, held back until the snapshot is resumed.
+ * <p>
+ * Every sender has its own queue, so held transactions keep the order they arrived in, and message ids
+ * of different senders can't clash. A queue holds at most {@link AppConfig#CC_HOLD_CAPACITY} transactions.
+ * <p>
+ * Not thread safe, {@link CCBitcakeManager} guards it.
+ */
+class CCHoldBuffer {
+
+    private final Map<Integer, Deque<Message>> held = new HashMap<>();
+    private int size = 0;
+
+    /**
+     * @return false if the sender's queue is full, in which case the transaction is not held
+     */
+    boolean hold(int senderId, Message message) {
+        Deque<Message> queue = held.computeIfAbsent(senderId, id -> new ArrayDeque<>());
+        if (queue.size() >= AppConfig.CC_HOLD_CAPACITY) return false;
+
+        queue.addLast(message);
+        size++;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Takes out everything that is held, sender by sender, each sender's transactions in the order they arrived.
+     */
+    List<Message> drain() {
+        List<Message> messages = new ArrayList<>(size);
+        for (Deque<Message> queue : held.values()) {
+            messages.addAll(queue);
+            queue.clear();
+        }
+        size = 0;
+        return messages;
+    }
+}
@@ -1,5 +1,6 @@
 package com.kids.app.snapshot_bitcake.snapshot_collector;
 
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
 
 import java.util.Map;
@@ -8,5 +9,5 @@ import java.util.Map;
  * This interface defines the contract for a collector that gathers snapshots of the Acharya-Badrinath algorithm.
  */
 public interface ABCollector {
-    Map<String, ABSnapshot> getCollectedABValues();
+    Map<String, ABSnapshot> getCollectedABValues(SnapshotId snapshotId);
 }
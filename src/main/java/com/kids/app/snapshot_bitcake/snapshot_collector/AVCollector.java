@@ -1,9 +1,13 @@
 package com.kids.app.snapshot_bitcake.snapshot_collector;
 
+import com.kids.app.snapshot_bitcake.SnapshotId;
+
 /**
  * This interface defines the contract for a collector that gathers snapshots of the Alagar-Venkatesan algorithm.
  */
 public interface AVCollector {
-    void markAsDone(int id);
-    void clearAVData();
+    void markAsDone(SnapshotId snapshotId, int id);
+    int getDoneCount(SnapshotId snapshotId);
+    void markAsTerminated(SnapshotId snapshotId);
+    boolean isTerminated(SnapshotId snapshotId);
 }
@@ -1,11 +1,15 @@
 package com.kids.app.snapshot_bitcake.snapshot_collector;
 
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCSnapshot;
 
+import java.util.Map;
+
 /**
  * Interface for collecting snapshots with the Coordinated Checkpointing algorithm.
  */
 public interface CCCollector {
-    void addCCSnapshotInfo(int id, CCSnapshot ccSnapshot);
-    int getCollectedCCSize();
-} 
\ No newline at end of file
+    void addCCSnapshotInfo(SnapshotId snapshotId, int id, CCSnapshot ccSnapshot);
+    int getCollectedCCSize(SnapshotId snapshotId);
+    Map<Integer, CCSnapshot> getCollectedCCValues(SnapshotId snapshotId);
+}
@@ -0,0 +1,14 @@
+package com.kids.app.snapshot_bitcake.snapshot_collector;
+
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLSnapshot;
+
+import java.util.Map;
+
+/**
+ * Interface for collecting snapshots with the Chandy-Lamport algorithm.
+ */
+public interface CLCollector {
+    void addCLSnapshotInfo(SnapshotId snapshotId, int id, CLSnapshot clSnapshot);
+    Map<Integer, CLSnapshot> getCollectedCLValues(SnapshotId snapshotId);
+}
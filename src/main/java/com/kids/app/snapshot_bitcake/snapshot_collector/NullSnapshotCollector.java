@@ -1,6 +1,7 @@
 package com.kids.app.snapshot_bitcake.snapshot_collector;
 
 import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 
 /**
  * This class is used if the user hasn't specified a snapshot type in config.
@@ -24,4 +25,7 @@ public class NullSnapshotCollector implements SnapshotCollector {
 	@Override
 	public void startCollecting() {}
 
+	@Override
+	public void checkCompletion(SnapshotId snapshotId) {}
+
 }
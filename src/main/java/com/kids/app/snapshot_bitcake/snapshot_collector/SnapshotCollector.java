@@ -2,6 +2,7 @@ package com.kids.app.snapshot_bitcake.snapshot_collector;
 
 import com.kids.app.Cancellable;
 import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 
 /**
  * Describes a snapshot collector. Made not-so-flexibly for readability.
@@ -12,4 +13,5 @@ import com.kids.app.snapshot_bitcake.BitcakeManager;
 public interface SnapshotCollector extends Runnable, Cancellable {
 	BitcakeManager getBitcakeManager();
 	void startCollecting();
+	void checkCompletion(SnapshotId snapshotId);
 }
\ No newline at end of file
@@ -1,23 +1,30 @@
 package com.kids.app.snapshot_bitcake.snapshot_collector;
 
 import com.kids.app.AppConfig;
+import com.kids.app.metrics.Metrics;
 import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.SnapshotType;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABBitcakeManager;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
 import com.kids.app.snapshot_bitcake.alagar_venkatesan.AVBitcakeManager;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLBitcakeManager;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLSnapshot;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCBitcakeManager;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCSnapshot;
 import com.kids.app.snapshot_bitcake.snapshot_strategy.ABSnapshotStrategy;
 import com.kids.app.snapshot_bitcake.snapshot_strategy.AVSnapshotStrategy;
 import com.kids.app.snapshot_bitcake.snapshot_strategy.CCSnapshotStrategy;
+import com.kids.app.snapshot_bitcake.snapshot_strategy.CLSnapshotStrategy;
 import com.kids.app.snapshot_bitcake.snapshot_strategy.SnapshotStrategy;
 
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Worker class that implements the SnapshotCollector functionality.
@@ -31,15 +38,25 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *   <li>Aggregating and printing the snapshot results.</li>
  * </ol>
  * </p>
+ * Every snapshot gets a {@link SnapshotId}, and everything collected for it is kept under that id,
+ * so a new snapshot can start while earlier ones are still collecting.
+ * <p>
+ * Nothing is polled. Each snapshot has a future that is completed from {@link #checkCompletion}, which
+ * the handlers call whenever they record something for the snapshot. The worker thread itself only
+ * runs the queued stages: it starts snapshots and prints the results of completed ones.
  */
-public class SnapshotCollectorWorker implements SnapshotCollector, ABCollector, AVCollector, CCCollector {
+public class SnapshotCollectorWorker implements SnapshotCollector, ABCollector, AVCollector, CCCollector, CLCollector {
 
 	private volatile boolean working = true;
-	private final AtomicBoolean collecting = new AtomicBoolean(false);
+	private final AtomicInteger snapshotSequence = new AtomicInteger(0);
+	private final BlockingQueue<Runnable> stages = new LinkedBlockingQueue<>();
+	private final Map<SnapshotId, CompletableFuture<Void>> completions = new ConcurrentHashMap<>();
 
-	private final Map<String, ABSnapshot> collectedABData = new ConcurrentHashMap<>();
-	private final List<Integer> collectedAVData = new CopyOnWriteArrayList<>();
-	private final Map<Integer, CCSnapshot> collectedCCData = new ConcurrentHashMap<>();
+	private final Map<SnapshotId, Map<String, ABSnapshot>> collectedABData = new ConcurrentHashMap<>();
+	private final Map<SnapshotId, Set<Integer>> collectedAVData = new ConcurrentHashMap<>();
+	private final Set<SnapshotId> terminatedAVSnapshots = ConcurrentHashMap.newKeySet();
+	private final Map<SnapshotId, Map<Integer, CCSnapshot>> collectedCCData = new ConcurrentHashMap<>();
+	private final Map<SnapshotId, Map<Integer, CLSnapshot>> collectedCLData = new ConcurrentHashMap<>();
 
 	private BitcakeManager bitcakeManager;
 	private SnapshotStrategy snapshotStrategy;
@@ -48,15 +65,19 @@ public class SnapshotCollectorWorker implements SnapshotCollector, ABCollector,
 		switch(snapshotType) {
 			case ACHARYA_BADRINATH -> {
 				this.bitcakeManager = new ABBitcakeManager();
-				this.snapshotStrategy = new ABSnapshotStrategy(collectedABData, (ABBitcakeManager) bitcakeManager);
+				this.snapshotStrategy = new ABSnapshotStrategy(this, (ABBitcakeManager) bitcakeManager);
 			}
 			case ALAGAR_VENKATESAN -> {
 				this.bitcakeManager = new AVBitcakeManager();
-				this.snapshotStrategy = new AVSnapshotStrategy(collectedAVData, (AVBitcakeManager) bitcakeManager);
+				this.snapshotStrategy = new AVSnapshotStrategy(this, (AVBitcakeManager) bitcakeManager);
 			}
 			case COORDINATED_CHECKPOINTING -> {
 				this.bitcakeManager = new CCBitcakeManager();
-				this.snapshotStrategy = new CCSnapshotStrategy(collectedCCData, (CCBitcakeManager) bitcakeManager, this);
+				this.snapshotStrategy = new CCSnapshotStrategy(this, (CCBitcakeManager) bitcakeManager, this);
+			}
+			case CHANDY_LAMPORT -> {
+				this.bitcakeManager = new CLBitcakeManager();
+				this.snapshotStrategy = new CLSnapshotStrategy(this, (CLBitcakeManager) bitcakeManager, this);
 			}
 			case NONE -> {
 				AppConfig.timestampedErrorPrint("Making snapshot collector without specifying type. Exiting...");
@@ -72,93 +93,140 @@ public class SnapshotCollectorWorker implements SnapshotCollector, ABCollector,
 	}
 
 	@Override
-	public Map<String, ABSnapshot> getCollectedABValues() {
-		return collectedABData;
+	public Map<String, ABSnapshot> getCollectedABValues(SnapshotId snapshotId) {
+		return collectedABData.computeIfAbsent(snapshotId, id -> new ConcurrentHashMap<>());
 	}
 
 	@Override
-	public void markAsDone(int id) {
-		collectedAVData.add(id);
+	public void markAsDone(SnapshotId snapshotId, int id) {
+		collectedAVData.computeIfAbsent(snapshotId, key -> ConcurrentHashMap.newKeySet()).add(id);
 	}
 
 	@Override
-	public void clearAVData() {
-		if (snapshotStrategy instanceof AVSnapshotStrategy) {
-			((AVSnapshotStrategy) snapshotStrategy).setWait(false);
-			collectedAVData.clear();
-		}
+	public int getDoneCount(SnapshotId snapshotId) {
+		Set<Integer> done = collectedAVData.get(snapshotId);
+		return done == null ? 0 : done.size();
+	}
+
+	@Override
+	public void markAsTerminated(SnapshotId snapshotId) {
+		terminatedAVSnapshots.add(snapshotId);
+	}
+
+	@Override
+	public boolean isTerminated(SnapshotId snapshotId) {
+		return terminatedAVSnapshots.contains(snapshotId);
 	}
 
 	@Override
-	public void addCCSnapshotInfo(int id, CCSnapshot ccSnapshot) {
-		collectedCCData.put(id, ccSnapshot);
+	public void addCCSnapshotInfo(SnapshotId snapshotId, int id, CCSnapshot ccSnapshot) {
+		getCollectedCCValues(snapshotId).put(id, ccSnapshot);
 	}
 	
 	@Override
-	public int getCollectedCCSize() {
-		return collectedCCData.size();
+	public int getCollectedCCSize(SnapshotId snapshotId) {
+		Map<Integer, CCSnapshot> collected = collectedCCData.get(snapshotId);
+		return collected == null ? 0 : collected.size();
+	}
+
+	@Override
+	public Map<Integer, CCSnapshot> getCollectedCCValues(SnapshotId snapshotId) {
+		return collectedCCData.computeIfAbsent(snapshotId, id -> new ConcurrentHashMap<>());
+	}
+
+	@Override
+	public void addCLSnapshotInfo(SnapshotId snapshotId, int id, CLSnapshot clSnapshot) {
+		getCollectedCLValues(snapshotId).put(id, clSnapshot);
+	}
+
+	@Override
+	public Map<Integer, CLSnapshot> getCollectedCLValues(SnapshotId snapshotId) {
+		return collectedCLData.computeIfAbsent(snapshotId, id -> new ConcurrentHashMap<>());
 	}
 
 	@Override
 	public void run() {
+		/*
+		 * Collecting is done in three stages, for every snapshot on its own:
+		 * 1. Send messages asking for values
+		 * 2. Wait for all the responses, without holding this thread
+		 * 3. Print result
+		 */
 		while(working) {
-			
-			// Not collecting yet - just sleep until we start actual work, or finish
-			while (!collecting.get()) {
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-					AppConfig.timestampedErrorPrint("Interrupted while waiting to start collecting.");
-				}
-				if (!working) return;
-			}
-			
-			/*
-			 * Collecting is done in three stages:
-			 * 1. Send messages asking for values
-			 * 2. Wait for all the responses
-			 * 3. Print result
-			 */
-
-			snapshotStrategy.initiateSnapshot();
-			
-			while (collecting.get()) {
-				/*
-				 * Wait for all the responses.
-				 */
-				if (snapshotStrategy.isSnapshotComplete()) {
-					snapshotStrategy.processCollectedData();
-
-					collectedABData.clear();
-					collectedAVData.clear();
-					collectedCCData.clear();
-
-					collecting.set(false);
-				}
-				
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-					AppConfig.timestampedErrorPrint("Interrupted while waiting for snapshot to complete.");
-				}
+			try {
+				stages.take().run();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				AppConfig.timestampedErrorPrint("Interrupted while waiting for snapshots to complete.");
+				return;
 			}
 		}
 	}
+
+	/**
+	 * Completes the snapshot if the strategy says everything has been collected for it.
+	 * Called after every change to the collected data, from whichever thread made it.
+	 */
+	@Override
+	public void checkCompletion(SnapshotId snapshotId) {
+		CompletableFuture<Void> completion = completions.get(snapshotId);
+		if (completion == null || completion.isDone()) return;
+
+		if (snapshotStrategy.isSnapshotComplete(snapshotId)) {
+			completion.complete(null);
+		}
+	}
+
+	private void finishSnapshot(SnapshotId snapshotId) {
+		snapshotStrategy.processCollectedData(snapshotId);
+		clearSnapshotData(snapshotId);
+	}
+
+	private void clearSnapshotData(SnapshotId snapshotId) {
+		completions.remove(snapshotId);
+		collectedABData.remove(snapshotId);
+		collectedAVData.remove(snapshotId);
+		terminatedAVSnapshots.remove(snapshotId);
+		collectedCCData.remove(snapshotId);
+		collectedCLData.remove(snapshotId);
+	}
 	
+	/**
+	 * Makes our next snapshot start at the given sequence number, so a servent that recovered
+	 * from a checkpoint doesn't give its new snapshots the ids of old ones.
+	 */
+	public void continueSequenceFrom(int sequence) {
+		snapshotSequence.accumulateAndGet(sequence, Math::max);
+	}
+	
+	/**
+	 * Starts a new snapshot with the next id. Snapshots that are still collecting keep going.
+	 */
 	@Override
 	public void startCollecting() {
-		boolean oldValue = this.collecting.getAndSet(true);
-		
-		if (oldValue) {
-			AppConfig.timestampedErrorPrint("Tried to start collecting before finished with previous.");
-		}
+		SnapshotId snapshotId = new SnapshotId(AppConfig.myServentInfo.id(), snapshotSequence.getAndIncrement());
+		AppConfig.timestampedStandardPrint("Starting snapshot " + snapshotId);
+
+		long startedAt = System.nanoTime();
+		CompletableFuture<Void> completion = new CompletableFuture<>();
+		completions.put(snapshotId, completion);
+		completion.thenRun(() -> stages.add(() -> {
+			finishSnapshot(snapshotId);
+			Metrics.histogram("snapshot_ms").record((System.nanoTime() - startedAt) / 1_000_000);
+		}));
+
+		stages.add(() -> {
+			snapshotStrategy.initiateSnapshot(snapshotId);
+			// Our own part may already be all there is to collect
+			checkCompletion(snapshotId);
+		});
 	}
 	
 	@Override
 	public void stop() {
 		working = false;
+		// Wake the worker up so it sees that it should stop
+		stages.add(() -> {});
 	}
 
 }
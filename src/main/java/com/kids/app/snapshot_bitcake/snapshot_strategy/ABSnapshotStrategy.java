@@ -1,32 +1,40 @@
 package com.kids.app.snapshot_bitcake.snapshot_strategy;
 
 import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
 import com.kids.app.CausalBroadcast;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABBitcakeManager;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelState;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
+import com.kids.app.snapshot_bitcake.snapshot_collector.ABCollector;
 import com.kids.servent.message.Message;
-import com.kids.servent.message.MessageType;
 import com.kids.servent.message.implementation.ab.ABSnapshotRequestMessage;
 import com.kids.servent.message.util.MessageUtil;
 import lombok.AllArgsConstructor;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Acharya-Badrinath snapshot. Every servent reports its amount and the totals of transactions
+ * it sent to and received from each other servent. For every pair of servents, what one side sent
+ * and the other didn't receive yet is in transit, so the work depends on the number of servents only.
+ */
 @AllArgsConstructor
 public class ABSnapshotStrategy implements SnapshotStrategy {
 
-    private final Map<String, ABSnapshot> collectedData;
+    private final ABCollector collector;
     private final ABBitcakeManager bitcakeManager;
 
     @Override
-    public void initiateSnapshot() {
+    public void initiateSnapshot(SnapshotId snapshotId) {
         // Create SNAPSHOT_REQUEST message
         CausalBroadcast instance = CausalBroadcast.getInstance();
-        Map<Integer, Integer> vectorClock = new ConcurrentHashMap<>(instance.getVectorClockValues());
-        Message request = new ABSnapshotRequestMessage(AppConfig.myServentInfo, null, null, vectorClock);
+        ClockSnapshot vectorClock = instance.getVectorClock().snapshot();
+        Message request = new ABSnapshotRequestMessage(AppConfig.myServentInfo, null, null, vectorClock, snapshotId);
+
+        // We are the root of the spanning tree the results come back over
+        instance.getAbTree().start(snapshotId);
 
         // Send SNAPSHOT_REQUEST message to all neighbors
         for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
@@ -38,22 +46,24 @@ public class ABSnapshotStrategy implements SnapshotStrategy {
         ABSnapshot snapshotResult = new ABSnapshot(
                 AppConfig.myServentInfo.id(),
                 bitcakeManager.getCurrentBitcakeAmount(),
-                new ArrayList<>(instance.getSent()),
-                new ArrayList<>(instance.getReceived())
+                instance.getAbChannels().snapshot(snapshotId)
         );
-        collectedData.put("node " + AppConfig.myServentInfo.id(), snapshotResult);
+        instance.getAbTree().addOwnSnapshot(snapshotId, snapshotResult);
 
         instance.causalClockIncrement(request);
     }
 
     @Override
-    public boolean isSnapshotComplete() {
+    public boolean isSnapshotComplete(SnapshotId snapshotId) {
         // We have collected all the responses
-        return collectedData.size() == AppConfig.getServentCount();
+        return collector.getCollectedABValues(snapshotId).size() == AppConfig.getServentCount();
     }
 
     @Override
-    public void processCollectedData() {
+    public void processCollectedData(SnapshotId snapshotId) {
+        Map<String, ABSnapshot> collectedData = collector.getCollectedABValues(snapshotId);
+        AppConfig.timestampedStandardPrint("Results of snapshot " + snapshotId + ":");
+
         int nodeSum = 0;
         for (Map.Entry<String, ABSnapshot> entry : collectedData.entrySet()) {
             int nodeAmount = entry.getValue().getAmount();
@@ -61,31 +71,26 @@ public class ABSnapshotStrategy implements SnapshotStrategy {
             AppConfig.timestampedStandardPrint("Snapshot for " + entry.getKey() + " = " + nodeAmount + " bitcake");
         }
 
-        Map<String, Message> allSentMessages = new HashMap<>();
-        Map<String, Message> allReceivedMessages = new HashMap<>();
-
-        // Collect all sent and received messages
+        ABChannelState[] channels = new ABChannelState[AppConfig.getServentCount()];
         for (ABSnapshot snapshot : collectedData.values()) {
-            snapshot.getSent().stream()
-                    .filter(sent -> sent.getMessageType() == MessageType.TRANSACTION)
-                    .forEach(sent -> allSentMessages.put(getUniqueMessageKey(sent), sent));
-
-            snapshot.getReceived().stream()
-                    .filter(received -> received.getMessageType() == MessageType.TRANSACTION)
-                    .forEach(received -> allReceivedMessages.put(getUniqueMessageKey(received), received));
+            channels[snapshot.getServentId()] = snapshot.getChannels();
         }
-        
-        // Messages in transit
+
+        // Messages in transit: sent by one side, not yet received by the other
         int inTransitSum = 0;
-        for (Map.Entry<String, Message> entry : allSentMessages.entrySet()) {
-            String key = entry.getKey();
-            if (!allReceivedMessages.containsKey(key)) {
-                Message message = entry.getValue();
-                int amount = Integer.parseInt(message.getMessageText());
+        for (int sender = 0; sender < channels.length; sender++) {
+            for (int receiver = 0; receiver < channels.length; receiver++) {
+                if (sender == receiver || channels[sender] == null || channels[receiver] == null) continue;
+
+                int count = channels[sender].getSentCount(receiver) - channels[receiver].getReceivedCount(sender);
+                if (count <= 0) continue;
+
+                int amount = channels[sender].getSentAmount(receiver) - channels[receiver].getReceivedAmount(sender);
                 inTransitSum += amount;
-                
-                AppConfig.timestampedStandardPrint("Unprocessed transaction "
-                        + "[" + message.getOriginalSenderInfo().id() + " to " + message.getOriginalReceiverInfo().id() + "]: "  + amount + " bitcake");
+
+                // The transactions themselves are listed by their sender, which keeps them in its sent log
+                AppConfig.timestampedStandardPrint("In transit [" + sender + " to " + receiver + "]: "
+                        + count + " transactions with " + amount + " bitcake");
             }
         }
 
@@ -93,11 +98,5 @@ public class ABSnapshotStrategy implements SnapshotStrategy {
         AppConfig.timestampedStandardPrint("Total node amount: " + nodeSum + " bitcake");
         AppConfig.timestampedStandardPrint("Total in-transit amount: " + inTransitSum + " bitcake");
         AppConfig.timestampedStandardPrint("System bitcake count: " + total);
-
-        collectedData.clear();
-    }
-
-    private String getUniqueMessageKey(Message message) {
-        return message.getOriginalSenderInfo().id() + "-" + message.getMessageId() + "-" + message.getOriginalReceiverInfo().id();
     }
 }
@@ -1,45 +1,37 @@
 package com.kids.app.snapshot_bitcake.snapshot_strategy;
 
 import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
 import com.kids.app.CausalBroadcast;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.alagar_venkatesan.AVBitcakeManager;
+import com.kids.app.snapshot_bitcake.snapshot_collector.AVCollector;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.implementation.av.AVMarkerMessage;
 import com.kids.servent.message.implementation.av.AVTerminateMessage;
 import com.kids.servent.message.util.MessageUtil;
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
 
-import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @RequiredArgsConstructor
 public class AVSnapshotStrategy implements SnapshotStrategy {
 
-    private final List<Integer> collectedAVData;
+    private final AVCollector collector;
     private final AVBitcakeManager bitcakeManager;
 
-     // Indicates whether the snapshot process is complete.
-    @Setter private boolean wait = true;
+    // Snapshots that got all DONE messages and already sent TERMINATE
+    private final Set<SnapshotId> terminating = ConcurrentHashMap.newKeySet();
 
     @Override
-    public void initiateSnapshot() {
+    public void initiateSnapshot(SnapshotId snapshotId) {
         CausalBroadcast instance = CausalBroadcast.getInstance();
-        Map<Integer, Integer> vectorClock = new ConcurrentHashMap<>(instance.getVectorClockValues());
-        instance.setInitiatorId(AppConfig.myServentInfo.id());
+        ClockSnapshot vectorClock = instance.getVectorClock().snapshot();
 
-        // Initialize input and output channels through the transaction recording mechanism
-        AppConfig.myServentInfo.neighbors().forEach(
-                neighbor -> {
-                    instance.recordTransaction(vectorClock, neighbor, 0);
-                }
-        );
-
-        // Create MARKER message
-        instance.setRecordedAmount(bitcakeManager.getCurrentBitcakeAmount());
-        Message markerMessage = new AVMarkerMessage(AppConfig.myServentInfo, null, null, vectorClock);
-        instance.setMarkerVectorClock(markerMessage.getSenderVectorClock());
+        // Create MARKER message and start recording
+        Message markerMessage = new AVMarkerMessage(AppConfig.myServentInfo, null, null, vectorClock, snapshotId);
+        instance.startAVSnapshot(snapshotId, markerMessage.getSenderClock(), bitcakeManager.getCurrentBitcakeAmount());
 
         // Send MARKER message to all neighbors
         for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
@@ -51,18 +43,25 @@ public class AVSnapshotStrategy implements SnapshotStrategy {
     }
 
     @Override
-    public boolean isSnapshotComplete() {
+    public boolean isSnapshotComplete(SnapshotId snapshotId) {
+        // Our own TERMINATE has been handled
+        if (collector.isTerminated(snapshotId)) {
+            terminating.remove(snapshotId);
+            return true;
+        }
+
         // We have collected all DONE messages
-        if (collectedAVData.size() + 1 == AppConfig.getServentCount()) {
+        if (collector.getDoneCount(snapshotId) + 1 == AppConfig.getServentCount() && terminating.add(snapshotId)) {
             CausalBroadcast instance = CausalBroadcast.getInstance();
-            Map<Integer, Integer> vectorClock = new ConcurrentHashMap<>(instance.getVectorClockValues());
+            ClockSnapshot vectorClock = instance.getVectorClock().snapshot();
 
             // Create TERMINATE message
             Message terminateMessage = new AVTerminateMessage(
                     AppConfig.myServentInfo,
                     null,
                     null,
-                    vectorClock
+                    vectorClock,
+                    snapshotId
             );
 
             // Send TERMINATE message to all neighbors
@@ -73,20 +72,14 @@ public class AVSnapshotStrategy implements SnapshotStrategy {
 
             instance.addPendingMessage(terminateMessage);
             instance.checkPendingMessages();
-            return true;
         }
         return false;
     }
 
     @Override
-    public void processCollectedData() {
-        while (wait) {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                AppConfig.timestampedErrorPrint("AVSnapshotStrategy: Error while sleeping: " + e.getMessage());
-            }
-        }
+    public void processCollectedData(SnapshotId snapshotId) {
+        // Every servent prints its own part of the snapshot when it handles TERMINATE
+        AppConfig.timestampedStandardPrint("Snapshot " + snapshotId + " terminated");
     }
 
 }
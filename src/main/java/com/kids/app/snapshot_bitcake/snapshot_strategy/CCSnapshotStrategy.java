@@ -1,11 +1,12 @@
 package com.kids.app.snapshot_bitcake.snapshot_strategy;
 
 import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCBitcakeManager;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCSnapshot;
+import com.kids.app.snapshot_bitcake.snapshot_collector.CCCollector;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.message.implementation.cc.CCSnapshotRequestMessage;
-import com.kids.servent.message.util.MessageUtil;
 import lombok.AllArgsConstructor;
 
 import java.util.Map;
@@ -16,54 +17,37 @@ import java.util.Map;
 @AllArgsConstructor
 public class CCSnapshotStrategy implements SnapshotStrategy {
 
-    private final Map<Integer, CCSnapshot> collectedData;
+    private final CCCollector collector;
     private final CCBitcakeManager bitcakeManager;
     private final SnapshotCollector snapshotCollector;
 
     @Override
-    public void initiateSnapshot() {
-        // Check if we are already in snapshot mode
-        if (bitcakeManager.isInSnapshotMode()) {
-            AppConfig.timestampedErrorPrint("Already in snapshot mode, cannot initiate new snapshot");
-            return;
-        }
-        
+    public void initiateSnapshot(SnapshotId snapshotId) {
         // Create the initial SNAPSHOT_REQUEST message for ourselves
         CCSnapshotRequestMessage selfRequest = new CCSnapshotRequestMessage(
                 AppConfig.myServentInfo,
                 AppConfig.myServentInfo,
-                AppConfig.myServentInfo.id()
+                snapshotId
         );
         
-        // Handle snapshot request locally
+        // Handle snapshot request locally, this makes us the root of the spanning tree and sends the request to all neighbors
         bitcakeManager.handleSnapshotRequest(selfRequest, snapshotCollector);
-        
-        // Send SNAPSHOT_REQUEST message to all neighbors
-        for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
-            CCSnapshotRequestMessage neighborRequest = new CCSnapshotRequestMessage(
-                    AppConfig.myServentInfo,
-                    AppConfig.getInfoById(neighbor),
-                    AppConfig.myServentInfo.id()
-            );
-            
-            MessageUtil.sendMessage(neighborRequest);
-        }
     }
 
     @Override
-    public boolean isSnapshotComplete() {
+    public boolean isSnapshotComplete(SnapshotId snapshotId) {
         // We have data from all nodes
-        return collectedData.size() == AppConfig.getServentCount();
+        return collector.getCollectedCCSize(snapshotId) == AppConfig.getServentCount();
     }
 
     @Override
-    public void processCollectedData() {
+    public void processCollectedData(SnapshotId snapshotId) {
         int sum = 0;
         
         StringBuilder builder = new StringBuilder();
-        builder.append("Coordinated Checkpointing Snapshot results are:\n");
+        builder.append("Coordinated Checkpointing Snapshot ").append(snapshotId).append(" results are:\n");
         
-        for (Map.Entry<Integer, CCSnapshot> entry : collectedData.entrySet()) {
+        for (Map.Entry<Integer, CCSnapshot> entry : collector.getCollectedCCValues(snapshotId).entrySet()) {
             CCSnapshot snapshot = entry.getValue();
             int currentAmount = snapshot.recordedAmount();
             
@@ -77,4 +61,4 @@ public class CCSnapshotStrategy implements SnapshotStrategy {
         builder.append("Total amount of bitcakes in the system is ").append(sum);
         AppConfig.timestampedStandardPrint(builder.toString());
     }
-} 
\ No newline at end of file
+}
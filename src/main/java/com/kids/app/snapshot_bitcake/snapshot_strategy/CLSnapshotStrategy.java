@@ -0,0 +1,62 @@
+package com.kids.app.snapshot_bitcake.snapshot_strategy;
+
+import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLBitcakeManager;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLSnapshot;
+import com.kids.app.snapshot_bitcake.snapshot_collector.CLCollector;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
+import lombok.AllArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Snapshot strategy implementation for the Chandy-Lamport algorithm.
+ * A non-blocking alternative to Coordinated Checkpointing: the bitcakes in transit are
+ * taken from the recorded channels instead of holding transactions back.
+ */
+@AllArgsConstructor
+public class CLSnapshotStrategy implements SnapshotStrategy {
+
+    private final CLCollector collector;
+    private final CLBitcakeManager bitcakeManager;
+    private final SnapshotCollector snapshotCollector;
+
+    @Override
+    public void initiateSnapshot(SnapshotId snapshotId) {
+        bitcakeManager.startSnapshot(snapshotId, snapshotCollector);
+    }
+
+    @Override
+    public boolean isSnapshotComplete(SnapshotId snapshotId) {
+        // We have data from all nodes
+        return collector.getCollectedCLValues(snapshotId).size() == AppConfig.getServentCount();
+    }
+
+    @Override
+    public void processCollectedData(SnapshotId snapshotId) {
+        int sum = 0;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("Chandy-Lamport Snapshot ").append(snapshotId).append(" results are:\n");
+
+        for (CLSnapshot snapshot : collector.getCollectedCLValues(snapshotId).values()) {
+            builder.append("Node ").append(snapshot.serventId())
+                   .append(" had ").append(snapshot.recordedAmount())
+                   .append(" bitcakes.\n");
+            sum += snapshot.recordedAmount();
+
+            for (Map.Entry<Integer, Integer> channel : snapshot.channelAmounts().entrySet()) {
+                if (channel.getValue() == 0) continue;
+
+                builder.append("Channel ").append(channel.getKey()).append(" to ").append(snapshot.serventId())
+                       .append(" had ").append(channel.getValue())
+                       .append(" bitcakes in transit.\n");
+                sum += channel.getValue();
+            }
+        }
+
+        builder.append("Total amount of bitcakes in the system is ").append(sum);
+        AppConfig.timestampedStandardPrint(builder.toString());
+    }
+}
@@ -1,7 +1,13 @@
 package com.kids.app.snapshot_bitcake.snapshot_strategy;
 
+import com.kids.app.snapshot_bitcake.SnapshotId;
+
+/**
+ * One snapshot algorithm, as driven by the snapshot collector. Every call is about one snapshot,
+ * since an initiator can have several of them running at the same time.
+ */
 public interface SnapshotStrategy {
-    void initiateSnapshot();
-    boolean isSnapshotComplete();
-    void processCollectedData();
+    void initiateSnapshot(SnapshotId snapshotId);
+    boolean isSnapshotComplete(SnapshotId snapshotId);
+    void processCollectedData(SnapshotId snapshotId);
 }
@@ -23,6 +23,7 @@ import java.util.Scanner;
  * <li><code>broadcast [text]</code> - broadcasts the given text to all nodes</li>
  * <li><code>causal_broadcast [text]</code> - causally broadcasts the given text to all nodes</li>
  * <li><code>print_causal</code> - prints all received causal broadcast messages</li>
+ * <li><code>metrics</code> - prints the counters, gauges and latency histograms of this servent</li>
  * <li><code>stop</code> - stops the servent and program finishes</li>
  * </ul>
  * 
@@ -41,6 +42,7 @@ public class CLIParser implements Runnable, Cancellable {
 		commandList.add(new PauseCommand());
 		commandList.add(new TransactionBurstCommand(snapshotCollector));
 		commandList.add(new BitcakeInfoCommand(snapshotCollector));
+		commandList.add(new MetricsCommand());
 		commandList.add(new StopCommand(this, listener, snapshotCollector, senderThreads));
 	}
 	
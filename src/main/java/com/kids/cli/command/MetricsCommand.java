@@ -0,0 +1,20 @@
+package com.kids.cli.command;
+
+import com.kids.app.metrics.Metrics;
+
+/**
+ * Prints the metrics this servent has recorded so far, see {@link Metrics}.
+ */
+public class MetricsCommand implements CLICommand {
+
+	@Override
+	public String commandName() {
+		return "metrics";
+	}
+
+	@Override
+	public void execute(String args) {
+		Metrics.print();
+	}
+
+}
@@ -1,9 +1,11 @@
 package com.kids.cli.command;
 
 import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.cli.CLIParser;
 import com.kids.servent.SimpleServentListener;
+import com.kids.servent.message.util.ConnectionManager;
 import com.kids.servent.message.util.FifoSendWorker;
 import lombok.RequiredArgsConstructor;
 
@@ -29,6 +31,8 @@ public class StopCommand implements CLICommand {
 		listener.stop();
 		senderWorkers.forEach(FifoSendWorker::stop);
 		snapshotCollector.stop();
+		AppExecutors.shutdown();
+		ConnectionManager.closeAll();
 	}
 
 }
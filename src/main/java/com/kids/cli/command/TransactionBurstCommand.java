@@ -1,8 +1,11 @@
 package com.kids.cli.command;
 
 import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
 import com.kids.app.CausalBroadcast;
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.servent.Topology;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABBitcakeManager;
 import com.kids.servent.message.Message;
@@ -10,12 +13,11 @@ import com.kids.servent.message.implementation.TransactionMessage;
 import com.kids.servent.message.util.MessageUtil;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Executes a burst of random transactions by creating multiple worker threads.
+ * Executes a burst of random transactions by running multiple workers on the {@link AppExecutors}.
  * Each worker picks a different receiving node and sends a transaction message with a randomly selected amount.
+ * With FIFO the receivers are the neighbors, otherwise any servent, and the transaction is routed to it.
  */
 @RequiredArgsConstructor
 public class TransactionBurstCommand implements CLICommand {
@@ -33,7 +35,8 @@ public class TransactionBurstCommand implements CLICommand {
 		public void run() {
 			for (int i = 0; i < TRANSACTION_COUNT; i++) {
 				int amount = 1 + (int) (Math.random() * MAX_TRANSFER_AMOUNT);
-				Message transaction;
+				TransactionMessage transaction;
+				int nextHop;
 
 				if (AppConfig.IS_FIFO) {
 					for (int neighbor : AppConfig.myServentInfo.neighbors()) {
@@ -60,8 +63,15 @@ public class TransactionBurstCommand implements CLICommand {
 							receiverInfo = AppConfig.getInfoById((int) (Math.random() * AppConfig.getServentCount()));
 						}
 
+						// Only the servents on the shortest path to the receiver see the transaction
+						nextHop = Topology.route(receiverInfo.id());
+						if (nextHop == -1) {
+							AppConfig.timestampedErrorPrint("No route to servent " + receiverInfo.id() + ", skipping transaction of " + amount);
+							continue;
+						}
+
 						CausalBroadcast instance = CausalBroadcast.getInstance();
-						Map<Integer, Integer> vectorClock = new ConcurrentHashMap<>(instance.getVectorClockValues());
+						ClockSnapshot vectorClock = instance.getVectorClock().snapshot();
 
 						transaction = new TransactionMessage(
 								AppConfig.myServentInfo,
@@ -73,16 +83,14 @@ public class TransactionBurstCommand implements CLICommand {
 						);
 
 						if (snapshotCollector.getBitcakeManager() instanceof ABBitcakeManager) {
-							instance.addSentMessage(transaction);
+							transaction = transaction.withChannelIndex(instance.recordSentTransaction(receiverInfo.id(), transaction.getMessageId(), amount));
 						}
 
 						// Deduct the amount and send the message
 						transaction.sendEffect();
-						instance.causalClockIncrement(transaction);
 					}
 
-					AppConfig.myServentInfo.neighbors()
-							.forEach(neighbor -> MessageUtil.sendMessage(transaction.changeReceiver(neighbor).makeMeASender()));
+					MessageUtil.sendMessage(transaction.changeReceiver(nextHop).makeMeASender());
 				}
 			}
 		}
@@ -96,8 +104,7 @@ public class TransactionBurstCommand implements CLICommand {
 	@Override
 	public void execute(String args) {
 		for (int i = 0; i < BURST_WORKERS; i++) {
-			Thread t = new Thread(new TransactionBurstWorker());
-			t.start();
+			AppExecutors.execute(new TransactionBurstWorker());
 		}
 	}
 
@@ -0,0 +1,126 @@
+package com.kids.servent;
+
+import com.kids.servent.message.codec.ClockChannel;
+import com.kids.servent.message.util.Frame;
+import com.kids.servent.message.util.FrameDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * State of a single accepted connection in {@link SimpleServentListener}.
+ * <p>
+ * Holds the partially read frames and the replies (ACKs) that couldn't be written yet
+ * because the socket buffer was full, the last clock received for differential clocks,
+ * and who is on the other side, as told by the first frame.
+ * Only ever touched from the listener's selector thread.
+ */
+class InboundConnection {
+
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final FrameDecoder decoder = new FrameDecoder();
+	private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<>();
+	private final ClockChannel clocks = ClockChannel.forNewConnection();
+
+	// Set by the hello frame, see Frame#HELLO
+	private int senderId = -1;
+	private long session;
+
+	InboundConnection(SocketChannel channel, SelectionKey key) {
+		this.channel = channel;
+		this.key = key;
+	}
+
+	/**
+	 * Reads what is available and returns the frames that are now complete.
+	 *
+	 * @return complete frames, in the order they were sent, or null if the other side closed the connection
+	 */
+	List<Frame> read() throws IOException {
+		if (decoder.readFrom(channel) < 0) return null;
+
+		List<Frame> frames = new ArrayList<>();
+		Frame frame;
+		while ((frame = decoder.nextFrame()) != null) {
+			frames.add(frame);
+		}
+		return frames;
+	}
+
+	/**
+	 * @return clock state of this connection, or null if clocks are sent whole
+	 */
+	ClockChannel getClocks() {
+		return clocks;
+	}
+
+	/**
+	 * Remembers who sent the hello frame that opens the connection.
+	 */
+	void hello(Frame frame) throws IOException {
+		senderId = frame.sequence();
+		session = frame.session();
+	}
+
+	/**
+	 * @return id of the servent on the other side
+	 * @throws IOException if it hasn't said hello yet
+	 */
+	int getSenderId() throws IOException {
+		if (senderId < 0) {
+			throw new IOException("Message before hello");
+		}
+		return senderId;
+	}
+
+	long getSession() {
+		return session;
+	}
+
+	/**
+	 * Writes the frame right away if the socket accepts it, otherwise queues it
+	 * and asks the selector to tell us when we can write again.
+	 */
+	void write(Frame frame) throws IOException {
+		pendingWrites.add(frame.toByteBuffer());
+		flush();
+	}
+
+	/**
+	 * Writes as much of the queued data as the socket accepts.
+	 */
+	void flush() throws IOException {
+		while (!pendingWrites.isEmpty()) {
+			ByteBuffer buffer = pendingWrites.peek();
+			channel.write(buffer);
+			if (buffer.hasRemaining()) break;
+			pendingWrites.poll();
+		}
+
+		int interest = pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+		key.interestOps(interest);
+	}
+
+	void close() {
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException ignore) { }
+	}
+
+	@Override
+	public String toString() {
+		try {
+			return String.valueOf(channel.getRemoteAddress());
+		} catch (IOException e) {
+			return "closed connection";
+		}
+	}
+}
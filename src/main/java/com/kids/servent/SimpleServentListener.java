@@ -1,43 +1,64 @@
 package com.kids.servent;
 
 import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
 import com.kids.app.Cancellable;
+import com.kids.app.CausalBroadcast;
+import com.kids.app.metrics.Metrics;
+import com.kids.app.servent.Topology;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.handler.implementation.CausalBroadcastHandler;
+import com.kids.servent.handler.implementation.CausalUnicastHandler;
 import com.kids.servent.handler.implementation.NullHandler;
 import com.kids.servent.handler.implementation.TransactionHandler;
+import com.kids.servent.handler.implementation.ab.ABDeliveredHandler;
+import com.kids.servent.handler.implementation.ab.ABRecoveryRequestHandler;
+import com.kids.servent.handler.implementation.ab.ABRecoveryResponseHandler;
+import com.kids.servent.handler.implementation.ab.ABSnapshotResponseHandler;
 import com.kids.servent.handler.implementation.cc.CCResumeHandler;
 import com.kids.servent.handler.implementation.cc.CCSnapshotRequestHandler;
 import com.kids.servent.handler.implementation.cc.CCSnapshotResponseHandler;
+import com.kids.servent.handler.implementation.cl.CLMarkerHandler;
+import com.kids.servent.handler.implementation.cl.CLSnapshotResponseHandler;
 import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.util.DuplicateFilter;
+import com.kids.servent.message.util.Frame;
 import com.kids.servent.message.util.MessageUtil;
+import com.kids.servent.message.util.ReceivedSequences;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.util.Collections;
-import java.util.Set;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
- * Listens for incoming messages on a specified port and processes them using a thread pool.
+ * Listens for incoming connections on a specified port and processes the messages read from them on the {@link AppExecutors}.
  * It handles messages in a concurrent environment and integrates with a snapshot collector for distributed system snapshots.
+ * <p>
+ * All connections are served by a single selector thread. It accepts connections, reads whatever bytes are
+ * available, cuts them into frames and hands complete messages over to the handlers, so a slow peer
+ * never blocks the others.
  */
 public class SimpleServentListener implements Runnable, Cancellable {
 
-	/*
-	 * Thread pool for executing the handlers. Each client will get its own handler thread.
-	 */
-	private final ExecutorService threadPool = Executors.newWorkStealingPool();
-
 	private volatile boolean working = true;
 	private final SnapshotCollector snapshotCollector;
-	private final Set<Message> receivedBroadcasts = Collections.newSetFromMap(new ConcurrentHashMap<>());
-	private final Object lock = new Object();
+	private final DuplicateFilter receivedBroadcasts = new DuplicateFilter();
+	private final ReceivedSequences receivedSequences = new ReceivedSequences();
+	// With FIFO, the handlers of every sender's messages run one at a time, in the order they arrived, so a
+	// Chandy-Lamport marker is never handled before a transaction that arrived ahead of it. Kept per sender
+	// rather than per connection, so handlers from before a reconnect finish before the new ones start
+	private final Map<Integer, Executor> handlers = new ConcurrentHashMap<>();
 
 	public SimpleServentListener(SnapshotCollector snapshotCollector) {
 		this.snapshotCollector = snapshotCollector;
@@ -45,11 +66,14 @@ public class SimpleServentListener implements Runnable, Cancellable {
 	
 	@Override
 	public void run() {
-		ServerSocket listenerSocket = null;
+		Selector selector = null;
+		ServerSocketChannel serverChannel = null;
 		try {
-			listenerSocket = new ServerSocket(AppConfig.myServentInfo.listenerPort(), 100);
-			// If there is no connection after 1s, wake up and see if we should terminate
-			listenerSocket.setSoTimeout(1000);
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(AppConfig.myServentInfo.listenerPort()), 100);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
 		} catch (IOException e) {
 			AppConfig.timestampedErrorPrint("Couldn't open listener socket on: " + AppConfig.myServentInfo.listenerPort());
 			System.exit(0);
@@ -57,61 +81,194 @@ public class SimpleServentListener implements Runnable, Cancellable {
 		
 		while (working) {
 			try {
-				MessageHandler messageHandler;
-				if (AppConfig.IS_FIFO) {
-					Message clientMessage;
-
-					Socket clientSocket = listenerSocket.accept();
-					clientMessage = MessageUtil.readMessage(clientSocket);
-
-					messageHandler = new NullHandler(clientMessage);
-					
-					// Log received message before processing
-					AppConfig.timestampedStandardPrint("Received message: " + clientMessage);
-					
-					switch (clientMessage.getMessageType()) {
-						case TRANSACTION:
-							messageHandler = new TransactionHandler(clientMessage, snapshotCollector.getBitcakeManager());
-							break;
-						case CC_SNAPSHOT_REQUEST:
-							AppConfig.timestampedStandardPrint("Processing CC_SNAPSHOT_REQUEST in listener");
-							messageHandler = new CCSnapshotRequestHandler(clientMessage, snapshotCollector);
-							break;
-						case CC_SNAPSHOT_RESPONSE:
-							if (clientMessage.getOriginalReceiverInfo().id() == AppConfig.myServentInfo.id()) {
-								messageHandler = new CCSnapshotResponseHandler(clientMessage, snapshotCollector);
-							}
-							break;
-						case CC_RESUME:
-							messageHandler = new CCResumeHandler(clientMessage, snapshotCollector);
-							break;
-						case POISON:
-							break;
-						default:
-							AppConfig.timestampedErrorPrint("Unhandled message type: " + clientMessage.getMessageType());
-							break;
+				// If nothing happens for 1s, wake up and see if we should terminate
+				selector.select(1000);
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) {
+						accept(serverChannel, selector);
+						continue;
+					}
+
+					InboundConnection connection = (InboundConnection) key.attachment();
+					try {
+						if (key.isWritable()) connection.flush();
+						if (key.isReadable()) read(connection);
+					} catch (IOException e) {
+						AppConfig.timestampedErrorPrint("Connection from " + connection + " broke: " + e.getMessage());
+						connection.close();
 					}
 				}
-				else {
-					Message clientMessage;
-					// This blocks for up to 1s, after which SocketTimeoutException is thrown
-					Socket clientSocket = listenerSocket.accept();
-					clientMessage = MessageUtil.readMessage(clientSocket);
-
-					messageHandler = new CausalBroadcastHandler(
-							clientMessage,
-							receivedBroadcasts,
-							lock
-					);
-				}
-				threadPool.submit(messageHandler);
-			} catch (SocketTimeoutException timeoutEx) {
-				// Uncomment the next line to see that we are waking up every second
-				// AppConfig.timedStandardPrint("Waiting...");
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		}
+
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof InboundConnection connection) {
+				connection.close();
+			}
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException ignore) { }
+	}
+
+	private void accept(ServerSocketChannel serverChannel, Selector selector) throws IOException {
+		SocketChannel clientChannel = serverChannel.accept();
+		if (clientChannel == null) return;
+
+		clientChannel.configureBlocking(false);
+		clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+		SelectionKey clientKey = clientChannel.register(selector, SelectionKey.OP_READ);
+		clientKey.attach(new InboundConnection(clientChannel, clientKey));
+	}
+
+	/**
+	 * Reads the frames that have arrived on a connection, hands the messages over to the handlers
+	 * in the order they were sent and acknowledges them with a single cumulative ACK.
+	 * Copies of messages we already have are decoded, as they still move the connection's clocks along,
+	 * but not handled, see {@link ReceivedSequences}.
+	 * Senders keep their connection open, so this runs many times for the same connection.
+	 */
+	private void read(InboundConnection connection) throws IOException {
+		List<Frame> frames = connection.read();
+		if (frames == null) {
+			connection.close();
+			return;
+		}
+
+		boolean received = false;
+		for (Frame frame : frames) {
+			if (frame.type() == Frame.HELLO) {
+				connection.hello(frame);
+				continue;
+			}
+			if (!frame.isMessage()) continue;
+
+			int senderId = connection.getSenderId();
+			int sequence = frame.sequence();
+			for (Message clientMessage : MessageUtil.readMessages(frame, connection.getClocks())) {
+				if (receivedSequences.accept(senderId, connection.getSession(), sequence++)) {
+					dispatch(clientMessage, senderId);
+				} else {
+					Metrics.counter("messages.dropped").increment();
+					AppConfig.timestampedDebugPrint(() -> "Dropping resent or out of order " + clientMessage);
+				}
+			}
+			received = true;
+		}
+
+		if (received) {
+			connection.write(Frame.ack(receivedSequences.lastInOrder(connection.getSenderId())));
+		}
+	}
+
+	/**
+	 * Picks the handler for a received message and runs it on the thread pool.
+	 * With FIFO, handlers for one sender run in the order its messages arrived, even across reconnects.
+	 */
+	private void dispatch(Message clientMessage, int senderId) {
+		if (isPassingThrough(clientMessage)) {
+			forward(clientMessage);
+			return;
+		}
+
+		MessageHandler messageHandler;
+		if (AppConfig.IS_FIFO) {
+			messageHandler = new NullHandler(clientMessage);
+			
+			// Log received message before processing
+			AppConfig.timestampedDebugPrint(() -> "Received message: " + clientMessage);
+			
+			switch (clientMessage.getMessageType()) {
+				case TRANSACTION:
+					messageHandler = new TransactionHandler(clientMessage, snapshotCollector.getBitcakeManager());
+					break;
+				case CC_SNAPSHOT_REQUEST:
+					AppConfig.timestampedStandardPrint("Processing CC_SNAPSHOT_REQUEST in listener");
+					messageHandler = new CCSnapshotRequestHandler(clientMessage, snapshotCollector);
+					break;
+				case CC_SNAPSHOT_RESPONSE:
+					if (clientMessage.getOriginalReceiverInfo().id() == AppConfig.myServentInfo.id()) {
+						messageHandler = new CCSnapshotResponseHandler(clientMessage, snapshotCollector);
+					}
+					break;
+				case CC_RESUME:
+					messageHandler = new CCResumeHandler(clientMessage, snapshotCollector);
+					break;
+				case CL_MARKER:
+					messageHandler = new CLMarkerHandler(clientMessage, snapshotCollector);
+					break;
+				case CL_SNAPSHOT_RESPONSE:
+					if (clientMessage.getOriginalReceiverInfo().id() == AppConfig.myServentInfo.id()) {
+						messageHandler = new CLSnapshotResponseHandler(clientMessage, snapshotCollector);
+					}
+					break;
+				case POISON:
+					break;
+				default:
+					AppConfig.timestampedErrorPrint("Unhandled message type: " + clientMessage.getMessageType());
+					break;
+			}
+			handlers.computeIfAbsent(senderId, id -> AppExecutors.serial())
+					.execute(Metrics.timed("handler_us." + clientMessage.getMessageType(), messageHandler));
+		}
+		else {
+			// AB results travel over the snapshot's spanning tree, between neighbors and outside the causal order
+			if (clientMessage.getMessageType() == MessageType.AB_SNAPSHOT_RESPONSE) {
+				messageHandler = new ABSnapshotResponseHandler(clientMessage);
+			} else if (clientMessage.getMessageType() == MessageType.AB_DELIVERED) {
+				messageHandler = new ABDeliveredHandler(clientMessage);
+			} else if (isRecovery(clientMessage)) {
+				// Settling after a recovery reads and changes the AB totals, so it waits for the transactions committed before
+				CausalBroadcast.getInstance().executeInOrder(clientMessage.getMessageType() == MessageType.AB_RECOVERY_REQUEST
+						? new ABRecoveryRequestHandler(clientMessage)
+						: new ABRecoveryResponseHandler(clientMessage));
+				return;
+			} else if (clientMessage.getMessageType() == MessageType.TRANSACTION) {
+				messageHandler = new CausalUnicastHandler(clientMessage);
+			} else {
+				messageHandler = new CausalBroadcastHandler(clientMessage, receivedBroadcasts);
+			}
+			AppExecutors.execute(messageHandler);
+		}
+	}
+
+	/**
+	 * Transactions, and the messages that settle them after a recovery, are routed to their receiver, see {@link Topology#route}.
+	 * On the servents along the way they aren't handled at all.
+	 */
+	private boolean isPassingThrough(Message clientMessage) {
+		return (clientMessage.getMessageType() == MessageType.TRANSACTION || isRecovery(clientMessage))
+				&& clientMessage.getOriginalReceiverInfo().id() != AppConfig.myServentInfo.id();
+	}
+
+	private static boolean isRecovery(Message clientMessage) {
+		return clientMessage.getMessageType() == MessageType.AB_RECOVERY_REQUEST
+				|| clientMessage.getMessageType() == MessageType.AB_RECOVERY_RESPONSE;
+	}
+
+	/**
+	 * Sends a message on to the next servent on the shortest path to its receiver.
+	 */
+	private void forward(Message clientMessage) {
+		int receiverId = clientMessage.getOriginalReceiverInfo().id();
+		int nextHop = Topology.route(receiverId);
+		if (nextHop == -1) {
+			AppConfig.timestampedErrorPrint("No route to servent " + receiverId + " for " + clientMessage);
+			return;
+		}
+
+		AppConfig.timestampedDebugPrint(() -> "Forwarding " + clientMessage + " to " + nextHop);
+		MessageUtil.sendMessage(clientMessage.changeReceiver(nextHop).makeMeASender());
 	}
 
 	@Override
@@ -3,12 +3,16 @@ package com.kids.servent.handler.implementation;
 import com.kids.app.AppConfig;
 import com.kids.app.CausalBroadcast;
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
+import com.kids.servent.message.util.DuplicateFilter;
 import com.kids.servent.message.util.MessageUtil;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Set;
+import java.util.List;
 
 /**
  * Handles the CAUSAL_BROADCAST message. Fairly simple, as we assume that we are
@@ -21,42 +25,62 @@ import java.util.Set;
 public class CausalBroadcastHandler implements MessageHandler {
 
     private final Message clientMessage;
-    private final Set<Message> receivedBroadcasts;
-    private final Object lock;
+    private final DuplicateFilter receivedBroadcasts;
 
     @Override
     public void run() {
         ServentInfo senderInfo = clientMessage.getOriginalSenderInfo();
+        int neighborId = receivedFrom();
 
         if (senderInfo.id() == AppConfig.myServentInfo.id()) {
-            AppConfig.timestampedStandardPrint("Got own message back. No rebroadcast.");
+            AppConfig.timestampedDebugPrint(() -> "Got own message back. No rebroadcast.");
+            noteSnapshotRequest(neighborId, false);
         } else {
-            synchronized (lock) {
-                boolean isAdded = receivedBroadcasts.add(clientMessage);
-
-                if (isAdded) {
-                    // Add the message to the pending queue and check for causal order.
-                    CausalBroadcast instance = CausalBroadcast.getInstance();
-                    instance.addPendingMessage(clientMessage);
-                    instance.checkPendingMessages();
-
-                    // Rebroadcast the message to neighbors
-                    if (!AppConfig.IS_CLIQUE) {
-                        AppConfig.timestampedStandardPrint("Rebroadcasting... " + receivedBroadcasts.size());
-
-                        AppConfig.myServentInfo.neighbors().stream()
-                                .filter(neighbor -> neighbor != senderInfo.id())
-                                .forEach(neighbor -> {
-                                    // Same message, different receiver, and add us to the route table.
-                                    MessageUtil.sendMessage(clientMessage.changeReceiver(neighbor).makeMeASender());
-                                });
-                    }
-                } else {
-                    // We already got this from somewhere else.
-                    AppConfig.timestampedStandardPrint("Already had this. No rebroadcast.");
+            // Copies of the same message can be handled at the same time, the filter lets only one of them through
+            boolean isAdded = receivedBroadcasts.add(clientMessage);
+            noteSnapshotRequest(neighborId, isAdded);
+
+            if (isAdded) {
+                // Add the message to the pending queue, the delivery thread checks it for causal order.
+                CausalBroadcast instance = CausalBroadcast.getInstance();
+                instance.addPendingMessage(clientMessage);
+                instance.checkPendingMessages();
+
+                // Rebroadcast the message to the neighbors the broadcast mode picks
+                List<Integer> targets = instance.rebroadcastTargets(senderInfo.id(), neighborId);
+                if (!targets.isEmpty()) {
+                    AppConfig.timestampedDebugPrint(() -> "Rebroadcasting... " + clientMessage.getMessageId());
+
+                    targets.forEach(neighbor -> {
+                        // Same message, different receiver, and add us to the route table.
+                        MessageUtil.sendMessage(clientMessage.changeReceiver(neighbor).makeMeASender());
+                    });
                 }
+            } else {
+                // We already got this from somewhere else.
+                AppConfig.timestampedStandardPrint("Already had this. No rebroadcast.");
             }
         }
     }
 
+    /**
+     * @return the neighbor this copy of the message came from, the last one on the route
+     */
+    private int receivedFrom() {
+        List<ServentInfo> route = clientMessage.getRoute();
+        return route.isEmpty() ? clientMessage.getOriginalSenderInfo().id() : route.get(route.size() - 1).id();
+    }
+
+    /**
+     * Every copy of an AB snapshot request builds the spanning tree the results are gathered over.
+     * The first one has to be in before the request is committed or passed on. Later copies may get
+     * here before it, when they are handled on other threads, which the tree allows for.
+     */
+    private void noteSnapshotRequest(int neighborId, boolean first) {
+        if (clientMessage.getMessageType() != MessageType.AB_SNAPSHOT_REQUEST) return;
+
+        SnapshotId snapshotId = ((SnapshotMessage) clientMessage).getSnapshotId();
+        CausalBroadcast.getInstance().getAbTree().requestReceived(snapshotId, neighborId, first);
+    }
+
 }
@@ -0,0 +1,25 @@
+package com.kids.servent.handler.implementation;
+
+import com.kids.app.CausalBroadcast;
+import com.kids.servent.handler.MessageHandler;
+import com.kids.servent.message.Message;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Handles a causal message that was routed to this servent alone, like a transaction.
+ * It waits in the pending queue like a broadcast does, but comes over a single path,
+ * so there are no copies to filter out and nothing to pass on.
+ */
+@RequiredArgsConstructor
+public class CausalUnicastHandler implements MessageHandler {
+
+    private final Message clientMessage;
+
+    @Override
+    public void run() {
+        CausalBroadcast instance = CausalBroadcast.getInstance();
+        instance.addPendingMessage(clientMessage);
+        instance.checkPendingMessages();
+    }
+
+}
@@ -5,10 +5,12 @@ import com.kids.app.CausalBroadcast;
 import com.kids.app.snapshot_bitcake.BitcakeManager;
 import com.kids.app.snapshot_bitcake.acharya_badrinath.ABBitcakeManager;
 import com.kids.app.snapshot_bitcake.alagar_venkatesan.AVBitcakeManager;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLBitcakeManager;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCBitcakeManager;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.TransactionMessage;
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -44,18 +46,28 @@ public class TransactionHandler implements MessageHandler {
 				}
 			}
 			
-			bitcakeManager.addSomeBitcakes(amountNumber);
-
 			CausalBroadcast instance = CausalBroadcast.getInstance();
-			
-			if (bitcakeManager instanceof ABBitcakeManager) {
-				instance.addReceivedMessage(clientMessage);
+
+			// For AB, a transaction that a recovery already settled is dropped before it changes anything
+			int channelIndex = clientMessage instanceof TransactionMessage transaction ? transaction.getChannelIndex() : TransactionMessage.NO_INDEX;
+			if (bitcakeManager instanceof ABBitcakeManager
+					&& !instance.recordReceivedTransaction(clientMessage.getOriginalSenderInfo().id(), clientMessage.getMessageId(), channelIndex, amountNumber)) {
+				AppConfig.timestampedStandardPrint("Dropping transaction settled by a recovery: " + clientMessage);
+				return;
 			}
-			else if (bitcakeManager instanceof AVBitcakeManager) {
-				instance.recordTransaction(clientMessage.getSenderVectorClock(), clientMessage.getOriginalSenderInfo().id(), amountNumber);
+
+			// For Chandy-Lamport, the amount is added together with the recording of the channel it came on
+			if (bitcakeManager instanceof CLBitcakeManager clBitcakeManager) {
+				clBitcakeManager.receiveTransaction(clientMessage.getOriginalSenderInfo().id(), amountNumber);
+			} else {
+				bitcakeManager.addSomeBitcakes(amountNumber);
+			}
+
+			if (bitcakeManager instanceof AVBitcakeManager) {
+				instance.recordTransaction(clientMessage.getSenderClock(), clientMessage.getOriginalSenderInfo().id(), amountNumber);
 			}
 
-			AppConfig.timestampedStandardPrint("Transaction handler got: " + clientMessage);
+			AppConfig.timestampedDebugPrint(() -> "Transaction handler got: " + clientMessage);
 		}
 	}
 
@@ -0,0 +1,29 @@
+package com.kids.servent.handler.implementation.ab;
+
+import com.kids.app.AppConfig;
+import com.kids.app.CausalBroadcast;
+import com.kids.servent.handler.MessageHandler;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.ab.ABDeliveredMessage;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Handles the received indexes of a finished AB snapshot, coming down its spanning tree.
+ */
+@RequiredArgsConstructor
+public class ABDeliveredHandler implements MessageHandler {
+
+    private final Message clientMessage;
+
+    @Override
+    public void run() {
+        if (clientMessage.getMessageType() == MessageType.AB_DELIVERED) {
+            ABDeliveredMessage delivered = (ABDeliveredMessage) clientMessage;
+            CausalBroadcast.getInstance().getAbTree().delivered(delivered.getSnapshotId(), delivered.getReceivedIndexes(),
+                    delivered.getInTransitCounts(), delivered.getInTransitAmounts());
+        } else {
+            AppConfig.timestampedErrorPrint("AB DELIVERED HANDLER: Handler got wrong message type: " + clientMessage);
+        }
+    }
+}
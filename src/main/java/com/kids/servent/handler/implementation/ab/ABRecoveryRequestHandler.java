@@ -0,0 +1,44 @@
+package com.kids.servent.handler.implementation.ab;
+
+import com.kids.app.AppConfig;
+import com.kids.app.CausalBroadcast;
+import com.kids.app.servent.Topology;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelTotals;
+import com.kids.servent.handler.MessageHandler;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.ab.ABRecoveryResponseMessage;
+import com.kids.servent.message.util.MessageUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Answers a servent that started over from a checkpoint with our totals of the transactions between us,
+ * and from then on drops its transactions from before the crash, see {@link com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelCounters#settle}.
+ */
+@RequiredArgsConstructor
+public class ABRecoveryRequestHandler implements MessageHandler {
+
+    private final Message clientMessage;
+
+    @Override
+    public void run() {
+        if (clientMessage.getMessageType() == MessageType.AB_RECOVERY_REQUEST) {
+            int recoveredId = clientMessage.getOriginalSenderInfo().id();
+            ABChannelTotals totals = CausalBroadcast.getInstance().getAbChannels().settle(recoveredId, clientMessage.getMessageId());
+
+            int nextHop = Topology.route(recoveredId);
+            if (nextHop == -1) {
+                AppConfig.timestampedErrorPrint("No route to recovered servent " + recoveredId + ", can't settle with it");
+                return;
+            }
+
+            AppConfig.timestampedStandardPrint("Settling with recovered servent " + recoveredId + ": sent " + totals.sentAmount()
+                    + " bitcake, received " + totals.receivedAmount());
+            ABRecoveryResponseMessage response = new ABRecoveryResponseMessage(
+                    AppConfig.myServentInfo, clientMessage.getOriginalSenderInfo(), AppConfig.getInfoById(nextHop), totals);
+            MessageUtil.sendMessage(response.makeMeASender());
+        } else {
+            AppConfig.timestampedErrorPrint("AB RECOVERY REQUEST HANDLER: Handler got wrong message type: " + clientMessage);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.kids.servent.handler.implementation.ab;
+
+import com.kids.app.AppConfig;
+import com.kids.app.checkpoint.Recovery;
+import com.kids.servent.handler.MessageHandler;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.ab.ABRecoveryResponseMessage;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Handles another servent's totals after we started over from a checkpoint.
+ */
+@RequiredArgsConstructor
+public class ABRecoveryResponseHandler implements MessageHandler {
+
+    private final Message clientMessage;
+
+    @Override
+    public void run() {
+        if (clientMessage.getMessageType() == MessageType.AB_RECOVERY_RESPONSE) {
+            ABRecoveryResponseMessage response = (ABRecoveryResponseMessage) clientMessage;
+            Recovery.settle(response.getOriginalSenderInfo().id(), response.getTotals());
+        } else {
+            AppConfig.timestampedErrorPrint("AB RECOVERY RESPONSE HANDLER: Handler got wrong message type: " + clientMessage);
+        }
+    }
+}
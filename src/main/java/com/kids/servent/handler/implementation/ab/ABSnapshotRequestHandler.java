@@ -2,16 +2,15 @@ package com.kids.servent.handler.implementation.ab;
 
 import com.kids.app.AppConfig;
 import com.kids.app.CausalBroadcast;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.ab.ABSnapshotResponseMessage;
-import com.kids.servent.message.util.MessageUtil;
+import com.kids.servent.message.implementation.SnapshotMessage;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @RequiredArgsConstructor
 public class ABSnapshotRequestHandler implements MessageHandler {
@@ -24,21 +23,16 @@ public class ABSnapshotRequestHandler implements MessageHandler {
         if (clientMessage.getMessageType() == MessageType.AB_SNAPSHOT_REQUEST) {
             int currentAmount = snapshotCollector.getBitcakeManager().getCurrentBitcakeAmount();
             CausalBroadcast instance = CausalBroadcast.getInstance();
-            Map<Integer, Integer> vectorClock = new ConcurrentHashMap<>(instance.getVectorClockValues());
+            SnapshotId snapshotId = ((SnapshotMessage) clientMessage).getSnapshotId();
 
-            Message response = new ABSnapshotResponseMessage(
-                    AppConfig.myServentInfo,
-                    clientMessage.getOriginalSenderInfo(),
-                    null,
-                    vectorClock,
+            ABSnapshot snapshot = new ABSnapshot(
+                    AppConfig.myServentInfo.id(),
                     currentAmount,
-                    instance.getSent(),
-                    instance.getReceived()
+                    instance.getAbChannels().snapshot(snapshotId)
             );
-            instance.causalClockIncrement(response);
 
-            AppConfig.myServentInfo.neighbors()
-                    .forEach(neighbor -> MessageUtil.sendMessage(response.changeReceiver(neighbor).makeMeASender()));
+            // Goes to our parent in the spanning tree, together with our subtree
+            instance.getAbTree().addOwnSnapshot(snapshotId, snapshot);
 
         } else {
             AppConfig.timestampedErrorPrint("SNAPSHOT REQUEST HANDLER: Amount handler got: " + clientMessage);
@@ -1,9 +1,7 @@
 package com.kids.servent.handler.implementation.ab;
 
 import com.kids.app.AppConfig;
-import com.kids.app.snapshot_bitcake.snapshot_collector.ABCollector;
-import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
-import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
+import com.kids.app.CausalBroadcast;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
@@ -14,23 +12,16 @@ import lombok.RequiredArgsConstructor;
 public class ABSnapshotResponseHandler  implements MessageHandler {
 
     private final Message clientMessage;
-    private final SnapshotCollector snapshotCollector;
 
     @Override
     public void run() {
         try {
             if (clientMessage.getMessageType() == MessageType.AB_SNAPSHOT_RESPONSE) {
-                int neighborAmount = Integer.parseInt(clientMessage.getMessageText());
                 ABSnapshotResponseMessage response = (ABSnapshotResponseMessage) clientMessage;
 
-                ABSnapshot snapshotResult = new ABSnapshot(
-                        clientMessage.getOriginalSenderInfo().id(),
-                        neighborAmount,
-                        response.getSent(),
-                        response.getReceived()
-                );
-
-                ((ABCollector) snapshotCollector).getCollectedABValues().put("node " + clientMessage.getOriginalSenderInfo().id(), snapshotResult);
+                // The results of a child's subtree, they go on to our parent once the rest of our subtree is in
+                CausalBroadcast.getInstance().getAbTree()
+                        .addChild(response.getSnapshotId(), clientMessage.getOriginalSenderInfo().id(), response.getSnapshots());
             } else {
                 AppConfig.timestampedErrorPrint("SNAPSHOT RESPONSE HANDLER: Amount handler got: " + clientMessage);
             }
@@ -1,11 +1,13 @@
 package com.kids.servent.handler.implementation.av;
 
 import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.snapshot_collector.AVCollector;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
@@ -17,7 +19,9 @@ public class AVDoneHandler implements MessageHandler {
     @Override
     public void run() {
         if (clientMessage.getMessageType() == MessageType.AV_DONE) {
-            ((AVCollector) snapshotCollector).markAsDone(clientMessage.getReceiverInfo().id());
+            SnapshotId snapshotId = ((SnapshotMessage) clientMessage).getSnapshotId();
+            ((AVCollector) snapshotCollector).markAsDone(snapshotId, clientMessage.getOriginalSenderInfo().id());
+            snapshotCollector.checkCompletion(snapshotId);
         } else {
             AppConfig.timestampedErrorPrint("SNAPSHOT DONE HANDLER: Amount handler got: " + clientMessage);
         }
@@ -2,11 +2,17 @@ package com.kids.servent.handler.implementation.av;
 
 import com.kids.app.AppConfig;
 import com.kids.app.CausalBroadcast;
+import com.kids.app.checkpoint.Checkpoint;
+import com.kids.app.checkpoint.Checkpoints;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.SnapshotType;
+import com.kids.app.snapshot_bitcake.alagar_venkatesan.AVSnapshotState;
 import com.kids.app.snapshot_bitcake.snapshot_collector.AVCollector;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Map;
@@ -20,28 +26,44 @@ public class AVTerminateHandler implements MessageHandler {
     @Override
     public void run() {
         if (clientMessage.getMessageType() == MessageType.AV_TERMINATE) {
-            AppConfig.timestampedStandardPrint("AV Termination");
-            CausalBroadcast instance = CausalBroadcast.getInstance();
-            instance.setMarkerVectorClock(null);
+            SnapshotId snapshotId = ((SnapshotMessage) clientMessage).getSnapshotId();
+            AppConfig.timestampedStandardPrint("AV Termination of snapshot " + snapshotId);
 
-            int sum = instance.getRecordedAmount();
-            AppConfig.timestampedStandardPrint("Recorded bitcake amount: " + instance.getRecordedAmount());
+            AVSnapshotState snapshot = CausalBroadcast.getInstance().finishAVSnapshot(snapshotId);
+            if (snapshot == null) {
+                AppConfig.timestampedErrorPrint("Got TERMINATE for snapshot " + snapshotId + " that we didn't record");
+                return;
+            }
+
+            int sum = snapshot.getRecordedAmount();
+            AppConfig.timestampedStandardPrint("Recorded bitcake amount: " + snapshot.getRecordedAmount());
 
             // Input channel
-            for (Map.Entry<Integer, Integer> entry : instance.getInputChannel().entrySet()) {
+            for (Map.Entry<Integer, Integer> entry : snapshot.getInputChannel().entrySet()) {
                 AppConfig.timestampedStandardPrint("Unreceived bitcake amount: " + entry.getValue() + " from " + entry.getKey());
                 sum += entry.getValue();
             }
 
             // Output channel
-            for (Map.Entry<Integer, Integer> entry : instance.getOutputChannel().entrySet()) {
+            for (Map.Entry<Integer, Integer> entry : snapshot.getOutputChannel().entrySet()) {
                 AppConfig.timestampedStandardPrint("Sent bitcake amount: " + entry.getValue() + " from " + entry.getKey());
                 sum -= entry.getValue();
             }
 
             AppConfig.timestampedStandardPrint("Total node bitcake amount: " + sum);
+            Checkpoints.record(new Checkpoint(
+                    snapshotId,
+                    SnapshotType.ALAGAR_VENKATESAN,
+                    snapshot.getRecordedAmount(),
+                    snapshot.getMarkerVectorClock(),
+                    Map.copyOf(snapshot.getInputChannel()),
+                    Map.of()
+            ));
 
-            ((AVCollector) snapshotCollector).clearAVData();
+            if (snapshotId.initiatorId() == AppConfig.myServentInfo.id()) {
+                ((AVCollector) snapshotCollector).markAsTerminated(snapshotId);
+                snapshotCollector.checkCompletion(snapshotId);
+            }
         }
     }
 }
@@ -1,17 +1,20 @@
 package com.kids.servent.handler.implementation.cc;
 
 import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.app.snapshot_bitcake.coordinated_checkpointing.CCBitcakeManager;
 import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
 import com.kids.servent.handler.MessageHandler;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
 import lombok.RequiredArgsConstructor;
 
 /**
  * Handler for resume messages in the Coordinated Checkpointing algorithm.
  * <p>
- * When a node receives a resume message, it exits snapshot mode and processes any messages that were queued during the snapshot.
+ * When a node receives a resume message, it passes it on to its children in the snapshot's spanning tree,
+ * then exits snapshot mode and processes any messages that were queued during the snapshot.
  */
 @RequiredArgsConstructor
 public class CCResumeHandler implements MessageHandler {
@@ -24,10 +27,11 @@ public class CCResumeHandler implements MessageHandler {
         if (clientMessage.getMessageType() == MessageType.CC_RESUME) {
             CCBitcakeManager bitcakeManager = (CCBitcakeManager) snapshotCollector.getBitcakeManager();
             
-            // Exit snapshot mode and process queued messages
-            bitcakeManager.exitSnapshotMode();
+            // Resume our subtree, exit snapshot mode and process queued messages
+            SnapshotId snapshotId = ((SnapshotMessage) clientMessage).getSnapshotId();
+            bitcakeManager.sendResumeMessages(snapshotId);
             
-            AppConfig.timestampedStandardPrint("Exited snapshot mode, resuming normal operation");
+            AppConfig.timestampedStandardPrint("Snapshot " + snapshotId + " resumed");
         } else {
             AppConfig.timestampedErrorPrint("CC RESUME HANDLER: Handler got wrong message type: " + clientMessage);
         }
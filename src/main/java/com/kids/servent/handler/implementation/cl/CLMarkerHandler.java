@@ -0,0 +1,34 @@
+package com.kids.servent.handler.implementation.cl;
+
+import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLBitcakeManager;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
+import com.kids.servent.handler.MessageHandler;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Handler for marker messages in the Chandy-Lamport algorithm.
+ * <p>
+ * The first marker of a snapshot makes the node record its state and send markers on. Every marker
+ * closes the channel it came on, and once all are closed the node reports to the initiator.
+ */
+@RequiredArgsConstructor
+public class CLMarkerHandler implements MessageHandler {
+
+    private final Message clientMessage;
+    private final SnapshotCollector snapshotCollector;
+
+    @Override
+    public void run() {
+        if (clientMessage.getMessageType() == MessageType.CL_MARKER) {
+            if (!(snapshotCollector.getBitcakeManager() instanceof CLBitcakeManager bitcakeManager)) return;
+
+            bitcakeManager.handleMarker((SnapshotMessage) clientMessage, snapshotCollector);
+        } else {
+            AppConfig.timestampedErrorPrint("CL MARKER HANDLER: Handler got wrong message type: " + clientMessage);
+        }
+    }
+}
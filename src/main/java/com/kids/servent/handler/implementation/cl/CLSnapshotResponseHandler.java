@@ -0,0 +1,39 @@
+package com.kids.servent.handler.implementation.cl;
+
+import com.kids.app.AppConfig;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.snapshot_collector.CLCollector;
+import com.kids.app.snapshot_bitcake.snapshot_collector.SnapshotCollector;
+import com.kids.servent.handler.MessageHandler;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.cl.CLSnapshotResponseMessage;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Handler for snapshot response messages in the Chandy-Lamport algorithm.
+ * <p>
+ * The initiator adds the node's recorded state and channels to the collector.
+ */
+@RequiredArgsConstructor
+public class CLSnapshotResponseHandler implements MessageHandler {
+
+    private final Message clientMessage;
+    private final SnapshotCollector snapshotCollector;
+
+    @Override
+    public void run() {
+        if (clientMessage.getMessageType() == MessageType.CL_SNAPSHOT_RESPONSE) {
+            CLSnapshotResponseMessage response = (CLSnapshotResponseMessage) clientMessage;
+            SnapshotId snapshotId = response.getSnapshotId();
+            int senderId = clientMessage.getOriginalSenderInfo().id();
+
+            AppConfig.timestampedStandardPrint("Received snapshot " + snapshotId + " response from node " + senderId);
+
+            ((CLCollector) snapshotCollector).addCLSnapshotInfo(snapshotId, senderId, response.getSnapshot());
+            snapshotCollector.checkCompletion(snapshotId);
+        } else {
+            AppConfig.timestampedErrorPrint("CL SNAPSHOT RESPONSE HANDLER: Handler got wrong message type: " + clientMessage);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.kids.servent.message;
 
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
 
 import java.io.Serializable;
@@ -95,6 +96,12 @@ public interface Message extends Serializable {
 	/**
 	 * Returns the vector clock of the sender of this message.
 	 */
+	ClockSnapshot getSenderClock();
+
+	/**
+	 * Returns the vector clock of the sender of this message as a read-only map,
+	 * for code that works with the map representation.
+	 */
 	Map<Integer, Integer> getSenderVectorClock();
 	
 }
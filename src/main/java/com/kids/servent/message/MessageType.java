@@ -9,10 +9,15 @@ public enum MessageType {
 	TRANSACTION,
 	AB_SNAPSHOT_REQUEST,
 	AB_SNAPSHOT_RESPONSE,
+	AB_DELIVERED,
+	AB_RECOVERY_REQUEST,
+	AB_RECOVERY_RESPONSE,
 	AV_MARKER,
 	AV_DONE,
 	AV_TERMINATE,
 	CC_SNAPSHOT_REQUEST,
 	CC_SNAPSHOT_RESPONSE,
-	CC_RESUME
+	CC_RESUME,
+	CL_MARKER,
+	CL_SNAPSHOT_RESPONSE
 }
@@ -0,0 +1,537 @@
+package com.kids.servent.message.codec;
+
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelState;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelTotals;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABReceivedIndexes;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
+import com.kids.servent.message.implementation.TransactionMessage;
+import com.kids.servent.message.implementation.ab.ABDeliveredMessage;
+import com.kids.servent.message.implementation.ab.ABRecoveryResponseMessage;
+import com.kids.servent.message.implementation.ab.ABSnapshotResponseMessage;
+import com.kids.servent.message.implementation.cc.CCSnapshotRequestMessage;
+import com.kids.servent.message.implementation.cc.CCSnapshotResponseMessage;
+import com.kids.servent.message.implementation.cl.CLSnapshotResponseMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written compact codec for messages.
+ * <p>
+ * Every message starts with the same header:
+ * <code>[type][id][original sender][original receiver][receiver][route][text][vector clock]</code>.
+ * Servents are written as ids (varint, shifted by one so that 0 means null) and resolved through
+ * {@link AppConfig} on the other side, instead of shipping whole {@link ServentInfo} objects.
+ * The vector clock is written densely, one varint per servent.
+ * <p>
+ * Message types that carry more than the header register their own body codec,
+ * and decode back into their own class, so handlers can keep casting them.
+ * Snapshot messages write their snapshot id first thing in the body.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final int NULL = 0;
+
+    /*
+     * A map of message types to the codecs for their type-specific body.
+     * Types that are not in the map have no body and decode into a BasicMessage.
+     */
+    private final Map<MessageType, TypeCodec> typeCodecs;
+
+    public BinaryMessageCodec() {
+        this.typeCodecs = initializeTypeCodecs();
+    }
+
+    private Map<MessageType, TypeCodec> initializeTypeCodecs() {
+        Map<MessageType, TypeCodec> codecs = new EnumMap<>(MessageType.class);
+
+        // Snapshot messages that carry nothing but the snapshot id
+        TypeCodec snapshotCodec = new TypeCodec(
+                (message, writer) -> writeSnapshotId(((SnapshotMessage) message).getSnapshotId(), writer),
+                (header, reader) -> new SnapshotMessage(
+                        header.type(), header.originalSender(), header.originalReceiver(), header.receiver(),
+                        header.vectorClock(), header.route(), header.text(), header.messageId(),
+                        readSnapshotId(reader)
+                )
+        );
+        for (MessageType type : List.of(MessageType.AB_SNAPSHOT_REQUEST, MessageType.AV_MARKER, MessageType.AV_DONE,
+                MessageType.AV_TERMINATE, MessageType.CC_RESUME, MessageType.CL_MARKER)) {
+            codecs.put(type, snapshotCodec);
+        }
+
+        // Transactions made outside this class, like the benchmark ones, have no index in the sender's log
+        codecs.put(MessageType.TRANSACTION, new TypeCodec(
+                (message, writer) -> writer.writeSignedVarInt(
+                        message instanceof TransactionMessage transaction ? transaction.getChannelIndex() : TransactionMessage.NO_INDEX
+                ),
+                (header, reader) -> new TransactionMessage(
+                        header.originalSender(), header.originalReceiver(), header.receiver(), header.vectorClock(),
+                        header.route(), header.text(), header.messageId(), reader.readSignedVarInt()
+                )
+        ));
+
+        codecs.put(MessageType.AB_SNAPSHOT_RESPONSE, new TypeCodec(
+                (message, writer) -> {
+                    ABSnapshotResponseMessage response = (ABSnapshotResponseMessage) message;
+                    writeSnapshotId(response.getSnapshotId(), writer);
+                    writeABSnapshots(response.getSnapshots(), writer);
+                },
+                (header, reader) -> {
+                    SnapshotId snapshotId = readSnapshotId(reader);
+                    return new ABSnapshotResponseMessage(
+                            header.originalSender(), header.originalReceiver(), header.receiver(),
+                            header.route(), header.text(), header.messageId(),
+                            readABSnapshots(reader), snapshotId
+                    );
+                }
+        ));
+
+        codecs.put(MessageType.AB_DELIVERED, new TypeCodec(
+                (message, writer) -> {
+                    ABDeliveredMessage delivered = (ABDeliveredMessage) message;
+                    writeSnapshotId(delivered.getSnapshotId(), writer);
+                    writeReceivedIndexes(delivered.getReceivedIndexes(), writer);
+                    writeInTransit(delivered.getInTransitCounts(), writer);
+                    writeInTransit(delivered.getInTransitAmounts(), writer);
+                },
+                (header, reader) -> {
+                    SnapshotId snapshotId = readSnapshotId(reader);
+                    return new ABDeliveredMessage(
+                            header.originalSender(), header.originalReceiver(), header.receiver(),
+                            header.route(), header.text(), header.messageId(),
+                            readReceivedIndexes(reader), readInTransit(reader), readInTransit(reader), snapshotId
+                    );
+                }
+        ));
+
+        codecs.put(MessageType.AB_RECOVERY_RESPONSE, new TypeCodec(
+                (message, writer) -> {
+                    ABChannelTotals totals = ((ABRecoveryResponseMessage) message).getTotals();
+                    writer.writeVarInt(totals.sentCount());
+                    writer.writeVarInt(totals.sentAmount());
+                    writer.writeVarInt(totals.receivedCount());
+                    writer.writeVarInt(totals.receivedAmount());
+                    writer.writeVarInt(totals.sentBelowId());
+                },
+                (header, reader) -> new ABRecoveryResponseMessage(
+                        header.originalSender(), header.originalReceiver(), header.receiver(), header.vectorClock(),
+                        header.route(), header.text(), header.messageId(),
+                        new ABChannelTotals(reader.readVarInt(), reader.readVarInt(), reader.readVarInt(), reader.readVarInt(), reader.readVarInt())
+                )
+        ));
+
+        codecs.put(MessageType.CC_SNAPSHOT_REQUEST, new TypeCodec(
+                (message, writer) -> writeSnapshotId(((SnapshotMessage) message).getSnapshotId(), writer),
+                (header, reader) -> new CCSnapshotRequestMessage(
+                        header.originalSender(), header.originalReceiver(), header.receiver(),
+                        header.route(), header.messageId(), readSnapshotId(reader)
+                )
+        ));
+
+        codecs.put(MessageType.CC_SNAPSHOT_RESPONSE, new TypeCodec(
+                (message, writer) -> {
+                    CCSnapshotResponseMessage response = (CCSnapshotResponseMessage) message;
+                    writeSnapshotId(response.getSnapshotId(), writer);
+                    writeAmounts(response.getAmounts(), writer);
+                },
+                (header, reader) -> {
+                    SnapshotId snapshotId = readSnapshotId(reader);
+                    return new CCSnapshotResponseMessage(
+                            header.originalSender(), header.originalReceiver(), header.receiver(),
+                            header.route(), header.text(), header.messageId(),
+                            readAmounts(reader), snapshotId
+                    );
+                }
+        ));
+
+        codecs.put(MessageType.CL_SNAPSHOT_RESPONSE, new TypeCodec(
+                (message, writer) -> {
+                    CLSnapshotResponseMessage response = (CLSnapshotResponseMessage) message;
+                    writeSnapshotId(response.getSnapshotId(), writer);
+                    writeAmounts(response.getChannelAmounts(), writer);
+                },
+                (header, reader) -> {
+                    SnapshotId snapshotId = readSnapshotId(reader);
+                    return new CLSnapshotResponseMessage(
+                            header.originalSender(), header.originalReceiver(), header.receiver(),
+                            header.route(), header.text(), header.messageId(),
+                            readAmounts(reader), snapshotId
+                    );
+                }
+        ));
+
+        return codecs;
+    }
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        return encode(message, null);
+    }
+
+    @Override
+    public Message decode(byte[] bytes) throws IOException {
+        return decode(bytes, null);
+    }
+
+    @Override
+    public byte[] encode(Message message, ClockChannel channel) throws IOException {
+        WireWriter writer = new WireWriter();
+        writeMessage(message, writer, channel);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] bytes, ClockChannel channel) throws IOException {
+        WireReader reader = new WireReader(bytes);
+        Message message = readMessage(reader, channel);
+
+        if (reader.hasRemaining()) {
+            throw new IOException("Unexpected bytes after " + message.getMessageType() + " message");
+        }
+        return message;
+    }
+
+    /**
+     * @param channel clock state of the connection for a differential clock, or null to write the whole clock
+     */
+    private void writeMessage(Message message, WireWriter writer, ClockChannel channel) throws IOException {
+        writer.writeByte(message.getMessageType().ordinal());
+        writer.writeVarInt(message.getMessageId());
+        writeServent(message.getOriginalSenderInfo(), writer);
+        writeServent(message.getOriginalReceiverInfo(), writer);
+        writeServent(message.getReceiverInfo(), writer);
+
+        List<ServentInfo> route = message.getRoute();
+        writer.writeVarInt(route.size());
+        for (ServentInfo hop : route) {
+            writer.writeVarInt(hop.id());
+        }
+
+        writer.writeString(message.getMessageText());
+        if (channel != null) {
+            channel.write(message.getSenderClock(), writer);
+        } else {
+            writeVectorClock(message.getSenderClock(), writer);
+        }
+
+        TypeCodec typeCodec = typeCodecs.get(message.getMessageType());
+        if (typeCodec != null) {
+            typeCodec.bodyWriter().write(message, writer);
+        }
+    }
+
+    private Message readMessage(WireReader reader, ClockChannel channel) throws IOException {
+        int typeOrdinal = reader.readByte();
+        if (typeOrdinal >= TYPES.length) {
+            throw new IOException("Unknown message type: " + typeOrdinal);
+        }
+
+        MessageType type = TYPES[typeOrdinal];
+        int messageId = reader.readVarInt();
+        ServentInfo originalSender = readServent(reader);
+        ServentInfo originalReceiver = readServent(reader);
+        ServentInfo receiver = readServent(reader);
+
+        int routeLength = reader.readVarInt();
+        List<ServentInfo> route = new ArrayList<>(Math.min(routeLength, AppConfig.getServentCount()));
+        for (int i = 0; i < routeLength; i++) {
+            route.add(serventById(reader.readVarInt()));
+        }
+
+        String text = reader.readString();
+        ClockSnapshot vectorClock = channel != null ? channel.read(reader) : readVectorClock(reader);
+
+        TypeCodec typeCodec = typeCodecs.get(type);
+        if (typeCodec == null) {
+            return new BasicMessage(type, originalSender, originalReceiver, receiver, vectorClock, route, text, messageId);
+        }
+
+        Header header = new Header(type, messageId, originalSender, originalReceiver, receiver, route, text, vectorClock);
+        return typeCodec.bodyReader().read(header, reader);
+    }
+
+    private static void writeSnapshotId(SnapshotId snapshotId, WireWriter writer) {
+        writer.writeVarInt(snapshotId.initiatorId());
+        writer.writeVarInt(snapshotId.sequence());
+    }
+
+    private static SnapshotId readSnapshotId(WireReader reader) throws IOException {
+        int initiatorId = reader.readVarInt();
+        if (initiatorId >= AppConfig.getServentCount()) {
+            throw new IOException("Snapshot from unknown servent: " + initiatorId);
+        }
+        return new SnapshotId(initiatorId, reader.readVarInt());
+    }
+
+    /**
+     * Channel totals are written as their size, followed by the sent count, sent amount,
+     * received count, received amount and received indexes for each servent id in order.
+     */
+    private static void writeChannelState(ABChannelState channels, WireWriter writer) {
+        int size = channels.size();
+        writer.writeVarInt(size);
+        for (int id = 0; id < size; id++) {
+            writer.writeVarInt(channels.getSentCount(id));
+            writer.writeVarInt(channels.getSentAmount(id));
+            writer.writeVarInt(channels.getReceivedCount(id));
+            writer.writeVarInt(channels.getReceivedAmount(id));
+            writeReceived(channels.getReceived(id), writer);
+        }
+    }
+
+    private static ABChannelState readChannelState(WireReader reader) throws IOException {
+        int size = reader.readVarInt();
+        if (size > AppConfig.getServentCount()) {
+            throw new IOException("Channel totals larger than the system: " + size);
+        }
+
+        int[] sentCount = new int[size];
+        int[] sentAmount = new int[size];
+        int[] receivedCount = new int[size];
+        int[] receivedAmount = new int[size];
+        ABReceivedIndexes[] received = new ABReceivedIndexes[size];
+        for (int id = 0; id < size; id++) {
+            sentCount[id] = reader.readVarInt();
+            sentAmount[id] = reader.readVarInt();
+            receivedCount[id] = reader.readVarInt();
+            receivedAmount[id] = reader.readVarInt();
+            received[id] = readReceived(reader);
+        }
+        return new ABChannelState(sentCount, sentAmount, receivedCount, receivedAmount, received);
+    }
+
+    /**
+     * Received indexes are written as the watermark, followed by the number of indexes past it
+     * and the distance of each from the one before, starting at the watermark.
+     */
+    private static void writeReceived(ABReceivedIndexes received, WireWriter writer) {
+        writer.writeVarInt(received.below());
+        writer.writeVarInt(received.above().length);
+        int previous = received.below();
+        for (int index : received.above()) {
+            writer.writeVarInt(index - previous);
+            previous = index;
+        }
+    }
+
+    private static ABReceivedIndexes readReceived(WireReader reader) throws IOException {
+        int below = reader.readVarInt();
+        int count = reader.readVarInt();
+        if (count > reader.remaining()) {
+            throw new IOException("More received indexes than bytes left: " + count);
+        }
+
+        int[] above = new int[count];
+        int previous = below;
+        for (int i = 0; i < count; i++) {
+            previous += reader.readVarInt();
+            above[i] = previous;
+        }
+        return new ABReceivedIndexes(below, above);
+    }
+
+    /**
+     * AB snapshots of a subtree are written as their count, followed by the servent id,
+     * the amount and the channel totals of each. Amounts are signed, nothing stops a servent from giving away more than it has.
+     */
+    private static void writeABSnapshots(Map<Integer, ABSnapshot> snapshots, WireWriter writer) {
+        writer.writeVarInt(snapshots.size());
+        for (ABSnapshot snapshot : snapshots.values()) {
+            writer.writeVarInt(snapshot.getServentId());
+            writer.writeSignedVarInt(snapshot.getAmount());
+            writeChannelState(snapshot.getChannels(), writer);
+        }
+    }
+
+    private static Map<Integer, ABSnapshot> readABSnapshots(WireReader reader) throws IOException {
+        int size = reader.readVarInt();
+        if (size > AppConfig.getServentCount()) {
+            throw new IOException("More snapshots than servents: " + size);
+        }
+
+        Map<Integer, ABSnapshot> snapshots = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int serventId = serventById(reader.readVarInt()).id();
+            snapshots.put(serventId, new ABSnapshot(serventId, reader.readSignedVarInt(), readChannelState(reader)));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Received indexes of a subtree are written as their count, followed by a servent id, the number of receivers,
+     * and the received indexes for each receiver in order.
+     */
+    private static void writeReceivedIndexes(Map<Integer, ABReceivedIndexes[]> receivedIndexes, WireWriter writer) {
+        writer.writeVarInt(receivedIndexes.size());
+        for (Map.Entry<Integer, ABReceivedIndexes[]> entry : receivedIndexes.entrySet()) {
+            writer.writeVarInt(entry.getKey());
+            writer.writeVarInt(entry.getValue().length);
+            for (ABReceivedIndexes received : entry.getValue()) {
+                writeReceived(received, writer);
+            }
+        }
+    }
+
+    private static Map<Integer, ABReceivedIndexes[]> readReceivedIndexes(WireReader reader) throws IOException {
+        int size = reader.readVarInt();
+        if (size > AppConfig.getServentCount()) {
+            throw new IOException("More received indexes than servents: " + size);
+        }
+
+        Map<Integer, ABReceivedIndexes[]> receivedIndexes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int serventId = serventById(reader.readVarInt()).id();
+            int receivers = reader.readVarInt();
+            if (receivers > AppConfig.getServentCount()) {
+                throw new IOException("Received indexes larger than the system: " + receivers);
+            }
+
+            ABReceivedIndexes[] received = new ABReceivedIndexes[receivers];
+            for (int receiver = 0; receiver < receivers; receiver++) {
+                received[receiver] = readReceived(reader);
+            }
+            receivedIndexes.put(serventId, received);
+        }
+        return receivedIndexes;
+    }
+
+    /**
+     * In-transit counts are written as their count, followed by a servent id and the counts for each,
+     * which are written like a clock. In-transit amounts are written the same way.
+     */
+    private static void writeInTransit(Map<Integer, int[]> inTransit, WireWriter writer) {
+        writer.writeVarInt(inTransit.size());
+        for (Map.Entry<Integer, int[]> entry : inTransit.entrySet()) {
+            writer.writeVarInt(entry.getKey());
+            writeVectorClock(ClockSnapshot.of(entry.getValue()), writer);
+        }
+    }
+
+    private static Map<Integer, int[]> readInTransit(WireReader reader) throws IOException {
+        int size = reader.readVarInt();
+        if (size > AppConfig.getServentCount()) {
+            throw new IOException("More in-transit counts than servents: " + size);
+        }
+
+        Map<Integer, int[]> inTransit = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int serventId = serventById(reader.readVarInt()).id();
+            ClockSnapshot counts = readVectorClock(reader);
+            if (counts == null) throw new IOException("Missing in-transit counts for servent " + serventId);
+            inTransit.put(serventId, counts.toArray());
+        }
+        return inTransit;
+    }
+
+    /**
+     * Maps of servent ids to amounts, like recorded channels or the amounts of a subtree,
+     * are written as their count, followed by an id and a signed amount for each.
+     */
+    private static void writeAmounts(Map<Integer, Integer> amounts, WireWriter writer) {
+        writer.writeVarInt(amounts.size());
+        for (Map.Entry<Integer, Integer> entry : amounts.entrySet()) {
+            writer.writeVarInt(entry.getKey());
+            writer.writeSignedVarInt(entry.getValue());
+        }
+    }
+
+    private static Map<Integer, Integer> readAmounts(WireReader reader) throws IOException {
+        int size = reader.readVarInt();
+        if (size > AppConfig.getServentCount()) {
+            throw new IOException("More amounts than servents: " + size);
+        }
+
+        Map<Integer, Integer> amounts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int serventId = serventById(reader.readVarInt()).id();
+            amounts.put(serventId, reader.readSignedVarInt());
+        }
+        return amounts;
+    }
+
+    private static void writeServent(ServentInfo servent, WireWriter writer) {
+        writer.writeVarInt(servent == null ? NULL : servent.id() + 1);
+    }
+
+    private static ServentInfo readServent(WireReader reader) throws IOException {
+        int value = reader.readVarInt();
+        return value == NULL ? null : serventById(value - 1);
+    }
+
+    private static ServentInfo serventById(int id) throws IOException {
+        if (id >= AppConfig.getServentCount()) {
+            throw new IOException("Unknown servent id: " + id);
+        }
+        return AppConfig.getInfoById(id);
+    }
+
+    /**
+     * Clocks are written as their size shifted by one (0 means null), followed by
+     * the value for each servent id in order.
+     */
+    private static void writeVectorClock(ClockSnapshot vectorClock, WireWriter writer) {
+        if (vectorClock == null) {
+            writer.writeVarInt(NULL);
+            return;
+        }
+
+        int size = vectorClock.size();
+        writer.writeVarInt(size + 1);
+        for (int id = 0; id < size; id++) {
+            writer.writeVarInt(vectorClock.get(id));
+        }
+    }
+
+    private static ClockSnapshot readVectorClock(WireReader reader) throws IOException {
+        int size = reader.readVarInt();
+        if (size == NULL) return null;
+        if (size - 1 > AppConfig.getServentCount()) {
+            throw new IOException("Vector clock larger than the system: " + (size - 1));
+        }
+
+        int[] values = new int[size - 1];
+        for (int id = 0; id < values.length; id++) {
+            values[id] = reader.readVarInt();
+        }
+        return ClockSnapshot.of(values);
+    }
+
+    /**
+     * Message attributes shared by all types, read before the type-specific body.
+     */
+    private record Header(
+            MessageType type,
+            int messageId,
+            ServentInfo originalSender,
+            ServentInfo originalReceiver,
+            ServentInfo receiver,
+            List<ServentInfo> route,
+            String text,
+            ClockSnapshot vectorClock
+    ) { }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(Message message, WireWriter writer) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BodyReader {
+        Message read(Header header, WireReader reader) throws IOException;
+    }
+
+    private record TypeCodec(BodyWriter bodyWriter, BodyReader bodyReader) { }
+}
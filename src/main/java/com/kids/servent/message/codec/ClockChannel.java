@@ -0,0 +1,83 @@
+package com.kids.servent.message.codec;
+
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
+
+import java.io.IOException;
+
+/**
+ * The last vector clock that went over one connection, in one direction.
+ * <p>
+ * With differential clocks (in the style of Singhal and Kshemkalyani), a message only carries the
+ * clock entries that changed since the previous message on the same connection. The sender and the
+ * receiver each keep one of these for the connection and update it with every message, so they agree on
+ * what the previous clock was. This relies on the connection being FIFO, which our long-lived
+ * TCP connections are. A new connection starts over from a clock of zeros on both sides.
+ * <p>
+ * Not thread safe. The sender uses it under the connection's lock, the receiver from the listener thread.
+ */
+public class ClockChannel {
+
+    private int[] lastClock;
+
+    public ClockChannel() {
+        this.lastClock = new int[AppConfig.getServentCount()];
+    }
+
+    /**
+     * @return a channel state for a new connection, or null if differential clocks are turned off
+     */
+    public static ClockChannel forNewConnection() {
+        return AppConfig.DELTA_CLOCKS ? new ClockChannel() : null;
+    }
+
+    /**
+     * Writes only the entries of the clock that changed since the last clock on this channel:
+     * their count (shifted by one, 0 means a null clock), then an id and a value for each.
+     */
+    void write(ClockSnapshot clock, WireWriter writer) throws IOException {
+        if (clock == null) {
+            writer.writeVarInt(0);
+            return;
+        }
+
+        int[] values = clock.toArray();
+        if (values.length != lastClock.length) {
+            throw new IOException("Clock of size " + values.length + " in a system of " + lastClock.length);
+        }
+
+        int changed = 0;
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] != lastClock[id]) changed++;
+        }
+
+        writer.writeVarInt(changed + 1);
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] != lastClock[id]) {
+                writer.writeVarInt(id);
+                writer.writeVarInt(values[id]);
+            }
+        }
+        lastClock = values;
+    }
+
+    /**
+     * Reads a clock written by {@link #write} on the other end of the connection.
+     */
+    ClockSnapshot read(WireReader reader) throws IOException {
+        int changed = reader.readVarInt();
+        if (changed == 0) return null;
+
+        int[] values = lastClock.clone();
+        for (int i = 0; i < changed - 1; i++) {
+            int id = reader.readVarInt();
+            if (id >= values.length) {
+                throw new IOException("Clock entry for unknown servent: " + id);
+            }
+            values[id] = reader.readVarInt();
+        }
+
+        lastClock = values;
+        return ClockSnapshot.of(values);
+    }
+}
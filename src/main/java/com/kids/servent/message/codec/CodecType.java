@@ -0,0 +1,16 @@
+package com.kids.servent.message.codec;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Wire codecs that can be selected with the <code>codec</code> option in <code>servent_list.properties</code>.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CodecType {
+    JAVA(new JavaSerializationCodec()),
+    BINARY(new BinaryMessageCodec());
+
+    private final MessageCodec codec;
+}
@@ -0,0 +1,34 @@
+package com.kids.servent.message.codec;
+
+import com.kids.servent.message.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Codec based on plain Java serialization. Simple and works for any message,
+ * but every payload carries class descriptors and whole {@link com.kids.app.servent.ServentInfo} objects.
+ */
+public class JavaSerializationCodec implements MessageCodec {
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] bytes) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Message) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Couldn't read message: " + e.getMessage(), e);
+        }
+    }
+}
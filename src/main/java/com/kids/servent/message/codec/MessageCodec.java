@@ -0,0 +1,45 @@
+package com.kids.servent.message.codec;
+
+import com.kids.servent.message.Message;
+
+import java.io.IOException;
+
+/**
+ * Turns messages into bytes for the wire and back.
+ * <p>
+ * Every servent reads the same <code>servent_list.properties</code>, so all of them
+ * use the same codec and no codec marker is sent along with the bytes.
+ */
+public interface MessageCodec {
+
+    /**
+     * Encodes the message into the payload of a single frame.
+     */
+    byte[] encode(Message message) throws IOException;
+
+    /**
+     * Decodes a frame payload produced by {@link #encode(Message)}.
+     *
+     * @throws IOException if the bytes don't hold a message this codec can read
+     */
+    Message decode(byte[] bytes) throws IOException;
+
+    /**
+     * Encodes the message as the next one on a connection, so the vector clock can be sent as
+     * a difference from the previous one. Codecs that can't do that ignore the channel.
+     *
+     * @param channel clock state of the connection, or null to send the whole clock
+     */
+    default byte[] encode(Message message, ClockChannel channel) throws IOException {
+        return encode(message);
+    }
+
+    /**
+     * Decodes a payload produced by {@link #encode(Message, ClockChannel)} on the other end of the connection.
+     *
+     * @param channel clock state of the connection, or null if the whole clock was sent
+     */
+    default Message decode(byte[] bytes, ClockChannel channel) throws IOException {
+        return decode(bytes);
+    }
+}
@@ -0,0 +1,69 @@
+package com.kids.servent.message.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the encodings written by {@link WireWriter}.
+ * Malformed input is reported as an {@link IOException}, never as a runtime exception.
+ */
+public class WireReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public WireReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() throws IOException {
+        if (position >= buffer.length) {
+            throw new IOException("Unexpected end of message");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public int readVarInt() throws IOException {
+        int value = readRawVarInt();
+        if (value < 0) {
+            throw new IOException("Varint out of range");
+        }
+        return value;
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readRawVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readRawVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt();
+        if (length > buffer.length - position) {
+            throw new IOException("String length " + length + " runs past the end of message");
+        }
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public boolean hasRemaining() {
+        return position < buffer.length;
+    }
+
+    /**
+     * @return how many bytes are left to read
+     */
+    public int remaining() {
+        return buffer.length - position;
+    }
+}
@@ -0,0 +1,77 @@
+package com.kids.servent.message.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings used by {@link BinaryMessageCodec}.
+ * <p>
+ * Non-negative integers are written as unsigned LEB128 varints, so small ids and clock
+ * values take a single byte. Strings are UTF-8 with a varint length prefix.
+ */
+public class WireWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    public WireWriter() {
+        this(64);
+    }
+
+    public WireWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-negative int as a varint.
+     */
+    public void writeVarInt(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Varint can't be negative: " + value);
+        }
+        writeRawVarInt(value);
+    }
+
+    /**
+     * Writes any int as a zig-zag varint, so small negative numbers stay short too.
+     */
+    public void writeSignedVarInt(int value) {
+        writeRawVarInt((value << 1) ^ (value >> 31));
+    }
+
+    private void writeRawVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
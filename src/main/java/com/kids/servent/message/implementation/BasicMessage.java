@@ -1,6 +1,7 @@
 package com.kids.servent.message.implementation;
 
 import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
@@ -30,13 +31,13 @@ public class BasicMessage implements Message {
 	private final ServentInfo receiverInfo;
 	private final List<ServentInfo> routeList;
 	private final String messageText;
-	private final Map<Integer, Integer> senderVectorClock;
+	private final ClockSnapshot senderVectorClock;
 	
 	// This gives us a unique id - incremented in every natural constructor.
 	private static final AtomicInteger messageCounter = new AtomicInteger(0);
 	private final int messageId;
 
-	public BasicMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, Map<Integer, Integer> senderVectorClock) {
+	public BasicMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock) {
 		this.type = type;
 		this.originalSenderInfo = originalSenderInfo;
 		this.originalReceiverInfo = originalReceiverInfo;
@@ -48,7 +49,7 @@ public class BasicMessage implements Message {
 		this.messageId = messageCounter.getAndIncrement();
 	}
 
-	public BasicMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, String messageText, Map<Integer, Integer> senderVectorClock) {
+	public BasicMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, String messageText, ClockSnapshot senderVectorClock) {
 		this.type = type;
 		this.originalSenderInfo = originalSenderInfo;
 		this.originalReceiverInfo = originalReceiverInfo;
@@ -60,7 +61,26 @@ public class BasicMessage implements Message {
 		this.messageId = messageCounter.getAndIncrement();
 	}
 
-	protected BasicMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, Map<Integer, Integer> senderVectorClock, List<ServentInfo> routeList, String messageText, int messageId) {
+	/**
+	 * Makes new messages continue from the given id. Used when a servent starts over after a crash,
+	 * so the others don't drop its new messages as copies of ones they have already seen.
+	 */
+	public static void continueMessageIdsFrom(int messageId) {
+		messageCounter.accumulateAndGet(messageId, Math::max);
+	}
+
+	/**
+	 * @return the id the next new message will get
+	 */
+	public static int getNextMessageId() {
+		return messageCounter.get();
+	}
+
+	/**
+	 * Restores a message with all of its attributes, including the id.
+	 * Used by the modification methods and by codecs reading the message off the wire.
+	 */
+	public BasicMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock, List<ServentInfo> routeList, String messageText, int messageId) {
 		this.type = type;
 		this.originalSenderInfo = originalSenderInfo;
 		this.originalReceiverInfo = originalReceiverInfo;
@@ -119,7 +139,7 @@ public class BasicMessage implements Message {
 		newRouteList.add(newRouteItem);
 
         return new BasicMessage(getMessageType(), getOriginalSenderInfo(),
-                getOriginalReceiverInfo(), getReceiverInfo(), getSenderVectorClock(),
+                getOriginalReceiverInfo(), getReceiverInfo(), getSenderClock(),
 				newRouteList, getMessageText(), getMessageId()
 		);
 	}
@@ -134,7 +154,7 @@ public class BasicMessage implements Message {
 			ServentInfo newReceiverInfo = AppConfig.getInfoById(newReceiverId);
 
             return new BasicMessage(getMessageType(), getOriginalSenderInfo(), getOriginalReceiverInfo(),
-                    newReceiverInfo, getSenderVectorClock(), getRoute(), getMessageText(), getMessageId());
+                    newReceiverInfo, getSenderClock(), getRoute(), getMessageText(), getMessageId());
 		} else {
 			AppConfig.timestampedErrorPrint("Trying to make a message for " + newReceiverId + " who is not a neighbor.");
 			return null;
@@ -181,8 +201,16 @@ public class BasicMessage implements Message {
 	}
 
 	@Override
-	public Map<Integer, Integer> getSenderVectorClock() {
+	public ClockSnapshot getSenderClock() {
 		return senderVectorClock;
 	}
 
+	/**
+	 * Map view of the sender's clock, nothing is copied. Prefer {@link #getSenderClock()}.
+	 */
+	@Override
+	public Map<Integer, Integer> getSenderVectorClock() {
+		return senderVectorClock == null ? null : senderVectorClock.asMap();
+	}
+
 }
@@ -0,0 +1,78 @@
+package com.kids.servent.message.implementation;
+
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message that belongs to a snapshot. Carries the id of the snapshot,
+ * so servents can tell apart snapshots that run at the same time.
+ * <p>
+ * The modification methods keep the snapshot id. Messages that carry more than that
+ * have to override them as well.
+ */
+public class SnapshotMessage extends BasicMessage {
+
+	@Serial
+	private static final long serialVersionUID = -6214783390517242315L;
+
+	private final SnapshotId snapshotId;
+
+	public SnapshotMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock, SnapshotId snapshotId) {
+		super(type, originalSenderInfo, originalReceiverInfo, receiverInfo, senderVectorClock);
+		this.snapshotId = snapshotId;
+	}
+
+	public SnapshotMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, String messageText, ClockSnapshot senderVectorClock, SnapshotId snapshotId) {
+		super(type, originalSenderInfo, originalReceiverInfo, receiverInfo, messageText, senderVectorClock);
+		this.snapshotId = snapshotId;
+	}
+
+	/**
+	 * Restores a message with all of its attributes, including the id.
+	 */
+	public SnapshotMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock, List<ServentInfo> routeList,
+						   String messageText, int messageId, SnapshotId snapshotId) {
+		super(type, originalSenderInfo, originalReceiverInfo, receiverInfo, senderVectorClock, routeList, messageText, messageId);
+		this.snapshotId = snapshotId;
+	}
+
+	public SnapshotId getSnapshotId() {
+		return snapshotId;
+	}
+
+	@Override
+	public Message makeMeASender() {
+		List<ServentInfo> newRouteList = new ArrayList<>(getRoute());
+		newRouteList.add(AppConfig.myServentInfo);
+
+		return new SnapshotMessage(getMessageType(), getOriginalSenderInfo(), getOriginalReceiverInfo(), getReceiverInfo(),
+				getSenderClock(), newRouteList, getMessageText(), getMessageId(), snapshotId);
+	}
+
+	@Override
+	public Message changeReceiver(Integer newReceiverId) {
+		if (AppConfig.myServentInfo.neighbors().contains(newReceiverId)) {
+			ServentInfo newReceiverInfo = AppConfig.getInfoById(newReceiverId);
+
+			return new SnapshotMessage(getMessageType(), getOriginalSenderInfo(), getOriginalReceiverInfo(), newReceiverInfo,
+					getSenderClock(), getRoute(), getMessageText(), getMessageId(), snapshotId);
+		} else {
+			AppConfig.timestampedErrorPrint("Trying to make a message for " + newReceiverId + " who is not a neighbor.");
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		String basic = super.toString();
+		return basic.substring(0, basic.length() - 1) + "|Snapshot: " + snapshotId + "]";
+	}
+}
@@ -1,14 +1,22 @@
 package com.kids.servent.message.implementation;
 
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
 import com.kids.app.snapshot_bitcake.BitcakeManager;
+import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
 
 import java.io.Serial;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a bitcake transaction. We are sending some bitcakes to another node.
+ * <p>
+ * For Acharya-Badrinath, it also carries its index in the sender's log of the transactions to the receiver,
+ * so the receiver can tell which ones it got even when they overtake each other on the way.
+ * It is routed, so the modification methods keep the index. Only the sender's own copy takes the bitcakes.
  * 
  * @author bmilojkovic
  *
@@ -18,11 +26,67 @@ public class TransactionMessage extends BasicMessage {
 	@Serial
 	private static final long serialVersionUID = -333251402058492901L;
 
+	public static final int NO_INDEX = -1;
+
 	private final transient BitcakeManager bitcakeManager;
+	private final int channelIndex;
 
-	public TransactionMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, int amount, BitcakeManager bitcakeManager, Map<Integer, Integer> senderVectorClock) {
+	public TransactionMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, int amount, BitcakeManager bitcakeManager, ClockSnapshot senderVectorClock) {
 		super(MessageType.TRANSACTION, sender, receiver, neighbor, String.valueOf(amount), senderVectorClock);
 		this.bitcakeManager = bitcakeManager;
+		this.channelIndex = NO_INDEX;
+	}
+
+	/**
+	 * Restores a transaction with all of its attributes, including the id. It doesn't take any bitcakes when sent.
+	 */
+	public TransactionMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock,
+							  List<ServentInfo> routeList, String messageText, int messageId, int channelIndex) {
+		this(originalSenderInfo, originalReceiverInfo, receiverInfo, senderVectorClock, routeList, messageText, messageId, channelIndex, null);
+	}
+
+	private TransactionMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock,
+							   List<ServentInfo> routeList, String messageText, int messageId, int channelIndex, BitcakeManager bitcakeManager) {
+		super(MessageType.TRANSACTION, originalSenderInfo, originalReceiverInfo, receiverInfo, senderVectorClock, routeList, messageText, messageId);
+		this.bitcakeManager = bitcakeManager;
+		this.channelIndex = channelIndex;
+	}
+
+	/**
+	 * @return the index of the transaction in the sender's log, or {@link #NO_INDEX} if it isn't logged
+	 */
+	public int getChannelIndex() {
+		return channelIndex;
+	}
+
+	/**
+	 * @return the same transaction, with the given index in the sender's log
+	 */
+	public TransactionMessage withChannelIndex(int channelIndex) {
+		return new TransactionMessage(getOriginalSenderInfo(), getOriginalReceiverInfo(), getReceiverInfo(),
+				getSenderClock(), getRoute(), getMessageText(), getMessageId(), channelIndex, bitcakeManager);
+	}
+
+	@Override
+	public Message makeMeASender() {
+		List<ServentInfo> newRouteList = new ArrayList<>(getRoute());
+		newRouteList.add(AppConfig.myServentInfo);
+
+		return new TransactionMessage(getOriginalSenderInfo(), getOriginalReceiverInfo(), getReceiverInfo(),
+				getSenderClock(), newRouteList, getMessageText(), getMessageId(), channelIndex);
+	}
+
+	@Override
+	public Message changeReceiver(Integer newReceiverId) {
+		if (AppConfig.myServentInfo.neighbors().contains(newReceiverId)) {
+			ServentInfo newReceiverInfo = AppConfig.getInfoById(newReceiverId);
+
+			return new TransactionMessage(getOriginalSenderInfo(), getOriginalReceiverInfo(), newReceiverInfo,
+					getSenderClock(), getRoute(), getMessageText(), getMessageId(), channelIndex);
+		} else {
+			AppConfig.timestampedErrorPrint("Trying to make a message for " + newReceiverId + " who is not a neighbor.");
+			return null;
+		}
 	}
 	
 	/**
@@ -32,6 +96,8 @@ public class TransactionMessage extends BasicMessage {
 	 */
 	@Override
 	public void sendEffect() {
+		if (bitcakeManager == null) return;
+
 		int amount = Integer.parseInt(getMessageText());
 		bitcakeManager.takeSomeBitcakes(amount);
 	}
@@ -0,0 +1,55 @@
+package com.kids.servent.message.implementation.ab;
+
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABReceivedIndexes;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
+import lombok.Getter;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sent down the spanning tree of a finished AB snapshot. For every servent in the receiver's subtree,
+ * it says which of that servent's transactions each other servent had received when it recorded its state,
+ * so the servent can list the others and drop these from its sent log, and how many transactions and bitcakes each other servent
+ * had sent it that were still in transit, which go into its checkpoint.
+ * <p>
+ * Like the responses, it only ever goes to a neighbor, outside the causal order.
+ */
+@Getter
+public class ABDeliveredMessage extends SnapshotMessage {
+
+    @Serial
+    private static final long serialVersionUID = -6150447983226508120L;
+
+    // Servent id to which of its transactions each servent received, indexed by receiver id
+    private final Map<Integer, ABReceivedIndexes[]> receivedIndexes;
+    // Servent id to the number of transactions and bitcakes in transit towards it, indexed by sender id
+    private final Map<Integer, int[]> inTransitCounts;
+    private final Map<Integer, int[]> inTransitAmounts;
+
+    public ABDeliveredMessage(ServentInfo sender, ServentInfo receiver, Map<Integer, ABReceivedIndexes[]> receivedIndexes,
+                              Map<Integer, int[]> inTransitCounts, Map<Integer, int[]> inTransitAmounts, SnapshotId snapshotId) {
+        super(MessageType.AB_DELIVERED, sender, receiver, receiver, null, snapshotId);
+
+        this.receivedIndexes = receivedIndexes;
+        this.inTransitCounts = inTransitCounts;
+        this.inTransitAmounts = inTransitAmounts;
+    }
+
+    /**
+     * Restores a message with all of its attributes, including the id.
+     */
+    public ABDeliveredMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, List<ServentInfo> routeList,
+                              String messageText, int messageId, Map<Integer, ABReceivedIndexes[]> receivedIndexes,
+                              Map<Integer, int[]> inTransitCounts, Map<Integer, int[]> inTransitAmounts, SnapshotId snapshotId) {
+        super(MessageType.AB_DELIVERED, originalSenderInfo, originalReceiverInfo, receiverInfo, null, routeList, messageText, messageId, snapshotId);
+
+        this.receivedIndexes = receivedIndexes;
+        this.inTransitCounts = inTransitCounts;
+        this.inTransitAmounts = inTransitAmounts;
+    }
+}
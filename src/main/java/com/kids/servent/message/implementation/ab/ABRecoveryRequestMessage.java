@@ -0,0 +1,24 @@
+package com.kids.servent.message.implementation.ab;
+
+import com.kids.app.servent.ServentInfo;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.BasicMessage;
+
+import java.io.Serial;
+
+/**
+ * Sent by a servent that started over from an AB checkpoint to every other servent, asking for the totals of
+ * the transactions between them. It is routed like a transaction, outside the causal order.
+ * <p>
+ * It carries nothing but its own id: it is sent before any new transaction, so every transaction
+ * from before the crash has a lower id, and every new one a higher id.
+ */
+public class ABRecoveryRequestMessage extends BasicMessage {
+
+    @Serial
+    private static final long serialVersionUID = 5530927184633017412L;
+
+    public ABRecoveryRequestMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor) {
+        super(MessageType.AB_RECOVERY_REQUEST, sender, receiver, neighbor, null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.kids.servent.message.implementation.ab;
+
+import com.kids.app.AppConfig;
+import com.kids.app.ClockSnapshot;
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABChannelTotals;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.BasicMessage;
+import lombok.Getter;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The answer to an {@link ABRecoveryRequestMessage}: the sender's totals of the transactions between it and
+ * the recovered servent. It is routed back like a transaction, so the modification methods keep the totals.
+ */
+@Getter
+public class ABRecoveryResponseMessage extends BasicMessage {
+
+    @Serial
+    private static final long serialVersionUID = -2981603377546190218L;
+
+    private final ABChannelTotals totals;
+
+    public ABRecoveryResponseMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, ABChannelTotals totals) {
+        super(MessageType.AB_RECOVERY_RESPONSE, sender, receiver, neighbor, null);
+        this.totals = totals;
+    }
+
+    /**
+     * Restores a response with all of its attributes, including the id.
+     */
+    public ABRecoveryResponseMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, ClockSnapshot senderVectorClock,
+                                     List<ServentInfo> routeList, String messageText, int messageId, ABChannelTotals totals) {
+        super(MessageType.AB_RECOVERY_RESPONSE, originalSenderInfo, originalReceiverInfo, receiverInfo, senderVectorClock, routeList, messageText, messageId);
+        this.totals = totals;
+    }
+
+    @Override
+    public Message makeMeASender() {
+        List<ServentInfo> newRouteList = new ArrayList<>(getRoute());
+        newRouteList.add(AppConfig.myServentInfo);
+
+        return new ABRecoveryResponseMessage(getOriginalSenderInfo(), getOriginalReceiverInfo(), getReceiverInfo(),
+                getSenderClock(), newRouteList, getMessageText(), getMessageId(), totals);
+    }
+
+    @Override
+    public Message changeReceiver(Integer newReceiverId) {
+        if (AppConfig.myServentInfo.neighbors().contains(newReceiverId)) {
+            ServentInfo newReceiverInfo = AppConfig.getInfoById(newReceiverId);
+
+            return new ABRecoveryResponseMessage(getOriginalSenderInfo(), getOriginalReceiverInfo(), newReceiverInfo,
+                    getSenderClock(), getRoute(), getMessageText(), getMessageId(), totals);
+        } else {
+            AppConfig.timestampedErrorPrint("Trying to make a message for " + newReceiverId + " who is not a neighbor.");
+            return null;
+        }
+    }
+}
@@ -1,96 +1,48 @@
 package com.kids.servent.message.implementation.ab;
 
-import com.kids.app.AppConfig;
 import com.kids.app.servent.ServentInfo;
-import com.kids.servent.message.Message;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.acharya_badrinath.ABSnapshot;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
 import lombok.Getter;
 
 import java.io.Serial;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a response message for an AB snapshot.
- * This message contains the snapshot data, including sent and received transactions.
+ * This message goes to the sender's parent in the snapshot's spanning tree, and contains the snapshot data of every
+ * servent in the sender's subtree: the amount of bitcakes, and the totals of transactions sent to and received from
+ * every other servent. The text is the sum of the amounts.
+ * <p>
+ * It only ever goes to a neighbor, outside the causal order, so it carries no vector clock.
  */
 @Getter
-public class ABSnapshotResponseMessage extends BasicMessage {
+public class ABSnapshotResponseMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = 1932837451964281053L;
-    private final List<Message> sent;
-    private final List<Message> received;
+    private final Map<Integer, ABSnapshot> snapshots;
 
-    public ABSnapshotResponseMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, Map<Integer, Integer> senderVectorClock, int amount, List<Message> sentTransactions, List<Message> receivedTransactions) {
-        super(MessageType.AB_SNAPSHOT_RESPONSE, sender, receiver, neighbor, String.valueOf(amount), senderVectorClock);
+    public ABSnapshotResponseMessage(ServentInfo sender, ServentInfo receiver, Map<Integer, ABSnapshot> snapshots, SnapshotId snapshotId) {
+        super(MessageType.AB_SNAPSHOT_RESPONSE, sender, receiver, receiver, String.valueOf(sum(snapshots)), null, snapshotId);
 
-        this.sent = new CopyOnWriteArrayList<>(sentTransactions);
-        this.received = new CopyOnWriteArrayList<>(receivedTransactions);
-    }
-
-    protected ABSnapshotResponseMessage(MessageType type, ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, Map<Integer, Integer> senderVectorClock, List<ServentInfo> routeList,
-                                        String messageText, int messageId, List<Message> sentTransactions, List<Message> receivedTransactions) {
-        super(type, originalSenderInfo, originalReceiverInfo, receiverInfo, senderVectorClock, routeList, messageText, messageId);
-
-        this.sent = new CopyOnWriteArrayList<>(sentTransactions);
-        this.received = new CopyOnWriteArrayList<>(receivedTransactions);
+        this.snapshots = snapshots;
     }
 
     /**
-     * Creates a new ABSnapshotResponseMessage with updated route information.
-     *
-     * @return A new ABSnapshotResponseMessage with the current node added to the route.
+     * Restores a response with all of its attributes, including the id.
      */
-    @Override
-    public Message makeMeASender() {
-        ServentInfo newRouteItem = AppConfig.myServentInfo;
-        List<ServentInfo> newRouteList = new ArrayList<>(getRoute());
-        newRouteList.add(newRouteItem);
+    public ABSnapshotResponseMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo, List<ServentInfo> routeList,
+                                        String messageText, int messageId, Map<Integer, ABSnapshot> snapshots, SnapshotId snapshotId) {
+        super(MessageType.AB_SNAPSHOT_RESPONSE, originalSenderInfo, originalReceiverInfo, receiverInfo, null, routeList, messageText, messageId, snapshotId);
 
-        return new ABSnapshotResponseMessage(
-                getMessageType(),
-                getOriginalSenderInfo(),
-                getOriginalReceiverInfo(),
-                getReceiverInfo(),
-                getSenderVectorClock(),
-                newRouteList,
-                getMessageText(),
-                getMessageId(),
-                getSent(),
-                getReceived()
-        );
+        this.snapshots = snapshots;
     }
 
-    /**
-     * Creates a new ABSnapshotResponseMessage with a changed receiver.
-     *
-     * @param newReceiverId The ID of the new receiver.
-     * @return A new ABSnapshotResponseMessage with the updated receiver, or null if the receiver is not a neighbor.
-     */
-    @Override
-    public Message changeReceiver(Integer newReceiverId) {
-        if (AppConfig.myServentInfo.neighbors().contains(newReceiverId)) {
-            ServentInfo newReceiverInfo = AppConfig.getInfoById(newReceiverId);
-
-            return new ABSnapshotResponseMessage(
-                    getMessageType(),
-                    getOriginalSenderInfo(),
-                    getOriginalReceiverInfo(),
-                    newReceiverInfo,
-                    getSenderVectorClock(),
-                    getRoute(),
-                    getMessageText(),
-                    getMessageId(),
-                    getSent(),
-                    getReceived()
-            );
-        } else {
-            AppConfig.timestampedErrorPrint("Trying to make a message for " + newReceiverId + " who is not a neighbor.");
-            return null;
-        }
+    private static int sum(Map<Integer, ABSnapshot> snapshots) {
+        return snapshots.values().stream().mapToInt(ABSnapshot::getAmount).sum();
     }
 }
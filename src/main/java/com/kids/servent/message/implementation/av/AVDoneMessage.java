@@ -1,21 +1,22 @@
 package com.kids.servent.message.implementation.av;
 
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
 
 import java.io.Serial;
-import java.util.Map;
 
 /**
  * This message is used to signal the completion of the AV process between servents.
  */
-public class AVDoneMessage extends BasicMessage {
+public class AVDoneMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = 1596738203465981043L;
 
-    public AVDoneMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, Map<Integer, Integer> senderVectorClock) {
-        super(MessageType.AV_DONE, sender, receiver, neighbor, senderVectorClock);
+    public AVDoneMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, ClockSnapshot senderVectorClock, SnapshotId snapshotId) {
+        super(MessageType.AV_DONE, sender, receiver, neighbor, senderVectorClock, snapshotId);
     }
 }
@@ -1,22 +1,23 @@
 package com.kids.servent.message.implementation.av;
 
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
 
 import java.io.Serial;
-import java.util.Map;
 
 /**
  * Represents a marker message used in the AV process.
  */
-public class AVMarkerMessage extends BasicMessage {
+public class AVMarkerMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = 4839201745839012476L;
 
-    public AVMarkerMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, Map<Integer, Integer> senderVectorClock) {
-        super(MessageType.AV_MARKER, sender, receiver, neighbor, senderVectorClock);
+    public AVMarkerMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, ClockSnapshot senderVectorClock, SnapshotId snapshotId) {
+        super(MessageType.AV_MARKER, sender, receiver, neighbor, senderVectorClock, snapshotId);
     }
 
 }
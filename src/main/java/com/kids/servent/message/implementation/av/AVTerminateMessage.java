@@ -1,22 +1,23 @@
 package com.kids.servent.message.implementation.av;
 
+import com.kids.app.ClockSnapshot;
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
 
 import java.io.Serial;
-import java.util.Map;
 
 /**
  * This message is used to signal the termination of the AV process between servents.
  */
-public class AVTerminateMessage extends BasicMessage {
+public class AVTerminateMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = 3271045368214793650L;
 
-    public AVTerminateMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, Map<Integer, Integer> senderVectorClock) {
-        super(MessageType.AV_TERMINATE, sender, receiver, neighbor, senderVectorClock);
+    public AVTerminateMessage(ServentInfo sender, ServentInfo receiver, ServentInfo neighbor, ClockSnapshot senderVectorClock, SnapshotId snapshotId) {
+        super(MessageType.AV_TERMINATE, sender, receiver, neighbor, senderVectorClock, snapshotId);
     }
 
 }
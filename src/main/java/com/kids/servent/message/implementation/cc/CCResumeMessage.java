@@ -1,20 +1,21 @@
 package com.kids.servent.message.implementation.cc;
 
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
 
 import java.io.Serial;
 
 /**
  * Message sent by the initiator to all nodes to inform them that the snapshot is complete and they can resume normal operation.
  */
-public class CCResumeMessage extends BasicMessage {
+public class CCResumeMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = -5114137681491356339L;
 
-    public CCResumeMessage(ServentInfo sender, ServentInfo receiver) {
-        super(MessageType.CC_RESUME, sender, receiver, receiver, "RESUME", null);
+    public CCResumeMessage(ServentInfo sender, ServentInfo receiver, SnapshotId snapshotId) {
+        super(MessageType.CC_RESUME, sender, receiver, receiver, "RESUME", null, snapshotId);
     }
 } 
\ No newline at end of file
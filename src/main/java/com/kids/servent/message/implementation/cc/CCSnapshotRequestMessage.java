@@ -1,26 +1,36 @@
 package com.kids.servent.message.implementation.cc;
 
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
-import lombok.Getter;
+import com.kids.servent.message.implementation.SnapshotMessage;
 
 import java.io.Serial;
+import java.util.List;
 
 /**
  * Message used to request a snapshot during Coordinated Checkpointing.
  */
-@Getter
-public class CCSnapshotRequestMessage extends BasicMessage {
+public class CCSnapshotRequestMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = -3114137381691356339L;
-    
-    private final int initiatorId;
 
-    public CCSnapshotRequestMessage(ServentInfo sender, ServentInfo receiver, int initiatorId) {
-        super(MessageType.CC_SNAPSHOT_REQUEST, sender, receiver, receiver, String.valueOf(initiatorId), null);
-        this.initiatorId = initiatorId;
+    public CCSnapshotRequestMessage(ServentInfo sender, ServentInfo receiver, SnapshotId snapshotId) {
+        super(MessageType.CC_SNAPSHOT_REQUEST, sender, receiver, receiver, String.valueOf(snapshotId.initiatorId()), null, snapshotId);
+    }
+
+    /**
+     * Restores a request with all of its attributes, including the id.
+     */
+    public CCSnapshotRequestMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo,
+                                    List<ServentInfo> routeList, int messageId, SnapshotId snapshotId) {
+        super(MessageType.CC_SNAPSHOT_REQUEST, originalSenderInfo, originalReceiverInfo, receiverInfo, null, routeList,
+                String.valueOf(snapshotId.initiatorId()), messageId, snapshotId);
+    }
+
+    public int getInitiatorId() {
+        return getSnapshotId().initiatorId();
     }
 
 } 
\ No newline at end of file
@@ -1,24 +1,55 @@
 package com.kids.servent.message.implementation.cc;
 
 import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
 import com.kids.servent.message.MessageType;
-import com.kids.servent.message.implementation.BasicMessage;
+import com.kids.servent.message.implementation.SnapshotMessage;
 
 import java.io.Serial;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Message sent by a node to the initiator to confirm that it has recorded its local state and contains the amount of bitcakes it had.
+ * Message sent by a node to its parent in the snapshot's spanning tree once every servent in its subtree has recorded its state.
+ * It carries the amount of bitcakes each of them had, and the text is their sum.
  */
-public class CCSnapshotResponseMessage extends BasicMessage {
+public class CCSnapshotResponseMessage extends SnapshotMessage {
 
     @Serial
     private static final long serialVersionUID = -4114137381491357339L;
 
-    public CCSnapshotResponseMessage(ServentInfo sender, ServentInfo receiver, int amount) {
-        super(MessageType.CC_SNAPSHOT_RESPONSE, sender, receiver, receiver, String.valueOf(amount), null);
+    private final Map<Integer, Integer> amounts;
+
+    public CCSnapshotResponseMessage(ServentInfo sender, ServentInfo receiver, Map<Integer, Integer> amounts, SnapshotId snapshotId) {
+        super(MessageType.CC_SNAPSHOT_RESPONSE, sender, receiver, receiver, String.valueOf(sum(amounts)), null, snapshotId);
+        this.amounts = amounts;
+    }
+
+    /**
+     * Restores a response with all of its attributes, including the id.
+     */
+    public CCSnapshotResponseMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo,
+                                     List<ServentInfo> routeList, String messageText, int messageId,
+                                     Map<Integer, Integer> amounts, SnapshotId snapshotId) {
+        super(MessageType.CC_SNAPSHOT_RESPONSE, originalSenderInfo, originalReceiverInfo, receiverInfo, null, routeList, messageText, messageId, snapshotId);
+        this.amounts = amounts;
+    }
+
+    /**
+     * @return the amount of bitcakes each servent of the subtree had, by servent id
+     */
+    public Map<Integer, Integer> getAmounts() {
+        return amounts;
     }
-    
+
+    /**
+     * @return the amount of bitcakes the whole subtree had
+     */
     public int getAmount() {
         return Integer.parseInt(getMessageText());
     }
-} 
\ No newline at end of file
+
+    private static int sum(Map<Integer, Integer> amounts) {
+        return amounts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+}
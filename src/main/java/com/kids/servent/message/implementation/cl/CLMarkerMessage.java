@@ -0,0 +1,35 @@
+package com.kids.servent.message.implementation.cl;
+
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLBitcakeManager;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
+
+import java.io.Serial;
+
+/**
+ * Chandy-Lamport marker. Sent to every neighbor by a servent that has just recorded its state.
+ */
+public class CLMarkerMessage extends SnapshotMessage {
+
+    @Serial
+    private static final long serialVersionUID = 3306185317484069315L;
+
+    private final transient CLBitcakeManager bitcakeManager;
+
+    public CLMarkerMessage(ServentInfo sender, ServentInfo receiver, SnapshotId snapshotId, CLBitcakeManager bitcakeManager) {
+        super(MessageType.CL_MARKER, sender, receiver, receiver, "MARKER", null, snapshotId);
+        this.bitcakeManager = bitcakeManager;
+    }
+
+    /**
+     * Lets the sender know this marker is out, so it can send regular messages again once all of them are.
+     */
+    @Override
+    public void sendEffect() {
+        if (bitcakeManager != null) {
+            bitcakeManager.markerSent();
+        }
+    }
+}
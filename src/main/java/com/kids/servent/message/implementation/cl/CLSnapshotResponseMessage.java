@@ -0,0 +1,46 @@
+package com.kids.servent.message.implementation.cl;
+
+import com.kids.app.servent.ServentInfo;
+import com.kids.app.snapshot_bitcake.SnapshotId;
+import com.kids.app.snapshot_bitcake.chandy_lamport.CLSnapshot;
+import com.kids.servent.message.MessageType;
+import com.kids.servent.message.implementation.SnapshotMessage;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Message sent by a node to the initiator once it has recorded its state and all of its incoming channels.
+ * The text is the recorded amount, the channel amounts are carried next to it.
+ */
+public class CLSnapshotResponseMessage extends SnapshotMessage {
+
+    @Serial
+    private static final long serialVersionUID = -1859617009741640214L;
+
+    private final Map<Integer, Integer> channelAmounts;
+
+    public CLSnapshotResponseMessage(ServentInfo sender, ServentInfo receiver, CLSnapshot snapshot, SnapshotId snapshotId) {
+        super(MessageType.CL_SNAPSHOT_RESPONSE, sender, receiver, receiver, String.valueOf(snapshot.recordedAmount()), null, snapshotId);
+        this.channelAmounts = snapshot.channelAmounts();
+    }
+
+    /**
+     * Restores a response with all of its attributes, including the id.
+     */
+    public CLSnapshotResponseMessage(ServentInfo originalSenderInfo, ServentInfo originalReceiverInfo, ServentInfo receiverInfo,
+                                     List<ServentInfo> routeList, String messageText, int messageId,
+                                     Map<Integer, Integer> channelAmounts, SnapshotId snapshotId) {
+        super(MessageType.CL_SNAPSHOT_RESPONSE, originalSenderInfo, originalReceiverInfo, receiverInfo, null, routeList, messageText, messageId, snapshotId);
+        this.channelAmounts = channelAmounts;
+    }
+
+    public CLSnapshot getSnapshot() {
+        return new CLSnapshot(getOriginalSenderInfo().id(), Integer.parseInt(getMessageText()), channelAmounts);
+    }
+
+    public Map<Integer, Integer> getChannelAmounts() {
+        return channelAmounts;
+    }
+}
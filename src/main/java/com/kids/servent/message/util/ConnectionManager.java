@@ -0,0 +1,27 @@
+package com.kids.servent.message.util;
+
+import com.kids.app.servent.ServentInfo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one {@link ServentConnection} per servent we are sending to.
+ * <p>
+ * Connections are opened lazily on first send and kept for the lifetime of the servent,
+ * instead of opening a new socket for every message.
+ */
+public class ConnectionManager {
+
+	private static final Map<Integer, ServentConnection> connections = new ConcurrentHashMap<>();
+
+	public static ServentConnection getConnection(ServentInfo servent) {
+		return connections.computeIfAbsent(servent.id(), id -> new ServentConnection(servent));
+	}
+
+	public static void closeAll() {
+		connections.values().forEach(ServentConnection::close);
+		connections.clear();
+	}
+
+}
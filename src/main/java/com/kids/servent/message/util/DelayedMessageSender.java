@@ -1,17 +1,14 @@
 package com.kids.servent.message.util;
 
 import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
 import com.kids.app.servent.ServentInfo;
 import com.kids.servent.message.Message;
 import lombok.AllArgsConstructor;
 
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
-
 /**
- * This worker sends a message asynchronously. Doing this in a separate thread
- * has the added benefit of being able to delay without blocking main or some such.
+ * This worker sends a message asynchronously. It is scheduled on the {@link AppExecutors},
+ * which has the added benefit of being able to delay without blocking main or some such.
  * 
  * @author bmilojkovic
  *
@@ -21,31 +18,26 @@ public class DelayedMessageSender implements Runnable {
 
 	private Message messageToSend;
 	
-	public void run() {
+	/**
+	 * Sends the message after a random delay. No thread is held while waiting.
+	 */
+	public static void sendLater(Message message) {
 		/*
 		 * A random sleep before sending.
 		 * It is important to take regular naps for health reasons.
 		 */
-		try {
-			Thread.sleep((long)(Math.random() * 1000) + 500);
-		} catch (InterruptedException ignore) { }
-		
+		long delay = (long)(Math.random() * 1000) + 500;
+		AppExecutors.schedule(new DelayedMessageSender(message), delay);
+	}
+	
+	public void run() {
 		ServentInfo receiverInfo = messageToSend.getReceiverInfo();
 		if (MessageUtil.MESSAGE_UTIL_PRINTING) {
-			AppConfig.timestampedStandardPrint("Sending message " + messageToSend);
+			AppConfig.timestampedDebugPrint(() -> "Sending message " + messageToSend);
 		}
 
-		try {
-			Socket sendSocket = new Socket(receiverInfo.ipAddress(), receiverInfo.listenerPort());
-
-			ObjectOutputStream oos = new ObjectOutputStream(sendSocket.getOutputStream());
-			oos.writeObject(messageToSend);
-			oos.flush();
-
-			sendSocket.close();
-		} catch (IOException e) {
-			AppConfig.timestampedErrorPrint("Couldn't send message: " + messageToSend.toString());
-		}
+		// Logged until the receiver acknowledges it, so a broken connection only delays it
+		ConnectionManager.getConnection(receiverInfo).send(messageToSend);
 	}
 	
 }
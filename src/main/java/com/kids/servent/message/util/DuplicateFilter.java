@@ -0,0 +1,96 @@
+package com.kids.servent.message.util;
+
+import com.kids.app.AppConfig;
+import com.kids.servent.message.Message;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells whether a message was seen before, by its original sender and message id, in constant memory per sender.
+ * <p>
+ * Message ids of one sender only grow, so for each sender we keep a watermark below which every id counts as seen,
+ * and a bitmap of the {@link AppConfig#DEDUP_WINDOW} ids above it. The watermark moves up over the ids that were seen
+ * in a row. Ids of messages that are never flooded leave gaps in the bitmap, so when a new id doesn't fit
+ * in the window anymore, the watermark jumps up far enough to make room. A first copy can then only be taken for
+ * a duplicate if it arrives after the sender has used up a whole window of newer ids.
+ */
+public class DuplicateFilter {
+
+    private final Map<Integer, SenderWindow> senders = new ConcurrentHashMap<>();
+
+    /**
+     * Marks a message as seen.
+     *
+     * @return true if this is the first time we see it
+     */
+    public boolean add(Message message) {
+        return add(message.getOriginalSenderInfo().id(), message.getMessageId());
+    }
+
+    /**
+     * Marks a message as seen.
+     *
+     * @return true if this is the first time we see it
+     */
+    public boolean add(int senderId, int messageId) {
+        return senders.computeIfAbsent(senderId, id -> new SenderWindow(AppConfig.DEDUP_WINDOW)).add(messageId);
+    }
+
+    /**
+     * Ids seen from a single sender: everything below the watermark, and the set bits above it.
+     * The bit of an id is at its position modulo the window size.
+     */
+    private static class SenderWindow {
+
+        private final long[] bits;
+        private final int size;
+        private int watermark = 0;
+
+        SenderWindow(int size) {
+            this.bits = new long[(size + 63) / 64];
+            this.size = bits.length * 64;
+        }
+
+        synchronized boolean add(int messageId) {
+            if (messageId < watermark) return false;
+            if (messageId - watermark >= size) {
+                moveWatermark(messageId - size + 1);
+            }
+
+            int index = messageId % size;
+            long mask = 1L << index;
+            if ((bits[index >>> 6] & mask) != 0) return false;
+            bits[index >>> 6] |= mask;
+
+            // Move over the ids seen in a row
+            while (isSet(watermark)) {
+                clear(watermark);
+                watermark++;
+            }
+            return true;
+        }
+
+        private void moveWatermark(int newWatermark) {
+            if (newWatermark - watermark >= size) {
+                Arrays.fill(bits, 0);
+            } else {
+                for (int id = watermark; id < newWatermark; id++) {
+                    clear(id);
+                }
+            }
+            watermark = newWatermark;
+        }
+
+        private boolean isSet(int id) {
+            int index = id % size;
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        private void clear(int id) {
+            int index = id % size;
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+}
@@ -6,9 +6,9 @@ import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
 import lombok.RequiredArgsConstructor;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,6 +19,16 @@ import java.util.concurrent.TimeUnit;
  * <p>
  * If a message is found in the marker queue, it is sent right away. If not,
  * we check that we are white, and then we check the regular messages queue.
+ * <p>
+ * Regular messages are sent in batches. We drain whatever is queued for the neighbor,
+ * up to {@link AppConfig#FIFO_BATCH_SIZE} messages, waiting at most {@link AppConfig#FIFO_BATCH_WAIT_MS}
+ * for more to show up, and ship them in one frame that the neighbor acknowledges once.
+ * A batch that couldn't be sent because we weren't white is kept and retried before anything newer, so the channel stays FIFO.
+ * <p>
+ * All messages go over the single {@link ServentConnection} we keep for the neighbor,
+ * and we wait for an ACK after each frame before sending the next. Once a batch is handed to the connection
+ * it is in the neighbor's {@link SendLog}, so if the neighbor can't be reached the connection resends it later,
+ * in order, and we go on with the next one.
  * 
  * @author bmilojkovic
  *
@@ -29,84 +39,36 @@ public class FifoSendWorker implements Runnable, Cancellable {
 	private final int neighbor;
 	private volatile boolean working = true;
 	
+	/*
+	 * Regular messages taken off the queue but not sent yet, in the order they were queued.
+	 */
+	private final List<Message> batch = new ArrayList<>();
+	
 	@Override
 	public void run() {
 		while (working) {
 			try {
-				// First check if there are any marker/control messages to send (high priority)
-				Message messageToSend = MessageUtil.pendingMarkers.get(neighbor).poll(200, TimeUnit.MILLISECONDS);
+				// Don't linger on the marker queue if we already have a batch we can send
+				boolean canSendBatch = !batch.isEmpty() && AppConfig.isWhite.get();
 				
-				// If no marker/control messages, then check regular messages when we're in white state
-				if (messageToSend == null) {
-					if (AppConfig.isWhite.get()) {
-						messageToSend = MessageUtil.pendingMessages.get(neighbor).poll(200, TimeUnit.MILLISECONDS);
-					}
+				// First check if there are any marker/control messages to send (high priority)
+				Message marker = MessageUtil.pendingMarkers.get(neighbor).poll(canSendBatch ? 0 : 200, TimeUnit.MILLISECONDS);
+				if (marker != null) {
+					if (marker.getMessageType() == MessageType.POISON) break;
+					
+					send(List.of(marker), true);
+					continue;
 				}
 				
-				if (messageToSend == null) continue;
-				if (messageToSend.getMessageType() == MessageType.POISON) break;
-				
-				Socket sendSocket;
-				
-				/*
-				 * We are doing a compound operation on our color. In Chandy-Lamport, we want to be sure
-				 * that we are white when we are taking away our bitcakes.
-				 * The bitcake reducing is done in the sendEffect() method of the
-				 * Transaction message, which is at the bottom of this sync.
-				 */
-				synchronized (AppConfig.colorLock) {
-					// For control/marker messages, or when we're white, proceed with sending
-					if (isMarkerOrControlMessage(messageToSend) || AppConfig.isWhite.get()) {
-						if (MessageUtil.MESSAGE_UTIL_PRINTING) {
-							AppConfig.timestampedStandardPrint("Sending message " + messageToSend);
-						}
-						
-						// Validate the message has a valid receiver
-						if (messageToSend.getOriginalReceiverInfo() == null) {
-							AppConfig.timestampedErrorPrint("Cannot send message with null originalReceiverInfo: " + messageToSend);
-							continue;
-						}
-						
-						try {
-							sendSocket = new Socket(
-								messageToSend.getOriginalReceiverInfo().ipAddress(), 
-								messageToSend.getOriginalReceiverInfo().listenerPort()
-							);
-							
-							ObjectOutputStream oos = new ObjectOutputStream(sendSocket.getOutputStream());
-							oos.writeObject(messageToSend);
-							oos.flush();
-							
-							messageToSend.sendEffect();
-						} catch (Exception e) {
-							AppConfig.timestampedErrorPrint("Error connecting to neighbor: " + e.getMessage());
-							// Put the message back in the queue to try again later
-							if (isMarkerOrControlMessage(messageToSend)) {
-								MessageUtil.pendingMarkers.get(neighbor).put(messageToSend);
-							} else {
-								MessageUtil.pendingMessages.get(neighbor).put(messageToSend);
-							}
-							continue;
-						}
-					} else {
-						// We're not white and this is a regular message, put it back in the queue
-						MessageUtil.pendingMessages.get(neighbor).put(messageToSend);
-						continue;
-					}
+				// If no marker/control messages, then check regular messages when we're in white state
+				if (!AppConfig.isWhite.get()) continue;
+				if (batch.isEmpty()) {
+					fillBatch();
 				}
 				
-				try {
-					ObjectInputStream ois = new ObjectInputStream(sendSocket.getInputStream());
-					String ackString = (String)ois.readObject();
-					if (!ackString.equals("ACK")) {
-						AppConfig.timestampedErrorPrint("Got response which is not an ACK");
-					}
-					
-					sendSocket.close();
-				} catch (Exception e) {
-					AppConfig.timestampedErrorPrint("Error receiving ACK: " + e.getMessage());
+				if (!batch.isEmpty() && send(batch, false)) {
+					batch.clear();
 				}
-
 			} catch (Exception e) {
 				AppConfig.timestampedErrorPrint("Error in FifoSendWorker: " + e.getMessage());
 			}
@@ -114,12 +76,68 @@ public class FifoSendWorker implements Runnable, Cancellable {
 	}
 	
 	/**
-	 * Helper method to check if a message is a marker or control message that should
-	 * be processed with high priority regardless of color state.
+	 * Takes regular messages off the queue until the batch is full or the wait budget runs out.
+	 */
+	private void fillBatch() throws InterruptedException {
+		BlockingQueue<Message> queue = MessageUtil.pendingMessages.get(neighbor);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AppConfig.FIFO_BATCH_WAIT_MS);
+		
+		Message next = queue.poll(200, TimeUnit.MILLISECONDS);
+		while (next != null) {
+			if (next.getMessageType() == MessageType.POISON) {
+				working = false;
+				return;
+			}
+			
+			// Validate the message has a valid receiver
+			if (next.getOriginalReceiverInfo() == null) {
+				AppConfig.timestampedErrorPrint("Cannot send message with null originalReceiverInfo: " + next);
+			} else {
+				batch.add(next);
+			}
+			
+			if (batch.size() >= AppConfig.FIFO_BATCH_SIZE) return;
+			next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Sends the messages in one frame and waits for the ACK.
+	 * 
+	 * @param control true for marker/control messages, which are sent regardless of our color
+	 * @return false if we weren't white and the regular messages have to wait
 	 */
-	private boolean isMarkerOrControlMessage(Message message) {
-		MessageType type = message.getMessageType();
-		return type == MessageType.CC_SNAPSHOT_REQUEST || type == MessageType.CC_SNAPSHOT_RESPONSE || type == MessageType.CC_RESUME;
+	private boolean send(List<Message> messages, boolean control) {
+		ServentConnection connection;
+		
+		/*
+		 * We are doing a compound operation on our color. In Chandy-Lamport, we want to be sure
+		 * that we are white when we are taking away our bitcakes.
+		 * The bitcake reducing is done in the sendEffect() method of the
+		 * Transaction message, which is at the bottom of this sync.
+		 */
+		synchronized (AppConfig.colorLock) {
+			// We're not white and these are regular messages, keep them for later
+			if (!control && !AppConfig.isWhite.get()) return false;
+			
+			if (MessageUtil.MESSAGE_UTIL_PRINTING) {
+				for (Message message : messages) {
+					AppConfig.timestampedDebugPrint(() -> "Sending message " + message);
+				}
+			}
+			
+			connection = ConnectionManager.getConnection(messages.get(0).getOriginalReceiverInfo());
+			connection.send(messages);
+			
+			messages.forEach(Message::sendEffect);
+		}
+		
+		try {
+			connection.awaitAck();
+		} catch (Exception e) {
+			AppConfig.timestampedErrorPrint("Error receiving ACK: " + e.getMessage());
+		}
+		return true;
 	}
 	
 	@Override
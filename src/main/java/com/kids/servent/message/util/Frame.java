@@ -0,0 +1,198 @@
+package com.kids.servent.message.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single unit of data travelling over a servent connection.
+ * <p>
+ * Connections between servents are long-lived, so many frames are written to the same socket
+ * one after another. On the wire a frame looks like <code>[int length][byte type][payload]</code>,
+ * where length covers the type byte and the payload.
+ *
+ * @param type one of the frame type constants below
+ * @param payload frame body, for message frames this is the serialized message
+ */
+public record Frame(byte type, byte[] payload) {
+
+	/**
+	 * A single message. The payload is <code>[int sequence]</code> followed by the message.
+	 */
+	public static final byte MESSAGE = 1;
+
+	/**
+	 * Several messages with consecutive sequence numbers, packed into one frame.
+	 * The payload is <code>[int first sequence][int count]</code> followed by <code>[int length][message]</code> for each message.
+	 * Used to ship everything waiting for a servent in one write.
+	 */
+	public static final byte BATCH = 2;
+
+	/**
+	 * Cumulative acknowledgement, the payload is <code>[int sequence]</code>. Every message
+	 * up to and including that sequence number has been received, see {@link SendLog}.
+	 */
+	public static final byte ACK = 3;
+
+	/**
+	 * The first frame on every connection, the payload is <code>[int servent id][long session]</code>.
+	 * Tells the receiver whose sequence numbers follow, see {@link ReceivedSequences}.
+	 */
+	public static final byte HELLO = 4;
+
+	/**
+	 * Upper bound for a single frame, so a corrupted length can't make us allocate the whole heap.
+	 */
+	public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	public static Frame ack(int sequence) {
+		return new Frame(ACK, ByteBuffer.allocate(Integer.BYTES).putInt(sequence).array());
+	}
+
+	public static Frame hello(int serventId, long session) {
+		return new Frame(HELLO, ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(serventId).putLong(session).array());
+	}
+
+	/**
+	 * Packs already serialized messages into one frame, keeping their order. A single message
+	 * goes in a {@link #MESSAGE} frame, more of them in a {@link #BATCH}.
+	 *
+	 * @param firstSequence sequence number of the first message, the others follow it
+	 */
+	public static Frame messages(int firstSequence, List<byte[]> messages) {
+		if (messages.size() == 1) {
+			byte[] message = messages.get(0);
+			return new Frame(MESSAGE, ByteBuffer.allocate(Integer.BYTES + message.length).putInt(firstSequence).put(message).array());
+		}
+
+		int length = 2 * Integer.BYTES;
+		for (byte[] message : messages) {
+			length += Integer.BYTES + message.length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.putInt(firstSequence);
+		buffer.putInt(messages.size());
+		for (byte[] message : messages) {
+			buffer.putInt(message.length);
+			buffer.put(message);
+		}
+		return new Frame(BATCH, buffer.array());
+	}
+
+	public boolean isMessage() {
+		return type == MESSAGE || type == BATCH;
+	}
+
+	/**
+	 * Returns the sequence number of the first message in a message frame, or the acknowledged one in an {@link #ACK}.
+	 * For a {@link #HELLO} it is the id of the servent on the other side.
+	 *
+	 * @throws IOException if the payload is too short to hold it
+	 */
+	public int sequence() throws IOException {
+		if (payload.length < Integer.BYTES) {
+			throw new IOException("Truncated frame of type " + type);
+		}
+		return ByteBuffer.wrap(payload).getInt();
+	}
+
+	/**
+	 * Returns the session of the servent that sent a {@link #HELLO}.
+	 *
+	 * @throws IOException if this isn't a well formed hello
+	 */
+	public long session() throws IOException {
+		if (type != HELLO || payload.length != Integer.BYTES + Long.BYTES) {
+			throw new IOException("Not a hello frame");
+		}
+		return ByteBuffer.wrap(payload).getLong(Integer.BYTES);
+	}
+
+	/**
+	 * Returns the serialized messages carried by this frame, in the order they were sent.
+	 * Single message frames return their message as the only element.
+	 *
+	 * @throws IOException if the payload is malformed
+	 */
+	public List<byte[]> messagePayloads() throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(payload);
+		try {
+			buffer.getInt();
+			if (type == MESSAGE) {
+				byte[] message = new byte[buffer.remaining()];
+				buffer.get(message);
+				return List.of(message);
+			}
+
+			int count = buffer.getInt();
+			if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+				throw new IOException("Bad batch size: " + count);
+			}
+
+			List<byte[]> messages = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int length = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					throw new IOException("Bad batched message length: " + length);
+				}
+				byte[] message = new byte[length];
+				buffer.get(message);
+				messages.add(message);
+			}
+			return messages;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated message frame");
+		}
+	}
+
+	/**
+	 * Writes this frame to the stream. The caller is responsible for flushing.
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(payload.length + 1);
+		out.writeByte(type);
+		out.write(payload);
+	}
+
+	/**
+	 * Returns this frame laid out exactly as {@link #writeTo} would write it, ready for a channel write.
+	 */
+	public ByteBuffer toByteBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 1 + payload.length);
+		buffer.putInt(payload.length + 1);
+		buffer.put(type);
+		buffer.put(payload);
+		return buffer.flip();
+	}
+
+	/**
+	 * Reads the next frame from the stream.
+	 *
+	 * @return the frame, or null if the other side closed the connection between two frames
+	 * @throws IOException if the stream breaks in the middle of a frame or the frame is malformed
+	 */
+	public static Frame readFrom(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+
+		if (length < 1 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Bad frame length: " + length);
+		}
+
+		byte type = in.readByte();
+		byte[] payload = new byte[length - 1];
+		in.readFully(payload);
+
+		return new Frame(type, payload);
+	}
+}
@@ -0,0 +1,72 @@
+package com.kids.servent.message.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Non-blocking counterpart of {@link Frame#readFrom}.
+ * <p>
+ * Bytes are read from a channel whenever they are available, and complete frames are cut
+ * out of the accumulated buffer. A frame that arrived only partially stays in the buffer
+ * until the rest of it is read. One decoder is kept per connection.
+ */
+public class FrameDecoder {
+
+	private static final int INITIAL_CAPACITY = 8 * 1024;
+	private static final int HEADER_LENGTH = Integer.BYTES;
+
+	// Always kept in write mode between calls
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+	/**
+	 * Reads whatever is currently available on the channel.
+	 *
+	 * @return number of bytes read, or -1 if the other side closed the connection
+	 */
+	public int readFrom(ReadableByteChannel channel) throws IOException {
+		if (!buffer.hasRemaining()) {
+			grow(buffer.capacity() * 2);
+		}
+		return channel.read(buffer);
+	}
+
+	/**
+	 * Cuts the next complete frame out of the buffer.
+	 *
+	 * @return the frame, or null if we don't have a whole frame yet
+	 * @throws IOException if the frame header is malformed
+	 */
+	public Frame nextFrame() throws IOException {
+		if (buffer.position() < HEADER_LENGTH) return null;
+
+		int length = buffer.getInt(0);
+		if (length < 1 || length > Frame.MAX_FRAME_LENGTH) {
+			throw new IOException("Bad frame length: " + length);
+		}
+
+		int frameEnd = HEADER_LENGTH + length;
+		if (buffer.position() < frameEnd) {
+			if (buffer.capacity() < frameEnd) {
+				grow(frameEnd);
+			}
+			return null;
+		}
+
+		buffer.flip();
+		buffer.position(HEADER_LENGTH);
+		byte type = buffer.get();
+		byte[] payload = new byte[length - 1];
+		buffer.get(payload);
+		buffer.compact();
+
+		return new Frame(type, payload);
+	}
+
+	private void grow(int capacity) {
+		ByteBuffer bigger = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		bigger.put(buffer);
+		buffer = bigger;
+	}
+}
@@ -1,25 +1,30 @@
 package com.kids.servent.message.util;
 
 import com.kids.app.AppConfig;
+import com.kids.app.metrics.Metrics;
 import com.kids.servent.message.Message;
 import com.kids.servent.message.MessageType;
+import com.kids.servent.message.codec.ClockChannel;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * For now, just the read and send implementation, based on Java serializing.
+ * For now, just the read and send implementation. Messages are encoded with the
+ * {@link com.kids.servent.message.codec.MessageCodec} selected in the config.
  * Not too smart. Doesn't even check the neighbor list, so it actually allows cheating.
  * <p>
  * Depending on the configuration it delegates sending either to a {@link DelayedMessageSender}
+ * or to the {@link FifoSendWorker} of the receiver. Both of them write to the long-lived
+ * {@link ServentConnection} kept by {@link ConnectionManager}.
  * 
- * When reading, if we are FIFO, we send an ACK message on the same socket, so the other side
- * knows they can send the next message.
+ * When reading, we acknowledge what came in with an ACK frame on the same socket,
+ * so the other side can drop it from its {@link SendLog}.
  * @author bmilojkovic
  *
  */
@@ -36,50 +41,83 @@ public class MessageUtil {
 	
 	public static void initializePendingMessages() {
 		for (Integer neighbor : AppConfig.myServentInfo.neighbors()) {
-			pendingMarkers.put(neighbor, new LinkedBlockingQueue<>());
-			pendingMessages.put(neighbor, new LinkedBlockingQueue<>());
+			BlockingQueue<Message> markers = new LinkedBlockingQueue<>();
+			BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+			pendingMarkers.put(neighbor, markers);
+			pendingMessages.put(neighbor, messages);
+
+			if (AppConfig.IS_FIFO) {
+				Metrics.gauge("fifo.queue.markers." + neighbor, markers::size);
+				Metrics.gauge("fifo.queue.messages." + neighbor, messages::size);
+			}
 		}
 	}
 	
-	public static Message readMessage(Socket socket) {
-		Message clientMessage = null;
-			
-		try {
-			ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
-			clientMessage = (Message) ois.readObject();
+	/**
+	 * Turns a frame read from a servent connection back into messages.
+	 * A batch frame gives all of its messages in the order they were sent, other frames give one.
+	 * Acknowledging the frame and dropping copies is up to the caller, since it owns the connection.
+	 *
+	 * @param clocks clock state of the connection the frame came from for differential clocks, or null if clocks are sent whole
+	 * @throws IOException if the frame doesn't hold messages we can read
+	 */
+	public static List<Message> readMessages(Frame frame, ClockChannel clocks) throws IOException {
+		List<Message> messages = new ArrayList<>();
+		for (byte[] payload : frame.messagePayloads()) {
+			Message clientMessage = deserialize(payload, clocks);
+			Metrics.messageReceived(clientMessage.getMessageType(), payload.length);
 			
-			if (AppConfig.IS_FIFO) {
-				String response = "ACK";
-				ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-				oos.writeObject(response);
-				oos.flush();
+			if (MESSAGE_UTIL_PRINTING) {
+				AppConfig.timestampedDebugPrint(() -> "Got message " + clientMessage);
 			}
-			
-			socket.close();
-		} catch (Exception ignore) { }
-		
-		if (MESSAGE_UTIL_PRINTING) {
-			AppConfig.timestampedStandardPrint("Got message " + clientMessage);
+			messages.add(clientMessage);
 		}
-		return clientMessage;
+		return messages;
+	}
+
+	/**
+	 * Encodes a message with the codec selected in the config.
+	 */
+	public static byte[] serialize(Message message) throws IOException {
+		return AppConfig.MESSAGE_CODEC.getCodec().encode(message);
+	}
+
+	/**
+	 * Decodes a message with the codec selected in the config.
+	 */
+	public static Message deserialize(byte[] payload) throws IOException {
+		return AppConfig.MESSAGE_CODEC.getCodec().decode(payload);
+	}
+
+	/**
+	 * Encodes a message as the next one on a connection, see {@link ClockChannel}.
+	 */
+	public static byte[] serialize(Message message, ClockChannel clocks) throws IOException {
+		return AppConfig.MESSAGE_CODEC.getCodec().encode(message, clocks);
+	}
+
+	/**
+	 * Decodes the next message on a connection, see {@link ClockChannel}.
+	 */
+	public static Message deserialize(byte[] payload, ClockChannel clocks) throws IOException {
+		return AppConfig.MESSAGE_CODEC.getCodec().decode(payload, clocks);
 	}
 	
 	public static void sendMessage(Message message) {
 		if (AppConfig.IS_FIFO) {
 			try {
-				if (isCoordinatedCheckpointingMessage(message.getMessageType())) {
+				if (isControlMessage(message.getMessageType())) {
 					int receiverId = message.getOriginalReceiverInfo().id();
 					
 					// Check if we have a queue for this receiver
 					if (!pendingMarkers.containsKey(receiverId)) {
 						// Fallback
-						Thread delayedSender = new Thread(new DelayedMessageSender(message));
-						delayedSender.start();
+						DelayedMessageSender.sendLater(message);
 						return;
 					}
 					
 					pendingMarkers.get(receiverId).put(message);
-					AppConfig.timestampedStandardPrint("Added message to pendingMarkers queue: " + message);
+					AppConfig.timestampedDebugPrint(() -> "Added message to pendingMarkers queue: " + message);
 				}
 				else {
 					int receiverId = message.getOriginalReceiverInfo().id();
@@ -87,8 +125,7 @@ public class MessageUtil {
 					// Check if we have a queue for this receiver
 					if (!pendingMessages.containsKey(receiverId)) {
 						// Fallback
-						Thread delayedSender = new Thread(new DelayedMessageSender(message));
-						delayedSender.start();
+						DelayedMessageSender.sendLater(message);
 						return;
 					}
 					
@@ -100,13 +137,18 @@ public class MessageUtil {
 				AppConfig.timestampedErrorPrint("Error sending message: " + e.getMessage());
 			}
 		} else {
-			Thread delayedSender = new Thread(new DelayedMessageSender(message));
-			delayedSender.start();
+			DelayedMessageSender.sendLater(message);
 		}
 	}
 
-	private static boolean isCoordinatedCheckpointingMessage(MessageType type) {
-		return type == MessageType.CC_SNAPSHOT_REQUEST || type == MessageType.CC_SNAPSHOT_RESPONSE || type == MessageType.CC_RESUME;
+	/**
+	 * Control messages go through the marker queue, which the {@link FifoSendWorker} sends from first.
+	 * A Chandy-Lamport marker still can't overtake a transaction that took bitcakes away before we recorded,
+	 * since those are already on the wire, see {@link com.kids.app.snapshot_bitcake.chandy_lamport.CLBitcakeManager}.
+	 */
+	private static boolean isControlMessage(MessageType type) {
+		return type == MessageType.CC_SNAPSHOT_REQUEST || type == MessageType.CC_SNAPSHOT_RESPONSE || type == MessageType.CC_RESUME
+				|| type == MessageType.CL_MARKER || type == MessageType.CL_SNAPSHOT_RESPONSE;
 	}
 
 }
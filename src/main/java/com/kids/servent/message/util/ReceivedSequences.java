@@ -0,0 +1,59 @@
+package com.kids.servent.message.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The receiving end of every {@link SendLog}: for each servent sending to us, the highest sequence number
+ * up to which we have all of its messages.
+ * <p>
+ * Senders resend everything we haven't acknowledged, in order, so a message is taken only if it is the next one
+ * we expect. Anything at or below it is a copy we already have, and anything above it means an earlier
+ * message went missing, so we wait for the sender to go back to it. The same holds across connections,
+ * as a sender always starts a new connection from the first message we haven't acknowledged.
+ * <p>
+ * A servent that restarts numbers its messages from the start again, under a new session, so a new session
+ * starts the count over. The first message we see from a session is taken whatever its number,
+ * as after a restart of our own we don't know what came before.
+ * <p>
+ * Only used from the listener's selector thread.
+ */
+public class ReceivedSequences {
+
+    private static class Channel {
+        private final long session;
+        private int last;
+
+        Channel(long session, int last) {
+            this.session = session;
+            this.last = last;
+        }
+    }
+
+    private final Map<Integer, Channel> channels = new HashMap<>();
+
+    /**
+     * Takes a message if it is the next one from its sender.
+     *
+     * @return true if the message should be handled, false if it is a copy or came too early
+     */
+    public boolean accept(int senderId, long session, int sequence) {
+        Channel channel = channels.get(senderId);
+        if (channel == null || channel.session != session) {
+            channels.put(senderId, new Channel(session, sequence));
+            return true;
+        }
+
+        if (sequence != channel.last + 1) return false;
+        channel.last = sequence;
+        return true;
+    }
+
+    /**
+     * @return the sequence number up to which we have every message of the sender, for the cumulative ACK
+     */
+    public int lastInOrder(int senderId) {
+        Channel channel = channels.get(senderId);
+        return channel == null ? 0 : channel.last;
+    }
+}
@@ -0,0 +1,85 @@
+package com.kids.servent.message.util;
+
+import com.kids.servent.message.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Messages sent to one servent that it hasn't acknowledged yet.
+ * <p>
+ * Every message gets the next sequence number of the channel when it is logged. The receiver answers with
+ * cumulative ACKs, the highest sequence number up to which it has everything, and the messages up to it are dropped.
+ * Whatever is still here can be sent again, in the same order and with the same sequence numbers,
+ * so the receiver can tell the copies apart, see {@link ReceivedSequences}.
+ * <p>
+ * Not thread safe, the {@link ServentConnection} that owns it guards it.
+ */
+public class SendLog {
+
+    /**
+     * A logged message with its sequence number on the channel.
+     */
+    public record Entry(int sequence, Message message) { }
+
+    private final Deque<Entry> unacknowledged = new ArrayDeque<>();
+    private int nextSequence = 1;
+    private int acknowledged = 0;
+
+    // Read by the metrics gauge without holding the connection's lock
+    private volatile int size = 0;
+
+    /**
+     * Logs the messages, numbering them in the order of the list.
+     */
+    public void append(List<Message> messages) {
+        for (Message message : messages) {
+            unacknowledged.add(new Entry(nextSequence++, message));
+        }
+        size = unacknowledged.size();
+    }
+
+    /**
+     * Drops the messages the receiver has acknowledged. An ACK older than one we already have changes nothing.
+     *
+     * @return true if this acknowledged something new
+     */
+    public boolean acknowledge(int sequence) {
+        if (sequence <= acknowledged) return false;
+
+        acknowledged = Math.min(sequence, nextSequence - 1);
+        while (!unacknowledged.isEmpty() && unacknowledged.peek().sequence() <= acknowledged) {
+            unacknowledged.poll();
+        }
+        size = unacknowledged.size();
+        return true;
+    }
+
+    /**
+     * @return the logged messages numbered above the sequence number, in order
+     */
+    public List<Entry> after(int sequence) {
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : unacknowledged) {
+            if (entry.sequence() > sequence) entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * @return the highest sequence number the receiver has acknowledged
+     */
+    public int getAcknowledged() {
+        return acknowledged;
+    }
+
+    public boolean isEmpty() {
+        return unacknowledged.isEmpty();
+    }
+
+    public int size() {
+        return size;
+    }
+}
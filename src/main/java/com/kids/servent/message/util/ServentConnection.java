@@ -0,0 +1,310 @@
+package com.kids.servent.message.util;
+
+import com.kids.app.AppConfig;
+import com.kids.app.AppExecutors;
+import com.kids.app.metrics.Metrics;
+import com.kids.app.servent.ServentInfo;
+import com.kids.servent.message.Message;
+import com.kids.servent.message.codec.ClockChannel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-lived outgoing connection to a single servent.
+ * <p>
+ * Every message for the same servent goes over this one socket, so frames arrive in the order
+ * they were written. Senders on different threads can share the connection, as everything but the wait for
+ * an ACK is synchronized. Waiting for an ACK only holds a separate lock for reading the socket, so it never keeps
+ * the others from sending.
+ * <p>
+ * Messages are never dropped. They go into the {@link SendLog} of the channel first and stay there until
+ * the receiver acknowledges them. If no ACK comes for a whole retransmission timeout, everything unacknowledged
+ * is sent again, and if the socket breaks, a new one is opened that starts with the unacknowledged messages.
+ * A socket left over from before the receiver restarted only fails on the second write, so the resend also
+ * finds out about those.
+ * The timeout doubles with every attempt that brings no ACK, up to {@link AppConfig#RETRANSMIT_MAX_MS},
+ * and while we wait for it new messages only go into the log, so a dead servent isn't hammered with
+ * reconnects. The first ACK that comes resets it to {@link AppConfig#RETRANSMIT_MS}.
+ * <p>
+ * Messages are encoded only once the socket they go out on is open, because with differential
+ * clocks the encoding depends on what was already sent over that socket, see {@link ClockChannel}.
+ * A resent message is encoded again for the socket it goes out on.
+ */
+public class ServentConnection {
+
+	/**
+	 * How many times we try to (re)connect and write before leaving it to the retransmission timer.
+	 * A socket that was idle for a while may be broken without us knowing, so the first failure reconnects right away.
+	 */
+	private static final int WRITE_ATTEMPTS = 2;
+
+	/**
+	 * How long we wait for an ACK in {@link #awaitAck()} before we consider the connection broken.
+	 */
+	private static final int ACK_TIMEOUT_MS = 10_000;
+
+	/**
+	 * Identifies this run of the servent to the receivers. Sequence numbers start over when a servent restarts,
+	 * and the new session tells the receivers that the numbers aren't copies of the old ones.
+	 */
+	private static final long SESSION = ThreadLocalRandom.current().nextLong();
+
+	private final ServentInfo servent;
+	private final SendLog log = new SendLog();
+
+	// Held while reading from the socket. Taken after the connection's monitor, and only tried while holding it
+	private final ReentrantLock reading = new ReentrantLock();
+
+	private Socket socket;
+	private DataOutputStream out;
+	private DataInputStream in;
+	private ClockChannel clocks;
+
+	// Highest sequence number written on the current socket
+	private int written;
+
+	private boolean retransmitScheduled = false;
+	private long retransmitDelay = AppConfig.RETRANSMIT_MS;
+	private int acknowledgedAtLastCheck = 0;
+	private boolean closed = false;
+
+	public ServentConnection(ServentInfo servent) {
+		this.servent = servent;
+		Metrics.gauge("send_log." + servent.id(), log::size);
+	}
+
+	/**
+	 * Logs a message and sends it if the connection is up. Doesn't wait for the ACK.
+	 */
+	public synchronized void send(Message message) {
+		send(List.of(message));
+	}
+
+	/**
+	 * Logs several messages and sends them in one frame if the connection is up.
+	 * The receiver handles them in the order of the list. Doesn't wait for the ACK.
+	 */
+	public synchronized void send(List<Message> messages) {
+		if (closed) return;
+
+		log.append(messages);
+		flush();
+	}
+
+	/**
+	 * Blocks until the receiver acknowledges everything written so far.
+	 * If the ACK doesn't come, the connection is dropped and the messages are resent by the retransmission timer.
+	 * Returns right away if the connection is down, since the timer will take care of the messages then.
+	 * The socket is read without holding the connection, so others can send in the meantime.
+	 */
+	public void awaitAck() throws IOException {
+		reading.lock();
+		try {
+			while (true) {
+				DataInputStream input;
+				synchronized (this) {
+					input = in;
+					if (input == null || log.getAcknowledged() >= written) return;
+				}
+
+				Frame frame;
+				try {
+					frame = Frame.readFrom(input);
+				} catch (IOException e) {
+					dropAfterReadError(input);
+					throw e;
+				}
+
+				synchronized (this) {
+					// The socket was replaced while we were reading, the next round looks at the new one
+					if (in != input) continue;
+					try {
+						readAck(frame);
+					} catch (IOException e) {
+						dropAfterReadError(input);
+						throw e;
+					}
+				}
+			}
+		} finally {
+			reading.unlock();
+		}
+	}
+
+	private synchronized void dropAfterReadError(DataInputStream input) {
+		if (in != input) return;
+
+		disconnect();
+		scheduleRetransmit();
+	}
+
+	/**
+	 * Closes the connection for good, when the servent stops. Unacknowledged messages are not sent anymore.
+	 */
+	public synchronized void close() {
+		closed = true;
+		disconnect();
+	}
+
+	/**
+	 * Writes the logged messages that haven't gone out on the current socket, opening one if needed.
+	 * If that fails, they wait for the retransmission timer.
+	 */
+	private void flush() {
+		// The servent is unreachable, new messages wait for the next attempt
+		if (socket == null && retransmitScheduled) return;
+
+		IOException lastError = null;
+		for (int attempt = 0; attempt < WRITE_ATTEMPTS; attempt++) {
+			try {
+				ensureConnected();
+				readAvailableAcks();
+				write(log.after(written));
+				scheduleRetransmit();
+				return;
+			} catch (IOException e) {
+				lastError = e;
+				disconnect();
+			}
+		}
+
+		AppConfig.timestampedErrorPrint("Couldn't send to servent " + servent.id() + ", retrying in "
+				+ retransmitDelay + " ms: " + lastError.getMessage());
+		scheduleRetransmit();
+	}
+
+	/**
+	 * Encodes the messages against the clock state of the current socket and writes them in one frame.
+	 * Only messages that were actually written are counted in the metrics.
+	 */
+	private void write(List<SendLog.Entry> entries) throws IOException {
+		if (entries.isEmpty()) return;
+
+		List<byte[]> payloads = new ArrayList<>(entries.size());
+		for (SendLog.Entry entry : entries) {
+			payloads.add(MessageUtil.serialize(entry.message(), clocks));
+		}
+
+		Frame.messages(entries.get(0).sequence(), payloads).writeTo(out);
+		out.flush();
+		written = entries.get(entries.size() - 1).sequence();
+
+		for (int i = 0; i < entries.size(); i++) {
+			Metrics.messageSent(entries.get(i).message().getMessageType(), payloads.get(i).length);
+		}
+	}
+
+	/**
+	 * Runs once a retransmission timeout after messages were sent, for as long as some are unacknowledged.
+	 * If no ACK came in the meantime, the messages or their ACKs were lost, or the servent is gone or busy,
+	 * so we resend everything unacknowledged, and wait twice as long for the next check.
+	 */
+	private synchronized void retransmit() {
+		retransmitScheduled = false;
+		if (closed) return;
+
+		try {
+			readAvailableAcks();
+		} catch (IOException e) {
+			disconnect();
+		}
+
+		if (log.isEmpty()) {
+			retransmitDelay = AppConfig.RETRANSMIT_MS;
+			acknowledgedAtLastCheck = log.getAcknowledged();
+			return;
+		}
+
+		if (log.getAcknowledged() > acknowledgedAtLastCheck) {
+			retransmitDelay = AppConfig.RETRANSMIT_MS;
+		} else {
+			List<SendLog.Entry> unacknowledged = log.after(log.getAcknowledged());
+			Metrics.counter("messages.resent").add(unacknowledged.size());
+			AppConfig.timestampedDebugPrint(() -> "No ACK from servent " + servent.id() + ", resending "
+					+ unacknowledged.size() + " messages from sequence " + unacknowledged.get(0).sequence());
+
+			written = log.getAcknowledged();
+			retransmitDelay = Math.min(retransmitDelay * 2, AppConfig.RETRANSMIT_MAX_MS);
+		}
+		acknowledgedAtLastCheck = log.getAcknowledged();
+
+		flush();
+	}
+
+	private void scheduleRetransmit() {
+		if (retransmitScheduled || log.isEmpty() || closed) return;
+
+		try {
+			AppExecutors.schedule(this::retransmit, retransmitDelay);
+			retransmitScheduled = true;
+		} catch (RejectedExecutionException e) {
+			// The servent is stopping
+		}
+	}
+
+	/**
+	 * Takes in the ACKs that have already arrived, without waiting for more.
+	 * If a thread is already waiting in {@link #awaitAck()}, it reads them instead.
+	 */
+	private void readAvailableAcks() throws IOException {
+		if (!reading.tryLock()) return;
+		try {
+			while (in != null && in.available() > 0) {
+				readAck(Frame.readFrom(in));
+			}
+		} finally {
+			reading.unlock();
+		}
+	}
+
+	private void readAck(Frame frame) throws IOException {
+		if (frame == null) {
+			throw new IOException("Connection to " + servent + " closed while waiting for ACK");
+		}
+		if (frame.type() != Frame.ACK) {
+			throw new IOException("Got response which is not an ACK");
+		}
+		log.acknowledge(frame.sequence());
+	}
+
+	/**
+	 * Drops the socket. The next write opens a new one and starts from the first unacknowledged message.
+	 */
+	private void disconnect() {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException ignore) { }
+		}
+		socket = null;
+		out = null;
+		in = null;
+		clocks = null;
+	}
+
+	private void ensureConnected() throws IOException {
+		if (socket != null) return;
+
+		Socket newSocket = new Socket(servent.ipAddress(), servent.listenerPort());
+		newSocket.setTcpNoDelay(true);
+		newSocket.setSoTimeout(ACK_TIMEOUT_MS);
+
+		socket = newSocket;
+		out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+		in = new DataInputStream(new BufferedInputStream(newSocket.getInputStream()));
+		clocks = ClockChannel.forNewConnection();
+		written = log.getAcknowledged();
+
+		Frame.hello(AppConfig.myServentInfo.id(), SESSION).writeTo(out);
+	}
+}